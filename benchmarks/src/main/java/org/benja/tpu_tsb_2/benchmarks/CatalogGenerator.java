@@ -0,0 +1,123 @@
+package org.benja.tpu_tsb_2.benchmarks;
+
+import org.benja.tpu_tsb_2.persistence.CsvDataIterator;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generador de catálogos sintéticos para los benchmarks: escala series_data_clean.csv a la cantidad de filas
+ * indicada repitiendo sus filas. Cada repetición agrega un sufijo al título (" (2)", " (3)"...) para que los títulos
+ * sigan siendo únicos; el resto de los campos (géneros, actores, votos) se conserva, por lo que la distribución de
+ * géneros y de actores es la del archivo original.
+ *
+ * Uso desde la línea de comandos: CatalogGenerator cantidadDeFilas archivoDestino
+ * */
+public final class CatalogGenerator {
+    private static final String SOURCE_RESOURCE = "series_data_clean.csv";
+
+    private CatalogGenerator() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Uso: CatalogGenerator cantidadDeFilas archivoDestino");
+            System.exit(1);
+        }
+
+        generate(Path.of(args[1]), Integer.parseInt(args[0]));
+    }
+
+    /**
+     * Genera un catálogo en un archivo temporal (que debe eliminar quien lo solicita)
+     *
+     * @param rows cantidad de series del catálogo
+     * @return el archivo generado
+     * */
+    public static Path generate(int rows) throws IOException {
+        Path target = Files.createTempFile("catalog-" + rows + "-", ".csv");
+        generate(target, rows);
+        return target;
+    }
+
+    /**
+     * Genera un catálogo con la cantidad de series indicada (sin contar el encabezado) en el archivo destino
+     * */
+    public static void generate(Path target, int rows) throws IOException {
+        if (rows < 0) {
+            throw new IllegalArgumentException("CatalogGenerator.generate(): cantidad de filas negativa: " + rows);
+        }
+
+        List<String[]> source = readSource();
+        String[] header = source.remove(0);
+
+        try (BufferedWriter writer = Files.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+            writeRow(writer, header);
+            for (int i = 0; i < rows; i++) {
+                String[] row = source.get(i % source.size()).clone();
+                int copy = i / source.size();
+                if (copy > 0) {
+                    row[0] = row[0] + " (" + (copy + 1) + ")";
+                }
+
+                writer.newLine();
+                writeRow(writer, row);
+            }
+        }
+    }
+
+    //Métodos privados de la clase
+
+    /**
+     * Lee las filas del csv original desde los recursos de la aplicación (que pueden estar dentro de un jar, por lo
+     * que se copian antes a un archivo temporal)
+     * */
+    private static List<String[]> readSource() throws IOException {
+        Path copy = Files.createTempFile("series_data_clean-", ".csv");
+        try (InputStream in = CsvDataIterator.class.getResourceAsStream(SOURCE_RESOURCE)) {
+            if (in == null) {
+                throw new NullPointerException("No se encontró el recurso " + SOURCE_RESOURCE);
+            }
+            Files.copy(in, copy, StandardCopyOption.REPLACE_EXISTING);
+
+            List<String[]> rows = new ArrayList<>();
+            CsvDataIterator iterator = new CsvDataIterator(copy);
+            while (iterator.hasNext()) {
+                rows.add(iterator.next());
+            }
+            return rows;
+        } finally {
+            Files.deleteIfExists(copy);
+        }
+    }
+
+    private static void writeRow(BufferedWriter writer, String[] row) throws IOException {
+        for (int i = 0; i < row.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writeField(writer, row[i]);
+        }
+    }
+
+    /**
+     * Escribe un campo entre comillas si contiene comas, comillas o saltos de línea (duplicando las comillas internas)
+     * */
+    private static void writeField(BufferedWriter writer, String field) throws IOException {
+        if (field.indexOf(',') < 0 && field.indexOf('"') < 0 && field.indexOf('\n') < 0 && field.indexOf('\r') < 0) {
+            writer.write(field);
+            return;
+        }
+
+        writer.write('"');
+        writer.write(field.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
@@ -0,0 +1,132 @@
+package org.benja.tpu_tsb_2.benchmarks;
+
+import org.benja.tpu_tsb_2.support.ConcurrentTSBHashTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara ConcurrentTSBHashTable con java.util.concurrent.ConcurrentHashMap con varios hilos trabajando sobre la
+ * misma tabla: lectores que consultan sin tomar locks mientras escritores actualizan contadores con merge() y
+ * compute() atómicos (el patrón de los contadores por género de la carga en paralelo).
+ *
+ * Cada grupo de hilos comparte una única tabla (Scope.Group). Los escritores sólo actualizan claves existentes, por
+ * lo que el tamaño de la tabla no cambia durante la medición. JMH informa el tiempo de cada método del grupo por
+ * separado y el del grupo completo.
+ * */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class ConcurrentHashTableBenchmark {
+
+    /**
+     * Implementaciones comparadas
+     * */
+    public enum Implementation {
+        CONCURRENT_TSB, CONCURRENT_HASH_MAP
+    }
+
+    @Param({"CONCURRENT_TSB", "CONCURRENT_HASH_MAP"})
+    private Implementation implementation;
+
+    @Param({"1000", "100000"})
+    private int size;
+
+    private String[] keys;
+    private ConcurrentMap<String, Integer> map;
+
+    /**
+     * Posición de la próxima clave a consultar por cada hilo. Cada hilo empieza en un lugar distinto para que no
+     * recorran todos las mismas claves al mismo tiempo
+     * */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int position = -1;
+
+        int next(int size) {
+            if (this.position < 0) {
+                this.position = ThreadLocalRandom.current().nextInt(size);
+            }
+
+            int current = this.position;
+            this.position = current + 1 == size ? 0 : current + 1;
+            return current;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        this.keys = new String[this.size];
+        for (int i = 0; i < this.size; i++) {
+            this.keys[i] = "key-" + i;
+        }
+
+        if (this.implementation == Implementation.CONCURRENT_TSB) {
+            this.map = new ConcurrentTSBHashTable<>();
+        } else {
+            this.map = new ConcurrentHashMap<>();
+        }
+        for (int i = 0; i < this.size; i++) {
+            this.map.put(this.keys[i], 0);
+        }
+    }
+
+    //Grupo readMostly: tres lectores y un escritor que incrementa contadores con merge()
+
+    @Benchmark
+    @Group("readMostly")
+    @GroupThreads(3)
+    public Integer readMostlyGet(Cursor cursor) {
+        return this.map.get(this.keys[cursor.next(this.size)]);
+    }
+
+    @Benchmark
+    @Group("readMostly")
+    @GroupThreads(1)
+    public Integer readMostlyMerge(Cursor cursor) {
+        return this.map.merge(this.keys[cursor.next(this.size)], 1, Integer::sum);
+    }
+
+    //Grupo readWrite: dos lectores y dos escritores que incrementan contadores con compute()
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(2)
+    public Integer readWriteGet(Cursor cursor) {
+        return this.map.get(this.keys[cursor.next(this.size)]);
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(2)
+    public Integer readWriteCompute(Cursor cursor) {
+        return this.map.compute(this.keys[cursor.next(this.size)], (key, value) -> value == null ? 1 : value + 1);
+    }
+
+    //Grupo writeOnly: cuatro escritores que compiten por los mismos contadores con merge()
+
+    @Benchmark
+    @Group("writeOnly")
+    @GroupThreads(4)
+    public Integer writeOnlyMerge(Cursor cursor) {
+        return this.map.merge(this.keys[cursor.next(this.size)], 1, Integer::sum);
+    }
+}
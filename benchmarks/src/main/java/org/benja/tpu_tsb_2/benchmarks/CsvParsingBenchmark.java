@@ -0,0 +1,89 @@
+package org.benja.tpu_tsb_2.benchmarks;
+
+import org.benja.tpu_tsb_2.persistence.CsvDataIterator;
+import org.benja.tpu_tsb_2.persistence.MappedCsvReader;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide la lectura completa de un catálogo sintético con CsvDataIterator (lectura con BufferedReader y un String[]
+ * por fila) y con MappedCsvReader (archivo mapeado en memoria, con campos leídos sin crear la fila).
+ *
+ * Cada invocación lee el archivo completo; el contador auxiliar "rows" informa además las filas por segundo.
+ * */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CsvParsingBenchmark {
+
+    @Param({"2000", "100000", "1000000"})
+    private int rows;
+
+    private Path catalog;
+
+    /**
+     * Contador de filas leídas, que JMH informa como filas por segundo
+     * */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class RowCounter {
+        public long rows;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            this.rows = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        this.catalog = CatalogGenerator.generate(this.rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(this.catalog);
+    }
+
+    @Benchmark
+    public void csvDataIterator(RowCounter counter, Blackhole blackhole) {
+        CsvDataIterator iterator = new CsvDataIterator(this.catalog);
+        while (iterator.hasNext()) {
+            blackhole.consume(iterator.next());
+            counter.rows++;
+        }
+    }
+
+    @Benchmark
+    public void mappedCsvReader(RowCounter counter, Blackhole blackhole) {
+        try (MappedCsvReader reader = new MappedCsvReader(this.catalog)) {
+            while (reader.nextRow()) {
+                for (int i = 0; i < reader.getFieldCount(); i++) {
+                    blackhole.consume(reader.getField(i));
+                }
+                counter.rows++;
+            }
+        }
+    }
+}
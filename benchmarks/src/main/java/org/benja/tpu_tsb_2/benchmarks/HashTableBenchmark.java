@@ -0,0 +1,177 @@
+package org.benja.tpu_tsb_2.benchmarks;
+
+import org.benja.tpu_tsb_2.support.ConcurrentTSBHashTable;
+import org.benja.tpu_tsb_2.support.TSBHashTableDA;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara TSBHashTableDA con java.util.HashMap en búsquedas exitosas y fallidas, inserción, eliminación, iteración
+ * y recorrido con streams secuenciales y paralelos, para varios tamaños y factores de carga.
+ *
+ * Las claves son Strings (como los géneros, títulos y actores de la aplicación). En el modo de tamaños primos el
+ * factor de carga se limita a 0.5 (ver TSBHashTableDA), por lo que con loadFactor = 0.75 se mide igual que con 0.5.
+ * ConcurrentTSBHashTable usa siempre 0.5 e ignora el parámetro; aquí se mide su costo con un único hilo (las
+ * mediciones con lectores y escritores simultáneos están en ConcurrentHashTableBenchmark).
+ * */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HashTableBenchmark {
+
+    /**
+     * Implementaciones comparadas
+     * */
+    public enum Implementation {
+        TSB_PRIME, TSB_POWER_OF_TWO, CONCURRENT_TSB, HASH_MAP
+    }
+
+    @Param({"TSB_PRIME", "TSB_POWER_OF_TWO", "CONCURRENT_TSB", "HASH_MAP"})
+    private Implementation implementation;
+
+    @Param({"1000", "100000", "1000000"})
+    private int size;
+
+    @Param({"0.5", "0.75"})
+    private float loadFactor;
+
+    private String[] keys;
+    private String[] missingKeys;
+    private Map<String, Integer> map;
+
+    //Posición de la próxima clave a consultar (las claves se recorren en un orden aleatorio fijo)
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        this.keys = new String[this.size];
+        this.missingKeys = new String[this.size];
+        for (int i = 0; i < this.size; i++) {
+            this.keys[i] = "key-" + i;
+            this.missingKeys[i] = "missing-" + i;
+        }
+
+        this.map = this.newMap();
+        for (int i = 0; i < this.size; i++) {
+            this.map.put(this.keys[i], i);
+        }
+
+        //Se desordenan las claves para que las consultas no recorran la tabla en el orden de inserción
+        shuffle(this.keys, new Random(42));
+        shuffle(this.missingKeys, new Random(43));
+        this.cursor = 0;
+    }
+
+    @Benchmark
+    public Integer getHit() {
+        return this.map.get(this.keys[this.nextPosition()]);
+    }
+
+    @Benchmark
+    public Integer getMiss() {
+        return this.map.get(this.missingKeys[this.nextPosition()]);
+    }
+
+    /**
+     * Elimina una clave y la vuelve a insertar, para que el tamaño de la tabla no cambie entre invocaciones
+     * (en TSBHashTableDA la eliminación deja una tumba que la inserción puede reutilizar o compactar)
+     * */
+    @Benchmark
+    public Integer removeAndPut() {
+        String key = this.keys[this.nextPosition()];
+        Integer value = this.map.remove(key);
+        return this.map.put(key, value);
+    }
+
+    /**
+     * Construye una tabla vacía (sin dimensionar) con todas las claves, incluyendo los rehashing necesarios.
+     * El resultado es el tiempo de construcción completo, no por inserción
+     * */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Map<String, Integer> insertAll() {
+        Map<String, Integer> result = this.newMap();
+        for (int i = 0; i < this.size; i++) {
+            result.put(this.keys[i], i);
+        }
+        return result;
+    }
+
+    /**
+     * Recorre todos los pares de la tabla. El resultado es el tiempo del recorrido completo
+     * */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void iterate(Blackhole blackhole) {
+        for (Map.Entry<String, Integer> entry : this.map.entrySet()) {
+            blackhole.consume(entry.getKey());
+            blackhole.consume(entry.getValue());
+        }
+    }
+
+    /**
+     * Suma los valores con un stream secuencial sobre la vista de valores
+     * */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long sumValues() {
+        return this.map.values().stream().mapToLong(Integer::longValue).sum();
+    }
+
+    /**
+     * Suma los valores con un stream paralelo, que reparte la tabla entre los hilos del ForkJoinPool común
+     * */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long sumValuesParallel() {
+        return this.map.values().parallelStream().mapToLong(Integer::longValue).sum();
+    }
+
+    //Métodos privados de la clase
+
+    private Map<String, Integer> newMap() {
+        switch (this.implementation) {
+            case TSB_PRIME:
+                return new TSBHashTableDA.Builder<String, Integer>().loadFactor(this.loadFactor).build();
+            case TSB_POWER_OF_TWO:
+                return new TSBHashTableDA.Builder<String, Integer>().loadFactor(this.loadFactor).powerOfTwo(true).build();
+            case CONCURRENT_TSB:
+                return new ConcurrentTSBHashTable<>();
+            default:
+                return new HashMap<>(16, this.loadFactor);
+        }
+    }
+
+    private int nextPosition() {
+        int position = this.cursor;
+        this.cursor = position + 1 == this.size ? 0 : position + 1;
+        return position;
+    }
+
+    private static void shuffle(String[] array, Random random) {
+        for (int i = array.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            String aux = array[i];
+            array[i] = array[j];
+            array[j] = aux;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package org.benja.tpu_tsb_2.benchmarks;
+
+import org.benja.tpu_tsb_2.business.SeriesIndexController;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide la construcción completa del índice a partir de un catálogo sintético: lectura secuencial
+ * (proccessDataFile) y lectura en paralelo por rangos del archivo (proccessDataFileInParallel).
+ *
+ * Para la tasa de asignación de memoria se utiliza el profiler de GC de JMH (gc.alloc.rate y gc.alloc.rate.norm,
+ * bytes asignados por construcción), que BenchmarkRunner agrega siempre.
+ * */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+@State(Scope.Benchmark)
+public class IndexBuildBenchmark {
+
+    @Param({"2000", "100000", "1000000"})
+    private int rows;
+
+    private Path catalog;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        this.catalog = CatalogGenerator.generate(this.rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(this.catalog);
+    }
+
+    @Benchmark
+    public SeriesIndexController sequential() {
+        SeriesIndexController index = new SeriesIndexController(this.catalog);
+        index.proccessDataFile();
+        return index;
+    }
+
+    @Benchmark
+    public SeriesIndexController parallel() {
+        SeriesIndexController index = new SeriesIndexController(this.catalog);
+        index.proccessDataFileInParallel();
+        return index;
+    }
+}
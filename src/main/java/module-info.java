@@ -1,8 +1,11 @@
 module org.benja.tpu_tsb_2 {
     requires javafx.controls;
     requires javafx.fxml;
+    requires java.management;
 
 
     exports org.benja.tpu_tsb_2.ui;
     opens org.benja.tpu_tsb_2.ui to javafx.fxml;
+    //Las métricas del índice se publican como MBean (ver IndexMetrics)
+    exports org.benja.tpu_tsb_2.business to java.management;
 }
\ No newline at end of file
@@ -0,0 +1,323 @@
+package org.benja.tpu_tsb_2.business;
+
+import org.benja.tpu_tsb_2.support.EDimensionDatos;
+import org.benja.tpu_tsb_2.support.EIngestionStage;
+import org.benja.tpu_tsb_2.support.TableMetrics;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Métricas del índice: duración de cada etapa de la carga del archivo csv, latencia de las consultas por dimensión
+ * y, a través de TableMetrics, longitud de exploración y rehashing de las tablas hash.
+ *
+ * Al igual que TableMetrics se habilitan con -Dtpu_tsb.metrics=true; deshabilitadas, los métodos record*() no hacen
+ * nada y el compilador JIT los elimina. Con las métricas habilitadas, install() las publica como MBean
+ * (org.benja.tpu_tsb_2:type=IndexMetrics, visible desde jconsole o VisualVM) y las escribe periódicamente en la
+ * salida estándar cada -Dtpu_tsb.metrics.dumpSeconds segundos (60 por defecto, 0 para no escribirlas).
+ * */
+public final class IndexMetrics implements IndexMetricsMBean {
+    public static final boolean ENABLED = TableMetrics.ENABLED;
+
+    //Propiedad del sistema con el intervalo en segundos entre volcados de las métricas
+    public static final String DUMP_INTERVAL_PROPERTY = "tpu_tsb.metrics.dumpSeconds";
+
+    private static final String OBJECT_NAME = "org.benja.tpu_tsb_2:type=IndexMetrics";
+    private static final long DEFAULT_DUMP_SECONDS = 60;
+
+    private static final IndexMetrics INSTANCE = new IndexMetrics();
+
+    private final LongAdder ingestedRows;
+    private final LongAdder[] stageNanos;
+    private final LongAdder[] queryCounts;
+    private final LongAdder[] queryNanos;
+    private final LongAccumulator[] maxQueryNanos;
+
+    //Índice publicado, del que se informa el estado de las tablas
+    private volatile SeriesIndexController publishedIndex;
+
+    private boolean installed;
+    private ScheduledExecutorService dumpScheduler;
+
+    private IndexMetrics() {
+        this.ingestedRows = new LongAdder();
+        this.stageNanos = newAdders(EIngestionStage.values().length);
+        this.queryCounts = newAdders(EDimensionDatos.values().length);
+        this.queryNanos = newAdders(EDimensionDatos.values().length);
+        this.maxQueryNanos = new LongAccumulator[EDimensionDatos.values().length];
+        for (int i = 0; i < this.maxQueryNanos.length; i++) {
+            this.maxQueryNanos[i] = new LongAccumulator(Math::max, 0);
+        }
+    }
+
+    public static IndexMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Publica las métricas como MBean e inicia su volcado periódico. No hace nada si las métricas están
+     * deshabilitadas o si ya fueron instaladas
+     * */
+    public static synchronized void install() {
+        if (!ENABLED || INSTANCE.installed) {
+            return;
+        }
+        INSTANCE.installed = true;
+
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            System.err.println("No se pudieron publicar las métricas del índice por JMX: " + e.getMessage());
+        }
+
+        long dumpSeconds = Long.getLong(DUMP_INTERVAL_PROPERTY, DEFAULT_DUMP_SECONDS);
+        if (dumpSeconds > 0) {
+            INSTANCE.dumpScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "index-metrics-dump");
+                thread.setDaemon(true);
+                return thread;
+            });
+            INSTANCE.dumpScheduler.scheduleAtFixedRate(() -> System.out.print(INSTANCE.dump()), dumpSeconds, dumpSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * @return el instante actual para medir una duración, o 0 si las métricas están deshabilitadas
+     * */
+    public static long startTimer() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Suma a la etapa indicada el tiempo transcurrido desde since
+     *
+     * @param since instante de comienzo de la etapa, obtenido con startTimer() o con la etapa anterior
+     * @return el instante actual, que sirve como comienzo de la etapa siguiente
+     * */
+    public static long recordStage(EIngestionStage stage, long since) {
+        if (!ENABLED) {
+            return 0;
+        }
+
+        long now = System.nanoTime();
+        INSTANCE.stageNanos[stage.ordinal()].add(now - since);
+        return now;
+    }
+
+    public static void recordIngestedRow() {
+        if (ENABLED) {
+            INSTANCE.ingestedRows.increment();
+        }
+    }
+
+    /**
+     * Registra la latencia de una consulta de la dimensión indicada
+     *
+     * @param start instante de comienzo de la consulta, obtenido con startTimer()
+     * */
+    public static void recordQuery(EDimensionDatos dimension, long start) {
+        if (ENABLED) {
+            long nanos = System.nanoTime() - start;
+            INSTANCE.queryCounts[dimension.ordinal()].increment();
+            INSTANCE.queryNanos[dimension.ordinal()].add(nanos);
+            INSTANCE.maxQueryNanos[dimension.ordinal()].accumulate(nanos);
+        }
+    }
+
+    /**
+     * Indica el índice publicado, del que se informa el estado de las tablas
+     * */
+    public static void setPublishedIndex(SeriesIndexController index) {
+        if (ENABLED) {
+            INSTANCE.publishedIndex = index;
+        }
+    }
+
+    @Override
+    public long getLookupCount() {
+        return TableMetrics.getLookupCount();
+    }
+
+    @Override
+    public double getAverageProbeLength() {
+        return TableMetrics.getAverageProbeLength();
+    }
+
+    @Override
+    public long getMaxProbeLength() {
+        return TableMetrics.getMaxProbeLength();
+    }
+
+    @Override
+    public String[] getProbeLengthBuckets() {
+        return TableMetrics.getProbeLengthBuckets();
+    }
+
+    @Override
+    public long[] getProbeLengthHistogram() {
+        return TableMetrics.getProbeLengthHistogram();
+    }
+
+    @Override
+    public long getRehashCount() {
+        return TableMetrics.getRehashCount();
+    }
+
+    @Override
+    public long getCompactionCount() {
+        return TableMetrics.getCompactionCount();
+    }
+
+    @Override
+    public double getRehashMillis() {
+        return TableMetrics.getRehashNanos() / 1e6;
+    }
+
+    @Override
+    public double getMaxRehashMillis() {
+        return TableMetrics.getMaxRehashNanos() / 1e6;
+    }
+
+    @Override
+    public String[] getTableStats() {
+        SeriesIndexController index = this.publishedIndex;
+        return index == null ? new String[0] : index.describeTables();
+    }
+
+    @Override
+    public long getIngestedRows() {
+        return this.ingestedRows.sum();
+    }
+
+    @Override
+    public String[] getIngestionStages() {
+        return namesOf(EIngestionStage.values());
+    }
+
+    @Override
+    public double[] getIngestionStageMillis() {
+        double[] millis = new double[this.stageNanos.length];
+        for (int i = 0; i < millis.length; i++) {
+            millis[i] = this.stageNanos[i].sum() / 1e6;
+        }
+
+        return millis;
+    }
+
+    @Override
+    public String[] getQueryDimensions() {
+        return namesOf(EDimensionDatos.values());
+    }
+
+    @Override
+    public long[] getQueryCounts() {
+        long[] counts = new long[this.queryCounts.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = this.queryCounts[i].sum();
+        }
+
+        return counts;
+    }
+
+    @Override
+    public double[] getQueryAverageMicros() {
+        double[] micros = new double[this.queryNanos.length];
+        for (int i = 0; i < micros.length; i++) {
+            long count = this.queryCounts[i].sum();
+            micros[i] = count == 0 ? 0 : this.queryNanos[i].sum() / 1e3 / count;
+        }
+
+        return micros;
+    }
+
+    @Override
+    public double[] getQueryMaxMicros() {
+        double[] micros = new double[this.maxQueryNanos.length];
+        for (int i = 0; i < micros.length; i++) {
+            micros[i] = this.maxQueryNanos[i].get() / 1e3;
+        }
+
+        return micros;
+    }
+
+    @Override
+    public String dump() {
+        StringBuilder text = new StringBuilder();
+        text.append("---- Métricas del índice ").append(new SimpleDateFormat("HH:mm:ss").format(new Date())).append(" ----\n");
+
+        text.append(String.format("Tablas hash: %d búsquedas, exploración promedio %.2f, máxima %d%n",
+                this.getLookupCount(), this.getAverageProbeLength(), this.getMaxProbeLength()));
+        String[] buckets = this.getProbeLengthBuckets();
+        long[] histogram = this.getProbeLengthHistogram();
+        text.append("  Longitudes de exploración:");
+        for (int i = 0; i < buckets.length; i++) {
+            text.append(' ').append(buckets[i]).append('=').append(histogram[i]);
+        }
+        text.append('\n');
+        text.append(String.format("  Rehashing: %d, compactaciones: %d, total %.3f ms, máximo %.3f ms%n",
+                this.getRehashCount(), this.getCompactionCount(), this.getRehashMillis(), this.getMaxRehashMillis()));
+        for (String table : this.getTableStats()) {
+            text.append("  ").append(table).append('\n');
+        }
+
+        text.append("Carga: ").append(this.getIngestedRows()).append(" filas\n");
+        String[] stages = this.getIngestionStages();
+        double[] stageMillis = this.getIngestionStageMillis();
+        for (int i = 0; i < stages.length; i++) {
+            text.append(String.format("  %s: %.3f ms%n", stages[i], stageMillis[i]));
+        }
+
+        text.append("Consultas:\n");
+        String[] dimensions = this.getQueryDimensions();
+        long[] counts = this.getQueryCounts();
+        double[] average = this.getQueryAverageMicros();
+        double[] max = this.getQueryMaxMicros();
+        for (int i = 0; i < dimensions.length; i++) {
+            text.append(String.format("  %s: %d, promedio %.1f µs, máximo %.1f µs%n", dimensions[i], counts[i], average[i], max[i]));
+        }
+
+        return text.toString();
+    }
+
+    @Override
+    public void reset() {
+        TableMetrics.reset();
+        this.ingestedRows.reset();
+        for (LongAdder stage : this.stageNanos) {
+            stage.reset();
+        }
+        for (int i = 0; i < this.queryCounts.length; i++) {
+            this.queryCounts[i].reset();
+            this.queryNanos[i].reset();
+            this.maxQueryNanos[i].reset();
+        }
+    }
+
+    //Métodos privados de la clase
+
+    private static LongAdder[] newAdders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+
+        return adders;
+    }
+
+    private static String[] namesOf(Enum<?>[] values) {
+        String[] names = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            names[i] = values[i].toString();
+        }
+
+        return names;
+    }
+}
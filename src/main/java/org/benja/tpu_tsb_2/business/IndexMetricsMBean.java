@@ -0,0 +1,61 @@
+package org.benja.tpu_tsb_2.business;
+
+/**
+ * Interfaz de administración (JMX) de las métricas del índice, registrada como org.benja.tpu_tsb_2:type=IndexMetrics.
+ * Los tiempos se expresan en milisegundos, salvo las latencias de consulta, que se expresan en microsegundos.
+ * */
+public interface IndexMetricsMBean {
+
+    //Búsquedas y rehashing de las tablas hash (TSBHashTableDA)
+
+    long getLookupCount();
+
+    double getAverageProbeLength();
+
+    long getMaxProbeLength();
+
+    String[] getProbeLengthBuckets();
+
+    long[] getProbeLengthHistogram();
+
+    long getRehashCount();
+
+    long getCompactionCount();
+
+    double getRehashMillis();
+
+    double getMaxRehashMillis();
+
+    /**
+     * @return tamaño, factor de carga y proporción de tumbas de las tablas del índice publicado
+     * */
+    String[] getTableStats();
+
+    //Carga del archivo de datos
+
+    long getIngestedRows();
+
+    String[] getIngestionStages();
+
+    double[] getIngestionStageMillis();
+
+    //Consultas, en el orden de EDimensionDatos
+
+    String[] getQueryDimensions();
+
+    long[] getQueryCounts();
+
+    double[] getQueryAverageMicros();
+
+    double[] getQueryMaxMicros();
+
+    /**
+     * @return todas las métricas en formato de texto
+     * */
+    String dump();
+
+    /**
+     * Reinicia todos los contadores
+     * */
+    void reset();
+}
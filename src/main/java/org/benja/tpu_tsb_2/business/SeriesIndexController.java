@@ -1,33 +1,124 @@
 package org.benja.tpu_tsb_2.business;
 
 import org.benja.tpu_tsb_2.persistence.CsvDataIterator;
+import org.benja.tpu_tsb_2.persistence.CsvTokenizer;
+import org.benja.tpu_tsb_2.persistence.MappedCsvReader;
+import org.benja.tpu_tsb_2.persistence.SeriesChangeLog;
+import org.benja.tpu_tsb_2.persistence.SeriesIndexSnapshot;
+import org.benja.tpu_tsb_2.support.ActorIndex;
+import org.benja.tpu_tsb_2.support.EDimensionDatos;
+import org.benja.tpu_tsb_2.support.EIngestionStage;
+import org.benja.tpu_tsb_2.support.ESortKey;
+import org.benja.tpu_tsb_2.support.InvertedIndex;
+import org.benja.tpu_tsb_2.support.LruCache;
+import org.benja.tpu_tsb_2.support.RoaringBitmap;
 import org.benja.tpu_tsb_2.support.Serie;
+import org.benja.tpu_tsb_2.support.SeriesColumnStore;
 import org.benja.tpu_tsb_2.support.TSBHashTableDA;
+import org.benja.tpu_tsb_2.support.TSBObjectIntHashTable;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Iterator;
+import java.util.Deque;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 
 /**
  * Clase controladora que encapsula la lógica de llenar los mapas con los datos provenientes del archivo csv y
  * la de consultar información a partir de un género y dimensión seleccionadas.
  * Contiene un mapa por cada dimensión de datos disponible para mostrar.
+ *
+ * Luego de la carga inicial, el índice puede actualizarse sin reconstruirlo: processAppendedRows() procesa sólo las
+ * filas agregadas al final del archivo csv y applyChangeLog() aplica las modificaciones y eliminaciones del registro
+ * de cambios (ver SeriesChangeLog). Ambos recuerdan la cantidad de bytes ya procesados de cada archivo.
  * */
 public class SeriesIndexController {
-    private Iterator<String[]> dataIterator;
+    //Cantidad de géneros esperada, utilizada para dimensionar los mapas de antemano y evitar rehashing durante la carga
+    private static final int EXPECTED_GENRES = 32;
+    //Cantidad de filas que procesa cada tarea en la carga en paralelo
+    private static final int BATCH_SIZE = 4096;
+    //Cantidad de actores más frecuentes por género que se guardan en la cache de consultas
+    private static final int CACHED_TOP_ACTORS = 100;
+    //Cantidad máxima de resultados de consultas guardados en la cache
+    private static final int QUERY_CACHE_SIZE = 64;
+    //Contadores por puntaje de los géneros inexistentes (no debe modificarse)
+    private static final Integer[] NO_SERIES_PER_RATING = {0, 0, 0, 0, 0, 0, 0, 0, 0, 0};
+
+    //Índices de las columnas del archivo csv
+    private static final int TITLE_COLUMN = 0;
+    private static final int SERIES_RUNTIME_COLUMN = 1;
+    private static final int CERTIFICATE_COLUMN = 2;
+    private static final int EPISODES_RUNTIME_COLUMN = 3;
+    private static final int GENRE_COLUMN = 4;
+    private static final int RATING_COLUMN = 5;
+    private static final int OVERVIEW_COLUMN = 6;
+    private static final int STAR1_COLUMN = 7;
+    private static final int VOTES_COLUMN = 11;
+
+    //Archivo csv de datos (null en los índices parciales de la carga en paralelo)
+    private Path dataFile;
+    //Almacén columnar con todas las series en el orden en que fueron leidas y los ids de fila de las series de cada género
+    private SeriesColumnStore store;
+    //Índice invertido de palabras del título y la sinopsis, para las búsquedas por palabras clave
+    private InvertedIndex textIndex;
+    //Índice de actores: series de cada actor y coprotagonistas
+    private ActorIndex actorIndex;
+    //Cache LRU de resultados de las consultas que combinan varios géneros y de los actores frecuentes de cada género,
+    //con la consulta (dimensión y géneros) como clave. Las consultas de un único género no se guardan: ya devuelven
+    //vistas sobre los postings ordenados y los contadores calculados en la carga.
+    //Se vacía una vez por cada operación que agrega o elimina series (no por cada serie); cada recarga del índice crea
+    //un controlador nuevo, con su cache vacía
+    private LruCache<QueryKey, Object> queryCache;
     //Mapa que almacena contadores de series por género, con el género como clave
-    private TSBHashTableDA<String, Integer> quantityPerGender;
-    //Mapa que almacena listas de series por género, con el género como clave
+    private TSBObjectIntHashTable<String> quantityPerGender;
+    //Mapa que almacena listas de series por género, con el género como clave. Las listas son vistas sobre el almacén
     private TSBHashTableDA<String, List<Serie>> seriesPerGender;
     //Mapa que almacena contadores de series por rating por género, con el género como clave y el rating-1 como índice del array de contadores
     private TSBHashTableDA<String, Integer[]> quantityPerScorePerGender;
 
+    //Cantidad de bytes del archivo csv y del registro de cambios ya procesados
+    private long consumedBytes;
+    private long changeLogConsumedBytes;
+    //Id de fila de cada serie no eliminada, con el título como clave (se crea al aplicar el primer cambio, null hasta entonces)
+    private TSBObjectIntHashTable<String> rowsByTitle;
+
+    /**
+     * Interfaz para recibir el avance de la carga del índice. Las notificaciones se realizan desde el hilo que ejecuta
+     * la carga
+     * */
+    public interface LoadListener {
+        /**
+         * @param bytesRead cantidad de bytes del archivo csv leidos
+         * @param totalBytes tamaño del archivo csv en bytes
+         * @param rows cantidad de series indexadas
+         * @param genres géneros descubiertos hasta el momento (copia, que puede utilizarse desde otro hilo)
+         * */
+        void onProgress(long bytesRead, long totalBytes, int rows, String[] genres);
+    }
+
     public SeriesIndexController() {
-        this.dataIterator = new CsvDataIterator();
-        this.quantityPerGender = new TSBHashTableDA<>();
-        this.quantityPerScorePerGender = new TSBHashTableDA<>();
-        this.seriesPerGender = new TSBHashTableDA<>();
+        this(CsvDataIterator.getDefaultDataFile());
+    }
+
+    /**
+     * Crea el controlador para el archivo csv indicado. También se utiliza para crear los índices parciales
+     * de la carga en paralelo, que no leen el archivo por sí mismos (reciben un archivo nulo)
+     *
+     * @param dataFile archivo csv de datos
+     * */
+    public SeriesIndexController(Path dataFile) {
+        this.dataFile = dataFile;
+        this.queryCache = new LruCache<>(QUERY_CACHE_SIZE);
+        resetIndex();
     }
 
     /**
@@ -36,126 +127,917 @@ public class SeriesIndexController {
      * @return array de géneros en formato string
      * */
     public String[] getAvailableGenders() {
-        return quantityPerGender.keySet().toArray(new String[0]);
+        return quantityPerGender.keysToArray(new String[0]);
     }
 
     public int getSeriesCountForGenre(String genre) {
-        int count = 0;
-        if (this.quantityPerGender.containsKey(genre)) {
-            count = this.quantityPerGender.get(genre);
-        }
+        long start = IndexMetrics.startTimer();
+        int count = this.quantityPerGender.get(genre);
+        IndexMetrics.recordQuery(EDimensionDatos.CANTIDAD_SERIES, start);
 
         return count;
     }
 
     public List<Serie> getSeriesDetailsForGenre(String genre) {
-        List<Serie> list = new ArrayList<>();
-
-        if (this.seriesPerGender.containsKey(genre)) {
-            list = this.seriesPerGender.get(genre);
+        long start = IndexMetrics.startTimer();
+        List<Serie> list = this.seriesPerGender.get(genre);
+        if (list == null) {
+            list = new ArrayList<>();
         }
+        IndexMetrics.recordQuery(EDimensionDatos.LISTADO_SERIES, start);
 
         return list;
     }
 
+    /**
+     * Obtiene una página de las series del género ordenadas según el criterio indicado, sin copiar ni ordenar la lista
+     * completa: los ids de fila de cada género ya están ordenados por cada criterio desde la carga
+     *
+     * @param genre el género
+     * @param sortKey criterio de ordenamiento (puntaje y votos de mayor a menor, título alfabéticamente)
+     * @param k cantidad máxima de series a devolver
+     * @param offset posición (en el orden indicado) de la primera serie a devolver
+     * @return lista de hasta k series
+     * */
+    public List<Serie> getTopSeriesForGenre(String genre, ESortKey sortKey, int k, int offset) {
+        long start = IndexMetrics.startTimer();
+        List<Serie> page = this.store.getSortedSeriesForGenre(genre, sortKey, offset, k);
+        IndexMetrics.recordQuery(EDimensionDatos.LISTADO_SERIES, start);
+
+        return page;
+    }
+
+    /**
+     * @return los 10 contadores de series del género por puntaje (no deben modificarse)
+     * */
     public Integer[] getSeriesCountPerRatingForGenre(String genre) {
-        Integer[] counters = new Integer[10];
-        Arrays.fill(counters, 0);
+        long start = IndexMetrics.startTimer();
+        Integer[] counters = this.quantityPerScorePerGender.get(genre);
+        IndexMetrics.recordQuery(EDimensionDatos.CANTIDAD_SERIES_PUNTUACION, start);
+
+        return counters == null ? NO_SERIES_PER_RATING : counters;
+    }
+
+    /**
+     * Cuenta las series que cumplen una consulta sobre varios géneros, sin crear la lista de series resultante.
+     * Si no se incluye ningún género se consideran todas las series (por ejemplo "todas menos Comedy").
+     *
+     * @param includedGenres géneros a los que deben pertenecer las series
+     * @param matchAll true si las series deben pertenecer a todos los géneros incluidos (AND), false si alcanza con alguno (OR)
+     * @param excludedGenres géneros a los que no deben pertenecer las series (NOT)
+     * @return cantidad de series que cumplen la consulta
+     * */
+    public int getSeriesCountForGenres(String[] includedGenres, boolean matchAll, String[] excludedGenres) {
+        long start = IndexMetrics.startTimer();
+        try {
+            return countSeriesForGenres(includedGenres, matchAll, excludedGenres);
+        } finally {
+            IndexMetrics.recordQuery(EDimensionDatos.COMBINACION_GENEROS, start);
+        }
+    }
+
+    /**
+     * Obtiene las series que cumplen una consulta sobre varios géneros, en el orden en que fueron leidas.
+     * Los parámetros tienen el mismo significado que en getSeriesCountForGenres()
+     *
+     * @return lista de series que cumplen la consulta
+     * */
+    public List<Serie> getSeriesDetailsForGenres(String[] includedGenres, boolean matchAll, String[] excludedGenres) {
+        long start = IndexMetrics.startTimer();
+        QueryKey key = QueryKey.forGenres(EDimensionDatos.COMBINACION_GENEROS, includedGenres, matchAll, excludedGenres);
+        int[] rows = cached(key, k -> rowsForGenres(includedGenres, matchAll, excludedGenres));
+        IndexMetrics.recordQuery(EDimensionDatos.COMBINACION_GENEROS, start);
+
+        return this.store.getSeries(rows);
+    }
+
+    /**
+     * Método auxiliar de getSeriesCountForGenres()
+     * */
+    private int countSeriesForGenres(String[] includedGenres, boolean matchAll, String[] excludedGenres) {
+        QueryKey key = QueryKey.forGenres(EDimensionDatos.COMBINACION_GENEROS, includedGenres, matchAll, excludedGenres);
+        int[] rows = (int[]) this.queryCache.get(key);
+        if (rows != null) {
+            return rows.length;
+        }
+
+        RoaringBitmap excluded = unionOfGenres(excludedGenres);
+
+        if (includedGenres.length == 0) {
+            return this.store.getLiveCount() - excluded.getCardinality();
+        }
+
+        if (matchAll && excluded.isEmpty() && includedGenres.length > 1) {
+            //La última intersección sólo se cuenta, sin crearla
+            RoaringBitmap partial = intersectionOfGenres(Arrays.copyOf(includedGenres, includedGenres.length - 1));
+            return RoaringBitmap.andCardinality(partial, this.store.getGenreBitmap(includedGenres[includedGenres.length - 1]));
+        }
+
+        RoaringBitmap included = matchAll ? intersectionOfGenres(includedGenres) : unionOfGenres(includedGenres);
+        return included.getCardinality() - RoaringBitmap.andCardinality(included, excluded);
+    }
+
+    /**
+     * @return la cantidad de aciertos de la cache de consultas
+     * */
+    public long getQueryCacheHits() {
+        return this.queryCache.getHits();
+    }
+
+    /**
+     * @return la cantidad de fallos de la cache de consultas
+     * */
+    public long getQueryCacheMisses() {
+        return this.queryCache.getMisses();
+    }
+
+    /**
+     * @return la cantidad de resultados desalojados de la cache de consultas por falta de espacio
+     * */
+    public long getQueryCacheEvictions() {
+        return this.queryCache.getEvictions();
+    }
+
+    /**
+     * Método auxiliar que calcula los ids de fila de las series que cumplen una consulta sobre varios géneros
+     * */
+    private int[] rowsForGenres(String[] includedGenres, boolean matchAll, String[] excludedGenres) {
+        RoaringBitmap result;
+        if (includedGenres.length == 0) {
+            result = new RoaringBitmap();
+            for (int row = 0; row < this.store.size(); row++) {
+                if (!this.store.isDeleted(row)) {
+                    result.add(row);
+                }
+            }
+        }
+        else {
+            result = matchAll ? intersectionOfGenres(includedGenres) : unionOfGenres(includedGenres);
+        }
+
+        if (excludedGenres.length > 0) {
+            result = RoaringBitmap.andNot(result, unionOfGenres(excludedGenres));
+        }
+
+        return result.toArray();
+    }
+
+    /**
+     * Busca las series más relevantes para una consulta de palabras clave sobre el título y la sinopsis
+     *
+     * @param query texto de la consulta
+     * @param limit cantidad máxima de series a devolver
+     * @return las series encontradas, de la más relevante a la menos relevante
+     * */
+    public List<Serie> searchSeries(String query, int limit) {
+        return this.store.getSeries(this.textIndex.search(query, limit));
+    }
+
+    /**
+     * Obtiene las palabras del título o la sinopsis de alguna serie que comienzan con el prefijo indicado, de las más
+     * frecuentes a las menos frecuentes (autocompletado del cuadro de búsqueda)
+     *
+     * @param prefix prefijo a buscar
+     * @param limit cantidad máxima de palabras a devolver
+     * @return array de palabras en minúsculas y sin tildes
+     * */
+    public String[] suggestSearchTerms(String prefix, int limit) {
+        return this.textIndex.complete(prefix, limit);
+    }
+
+    /**
+     * @return las series en las que participa el actor, en el orden en que fueron leidas
+     * */
+    public List<Serie> getSeriesForActor(String actor) {
+        return this.store.getSeries(this.actorIndex.getRowsForActor(actor));
+    }
+
+    /**
+     * @return los actores que participaron en alguna serie con el actor indicado, con la cantidad de series compartidas,
+     * de los que compartieron más series a los que compartieron menos
+     * */
+    public List<ActorIndex.ActorCount> getCoStarsForActor(String actor) {
+        return this.actorIndex.getCoStars(actor);
+    }
 
-        if (this.quantityPerScorePerGender.containsKey(genre)) {
-            counters = this.quantityPerScorePerGender.get(genre);
+    /**
+     * Obtiene los actores que participan en más series del género. Los CACHED_TOP_ACTORS primeros de cada género
+     * se calculan una única vez y se guardan en la cache de consultas
+     *
+     * @param genre el género
+     * @param n cantidad máxima de actores a devolver
+     * @return los actores con más series del género, con su cantidad de series, del que tiene más al que tiene menos
+     * */
+    public List<ActorIndex.ActorCount> getTopActorsForGenre(String genre, int n) {
+        long start = IndexMetrics.startTimer();
+        List<ActorIndex.ActorCount> result;
+        if (n > CACHED_TOP_ACTORS) {
+            result = this.actorIndex.getTopActors(this.store.getPostings(genre), n);
         }
+        else {
+            QueryKey key = QueryKey.forGenres(EDimensionDatos.ACTORES_FRECUENTES, new String[] {genre}, true, new String[0]);
+            List<ActorIndex.ActorCount> topActors = cached(key, k -> this.actorIndex.getTopActors(this.store.getPostings(genre), CACHED_TOP_ACTORS));
+            result = new ArrayList<>(topActors.subList(0, Math.min(n, topActors.size())));
+        }
+        IndexMetrics.recordQuery(EDimensionDatos.ACTORES_FRECUENTES, start);
+
+        return result;
+    }
 
-        return counters;
+    /**
+     * Describe el estado de las tablas hash del índice (para las métricas)
+     *
+     * @return una línea por tabla con su cantidad de pares, tamaño, factor de carga y proporción de tumbas
+     * */
+    String[] describeTables() {
+        return new String[] {
+                describeTable("quantityPerGender", this.quantityPerGender.size(), this.quantityPerGender.getCapacity(),
+                        this.quantityPerGender.getTombstoneCount()),
+                describeTable("seriesPerGender", this.seriesPerGender),
+                describeTable("quantityPerScorePerGender", this.quantityPerScorePerGender)
+        };
     }
 
     /**
-     * Inicializa los mapas con los datos provenientes del archivo csv
+     * Inicializa los mapas a partir de la instantánea binaria del índice si existe y el archivo csv y el registro de
+     * cambios todavía comienzan con las filas que reflejaba; en ese caso sólo procesa las filas agregadas al final de
+     * cada uno desde entonces (processAppendedRows() y applyChangeLog()). En caso contrario procesa el archivo csv
+     * completo en paralelo y aplica el registro de cambios completo (también si la instantánea ya reflejaba cambios y
+     * se agregaron filas al archivo csv, ver canAppendRows()).
+     * Al finalizar ordena las series de cada género por cada criterio, para que las consultas paginadas no ordenen
+     * (al abrir la instantánea sólo se ordenan los géneros que cambiaron), y si se procesó alguna fila guarda la
+     * instantánea, de modo que la próxima carga o recarga tampoco vuelva a procesarla
+     * */
+    public void loadIndex() {
+        loadIndex(null);
+    }
+
+    /**
+     * Igual que loadIndex(), notificando el avance de la carga
+     *
+     * @param listener objeto a notificar luego de cada lote de filas procesado (puede ser null)
+     * */
+    public void loadIndex(LoadListener listener) {
+        int appended = openSnapshot() && canAppendRows() ? processAppendedRows() : -1;
+        int applied = appended >= 0 ? applyChangeLog() : -1;
+        if (applied >= 0) {
+            if (listener != null) {
+                listener.onProgress(this.consumedBytes, this.consumedBytes, this.store.size(), getAvailableGenders());
+            }
+        }
+        else {
+            //Puede haberse abierto la instantánea y el archivo csv o el registro de cambios haberse acortado mientras tanto
+            resetIndex();
+            proccessDataFileInParallel(Runtime.getRuntime().availableProcessors(), listener);
+            applyChangeLog();
+        }
+        this.store.sortGenres();
+
+        if (appended != 0 || applied != 0) {
+            saveSnapshot();
+        }
+    }
+
+    /**
+     * Procesa sólo las filas agregadas al final del archivo csv desde la última lectura, y actualiza los mapas y los
+     * índices con ellas. Si la última fila del archivo no termina con un fin de línea se considera que todavía se
+     * está escribiendo, y se procesa en la próxima llamada.
+     *
+     * @return cantidad de series agregadas, o -1 si el archivo es más chico que la parte ya procesada (el archivo fue
+     * reemplazado y el índice debe reconstruirse por completo)
+     * */
+    public int processAppendedRows() {
+        long fileSize = fileSizeOf(this.dataFile);
+        if (fileSize < this.consumedBytes) {
+            return -1;
+        }
+        if (fileSize == this.consumedBytes) {
+            return 0;
+        }
+
+        int added = 0;
+        try (MappedCsvReader reader = new MappedCsvReader(this.dataFile, (byte) ',', this.consumedBytes)) {
+            String[] stars = new String[SeriesColumnStore.STARS];
+            boolean header = this.consumedBytes == 0;
+            while (reader.nextRow() && reader.isRowTerminated()) {
+                if (!header && !isBlankRow(reader)) {
+                    indexCurrentRow(reader, stars);
+                    added++;
+                }
+                header = false;
+                this.consumedBytes = reader.getConsumedBytes();
+            }
+        } finally {
+            if (added > 0) {
+                this.queryCache.clear();
+            }
+        }
+
+        return added;
+    }
+
+    /**
+     * Aplica las filas agregadas al registro de cambios desde la última lectura (ver SeriesChangeLog). Una modificación
+     * elimina la serie con el mismo título y agrega la nueva versión al final, por lo que la serie modificada pasa
+     * a ser la última de cada uno de sus géneros.
+     *
+     * @return cantidad de cambios aplicados (0 si no existe el registro de cambios), o -1 si el registro es más chico
+     * que la parte ya aplicada (fue reemplazado y el índice debe reconstruirse por completo)
+     * */
+    public int applyChangeLog() {
+        Path changeLogFile = SeriesChangeLog.changeLogFileFor(this.dataFile);
+        if (!Files.isRegularFile(changeLogFile)) {
+            return 0;
+        }
+
+        long fileSize = fileSizeOf(changeLogFile);
+        if (fileSize < this.changeLogConsumedBytes) {
+            return -1;
+        }
+
+        int applied = 0;
+        try (MappedCsvReader reader = new MappedCsvReader(changeLogFile, (byte) ',', this.changeLogConsumedBytes)) {
+            while (reader.nextRow() && reader.isRowTerminated()) {
+                if (!isBlankRow(reader)) {
+                    //Se cuenta antes de aplicarlo: si falla, el cambio puede haber modificado el índice a medias
+                    applied++;
+                    applyChange(reader);
+                }
+                this.changeLogConsumedBytes = reader.getConsumedBytes();
+            }
+        } finally {
+            if (applied > 0) {
+                this.queryCache.clear();
+            }
+        }
+
+        return applied;
+    }
+
+    /**
+     * Inicializa los mapas con los datos de la instantánea binaria del índice ubicada junto al archivo csv, incluidos
+     * los cambios del registro de cambios que reflejaba. El almacén (con los postings ordenados de cada género) y los
+     * índices invertido y de actores se abren directamente desde la instantánea, sin volver a agregar las series
+     *
+     * @return true si la instantánea existía y era válida para el archivo csv actual, false en caso contrario
+     * */
+    public boolean openSnapshot() {
+        SeriesIndexSnapshot snapshot;
+        try {
+            snapshot = SeriesIndexSnapshot.read(SeriesIndexSnapshot.snapshotFileFor(this.dataFile), this.dataFile);
+        } catch (IOException e) {
+            return false;
+        }
+        if (snapshot == null) {
+            return false;
+        }
+
+        String[] genres = snapshot.getGenres();
+        this.consumedBytes = snapshot.getCsvSize();
+        this.changeLogConsumedBytes = snapshot.getChangeLogSize();
+        this.rowsByTitle = null;
+        this.store = snapshot.getStore();
+        this.textIndex = snapshot.getTextIndex();
+        this.actorIndex = snapshot.getActorIndex();
+        this.queryCache.clear();
+        for (int g = 0; g < genres.length; g++) {
+            int[] histogram = snapshot.getHistogram(g);
+            Integer[] counters = new Integer[histogram.length];
+            for (int i = 0; i < histogram.length; i++) {
+                counters[i] = histogram[i];
+            }
+
+            this.quantityPerGender.put(genres[g], this.store.getSeriesCountForGenre(genres[g]));
+            this.seriesPerGender.put(genres[g], this.store.getSeriesForGenre(genres[g]));
+            this.quantityPerScorePerGender.put(genres[g], counters);
+        }
+
+        return true;
+    }
+
+    /**
+     * Guarda la instantánea binaria del índice junto al archivo csv, incluidos los cambios ya aplicados del registro
+     * de cambios y las series eliminadas por él. Los géneros que se quedaron sin series (que ya no figuran en los mapas) no se guardan.
+     * La instantánea es sólo una optimización del inicio de la aplicación, por lo que si no se puede escribir (por
+     * ejemplo, si el directorio es de sólo lectura) el error se ignora
+     * */
+    public void saveSnapshot() {
+        //Los géneros y sus contadores se toman juntos de los mapas, recorriendo los géneros en el orden del almacén
+        String[] storeGenres = this.store.getGenres();
+        String[] genres = new String[storeGenres.length];
+        int[][] histograms = new int[storeGenres.length][];
+        int genreCount = 0;
+        for (String genre : storeGenres) {
+            Integer[] counters = this.quantityPerScorePerGender.get(genre);
+            if (counters == null) {
+                continue;
+            }
+
+            int[] histogram = new int[counters.length];
+            for (int i = 0; i < counters.length; i++) {
+                histogram[i] = counters[i];
+            }
+            genres[genreCount] = genre;
+            histograms[genreCount++] = histogram;
+        }
+        genres = Arrays.copyOf(genres, genreCount);
+        histograms = Arrays.copyOf(histograms, genreCount);
+
+        try {
+            SeriesIndexSnapshot.write(SeriesIndexSnapshot.snapshotFileFor(this.dataFile), this.dataFile, this.consumedBytes,
+                    this.changeLogConsumedBytes, this.store, genres, histograms, this.textIndex, this.actorIndex);
+        } catch (IOException e) {
+            //La próxima ejecución volverá a procesar el archivo csv
+        }
+    }
+
+    /**
+     * Inicializa los mapas con los datos provenientes del archivo csv.
+     * Lee el archivo mediante el cursor de MappedCsvReader: las columnas numéricas y los géneros se obtienen
+     * directamente de los bytes del archivo, sin crear el string de la fila ni separarla con expresiones regulares
      * */
     public void proccessDataFile() {
-        this.dataIterator.next(); //Omite la fila que contiene las cabeceras de columna del archivo csv
+        this.queryCache.clear();
+        try (MappedCsvReader reader = new MappedCsvReader(this.dataFile)) {
+            reader.nextRow(); //Omite la fila que contiene las cabeceras de columna del archivo csv
+
+            String[] stars = new String[SeriesColumnStore.STARS];
+            long start = IndexMetrics.startTimer();
+            while (reader.nextRow()) {
+                IndexMetrics.recordStage(EIngestionStage.READ, start);
+                indexCurrentRow(reader, stars);
+                start = IndexMetrics.startTimer();
+            }
+            this.consumedBytes = reader.getConsumedBytes();
+        }
+    }
+
+    /**
+     * Inicializa los mapas con los datos provenientes del archivo csv utilizando tantos hilos como procesadores disponibles
+     * */
+    public void proccessDataFileInParallel() {
+        proccessDataFileInParallel(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Inicializa los mapas con los datos provenientes del archivo csv utilizando varios hilos.
+     * El hilo invocante lee el archivo y lo divide en lotes de filas; cada lote es procesado por un hilo de trabajo,
+     * que separa las columnas y llena un índice parcial propio (con su propio almacén de series); finalmente el hilo invocante
+     * combina los índices parciales en los mapas de este controlador en el mismo orden en que fueron leídos los lotes,
+     * por lo que el orden de las series dentro de cada género es el mismo que en la carga secuencial.
+     * La cantidad de lotes pendientes de combinar se limita para no retener el archivo completo en memoria.
+     *
+     * @param threads cantidad de hilos de trabajo
+     * */
+    public void proccessDataFileInParallel(int threads) {
+        proccessDataFileInParallel(threads, null);
+    }
+
+    /**
+     * Igual que proccessDataFileInParallel(int), notificando el avance luego de combinar cada índice parcial
+     *
+     * @param threads cantidad de hilos de trabajo
+     * @param listener objeto a notificar el avance de la carga (puede ser null)
+     * */
+    public void proccessDataFileInParallel(int threads, LoadListener listener) {
+        this.queryCache.clear();
+        threads = Math.max(threads, 1);
+        ExecutorService workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "series-index-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
 
-        while (this.dataIterator.hasNext()) {
-            String[] dataRow = dataIterator.next();
-            String[] genres = getGenresFromDataRow(dataRow);
+        try (MappedCsvReader reader = new MappedCsvReader(this.dataFile)) {
+            Deque<Future<SeriesIndexController>> pendingBatches = new ArrayDeque<>();
+            boolean hasNext = reader.nextRow() && reader.nextRow(); //Omite la fila que contiene las cabeceras de columna del archivo csv
 
-            countGenresInRow(genres);
-            addSeriesToListsOfSeriesPerGender(dataRow, genres);
-            countGenresPerScoreInRow(dataRow, genres);
+            while (hasNext) {
+                long start = IndexMetrics.startTimer();
+                List<String> batch = new ArrayList<>(BATCH_SIZE);
+                while (batch.size() < BATCH_SIZE && hasNext) {
+                    batch.add(reader.getRowText());
+                    hasNext = reader.nextRow();
+                }
+                IndexMetrics.recordStage(EIngestionStage.READ, start);
+                pendingBatches.addLast(workers.submit(() -> indexBatch(batch)));
+
+                if (pendingBatches.size() >= threads * 2) {
+                    mergePartialIndex(pendingBatches.removeFirst().get());
+                    notifyProgress(listener, reader.getConsumedBytes(), reader.getFileSize());
+                }
+            }
+
+            while (!pendingBatches.isEmpty()) {
+                mergePartialIndex(pendingBatches.removeFirst().get());
+                notifyProgress(listener, reader.getConsumedBytes(), reader.getFileSize());
+            }
+            this.consumedBytes = reader.getConsumedBytes();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Carga del archivo de datos interrumpida");
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error procesando el archivo de datos", e.getCause());
+        } finally {
+            workers.shutdownNow();
         }
     }
 
     //Métodos privados de la clase
 
     /**
-     * Método auxiliar que extrae el listado de géneros al que pertenece la serie representada en la fila de datos
+     * Método auxiliar que deja el índice vacío, como recién creado
+     * */
+    private void resetIndex() {
+        this.store = new SeriesColumnStore();
+        this.textIndex = new InvertedIndex();
+        this.actorIndex = new ActorIndex();
+        this.queryCache.clear();
+        this.quantityPerGender = TSBObjectIntHashTable.withExpectedSize(EXPECTED_GENRES);
+        this.quantityPerScorePerGender = new TSBHashTableDA.Builder<String, Integer[]>().expectedSize(EXPECTED_GENRES).build();
+        this.seriesPerGender = new TSBHashTableDA.Builder<String, List<Serie>>().expectedSize(EXPECTED_GENRES).build();
+        this.rowsByTitle = null;
+        this.consumedBytes = 0;
+        this.changeLogConsumedBytes = 0;
+    }
+
+    /**
+     * Método auxiliar que indica si las filas agregadas al archivo csv se pueden procesar sobre el índice abierto desde
+     * la instantánea. Las filas del archivo csv se aplican antes que las del registro de cambios, por lo que si la
+     * instantánea ya refleja algún cambio y el archivo csv creció, el índice debe reconstruirse por completo para que
+     * resulte el mismo que en una carga completa (las series nuevas pueden agregarse con el registro de cambios)
+     * */
+    private boolean canAppendRows() {
+        return this.changeLogConsumedBytes == 0 || fileSizeOf(this.dataFile) == this.consumedBytes;
+    }
+
+    /**
+     * Método auxiliar que actualiza los tres mapas con los datos de la fila actual del lector del archivo csv.
+     * Las columnas numéricas y los géneros se obtienen directamente de los bytes del archivo
+     *
+     * @param reader lector posicionado en una fila de datos
+     * @param stars array reutilizado para los protagonistas de la fila
+     * */
+    private void indexCurrentRow(MappedCsvReader reader, String[] stars) {
+        long start = IndexMetrics.startTimer();
+        String[] genres = reader.getFieldParts(GENRE_COLUMN, '|');
+        float rating = reader.getFloatField(RATING_COLUMN);
+        for (int i = 0; i < stars.length; i++) {
+            stars[i] = reader.getField(STAR1_COLUMN + i);
+        }
+        String title = reader.getField(TITLE_COLUMN);
+        String seriesRuntime = reader.getField(SERIES_RUNTIME_COLUMN);
+        String certificate = reader.getField(CERTIFICATE_COLUMN);
+        String episodesRuntime = reader.getField(EPISODES_RUNTIME_COLUMN);
+        String overview = reader.getField(OVERVIEW_COLUMN);
+        int votes = reader.getIntField(VOTES_COLUMN);
+        start = IndexMetrics.recordStage(EIngestionStage.PARSE, start);
+
+        int row = this.store.add(title, seriesRuntime, certificate, episodesRuntime, rating, overview, stars, votes);
+        indexSerie(row, rating, genres);
+        IndexMetrics.recordStage(EIngestionStage.INDEX, start);
+        IndexMetrics.recordIngestedRow();
+    }
+
+    /**
+     * Método auxiliar que aplica la fila actual del lector del registro de cambios
+     * */
+    private void applyChange(MappedCsvReader reader) {
+        String operation = reader.getField(0);
+        if (reader.getFieldCount() < 2) {
+            throw new RuntimeException("Fila del registro de cambios sin título: " + reader.getRowText());
+        }
+        int row = this.getRowsByTitle().getOrDefault(reader.getField(1), -1);
+
+        if (SeriesChangeLog.DELETE.equals(operation)) {
+            if (row >= 0) {
+                deleteSerie(row);
+            }
+        }
+        else if (SeriesChangeLog.UPDATE.equals(operation)) {
+            if (reader.getFieldCount() <= VOTES_COLUMN + 1) {
+                throw new RuntimeException("Fila del registro de cambios con columnas faltantes: " + reader.getRowText());
+            }
+            if (row >= 0) {
+                deleteSerie(row);
+            }
+
+            String[] dataRow = new String[reader.getFieldCount() - 1];
+            for (int i = 0; i < dataRow.length; i++) {
+                dataRow[i] = reader.getField(i + 1);
+            }
+            indexRow(dataRow);
+        }
+        else {
+            throw new RuntimeException("Operación desconocida en el registro de cambios: " + operation);
+        }
+    }
+
+    /**
+     * Método auxiliar que elimina una serie del almacén y de los índices, y descuenta sus contadores en los mapas.
+     * Si un género se queda sin series se quita de los tres mapas
+     *
+     * @param row id de fila de la serie
+     * */
+    private void deleteSerie(int row) {
+        String[] genres = this.store.delete(row);
+        this.textIndex.removeDocument(row);
+        this.actorIndex.removeSeries(row);
+        this.getRowsByTitle().remove(this.store.getTitle(row));
+
+        int integerRating = (int) this.store.getImdbRating(row);
+        for (String genre : genres) {
+            if (this.quantityPerGender.addTo(genre, -1) <= 0) {
+                this.quantityPerGender.remove(genre);
+                this.seriesPerGender.remove(genre);
+                this.quantityPerScorePerGender.remove(genre);
+            }
+            else {
+                this.quantityPerScorePerGender.get(genre)[integerRating - 1]--;
+            }
+        }
+    }
+
+    /**
+     * Método auxiliar que devuelve el mapa de ids de fila por título, creándolo con las series no eliminadas si todavía
+     * no existe. Si hay títulos repetidos se conserva la última serie con ese título
+     * */
+    private TSBObjectIntHashTable<String> getRowsByTitle() {
+        if (this.rowsByTitle == null) {
+            this.rowsByTitle = TSBObjectIntHashTable.withExpectedSize(this.store.getLiveCount());
+            for (int row = 0; row < this.store.size(); row++) {
+                if (!this.store.isDeleted(row)) {
+                    this.rowsByTitle.put(this.store.getTitle(row), row);
+                }
+            }
+        }
+
+        return this.rowsByTitle;
+    }
+
+    private void notifyProgress(LoadListener listener, long bytesRead, long totalBytes) {
+        if (listener != null) {
+            listener.onProgress(bytesRead, totalBytes, this.store.size(), getAvailableGenders());
+        }
+    }
+
+    /**
+     * Método auxiliar que indica si la fila actual del lector está vacía (por ejemplo, una línea en blanco al final del archivo)
+     * */
+    private static boolean isBlankRow(MappedCsvReader reader) {
+        return reader.getFieldCount() == 1 && reader.getField(0).isBlank();
+    }
+
+    private static String describeTable(String name, TSBHashTableDA<?, ?> table) {
+        return describeTable(name, table.size(), table.getCapacity(), table.getTombstoneCount());
+    }
+
+    private static String describeTable(String name, int size, int capacity, int tombstones) {
+        return String.format("%s: %d pares, tamaño %d, carga %.2f, tumbas %.2f", name, size, capacity,
+                size / (double) capacity, tombstones / (double) capacity);
+    }
+
+    private static long fileSizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            throw new RuntimeException("Error leyendo el archivo " + file, e);
+        }
+    }
+
+    /**
+     * Método auxiliar que actualiza los tres mapas con los datos de una fila del archivo csv
+     *
+     * @param dataRow array que representa una fila de datos del archivo csv
+     * */
+    private void indexRow(String[] dataRow) {
+        float rating = Float.parseFloat(dataRow[RATING_COLUMN]);
+        int row = this.store.add(
+                dataRow[TITLE_COLUMN],
+                dataRow[SERIES_RUNTIME_COLUMN],
+                dataRow[CERTIFICATE_COLUMN],
+                dataRow[EPISODES_RUNTIME_COLUMN],
+                rating,
+                dataRow[OVERVIEW_COLUMN],
+                Arrays.copyOfRange(dataRow, STAR1_COLUMN, STAR1_COLUMN + SeriesColumnStore.STARS),
+                Integer.parseInt(dataRow[VOTES_COLUMN]));
+
+        indexSerie(row, rating, getGenresFromDataRow(dataRow));
+    }
+
+    /**
+     * Método auxiliar que actualiza los tres mapas y los índices invertido y de actores con una serie ya agregada al almacén y los géneros a los que pertenece
+     *
+     * @param row id de fila de la serie en el almacén
+     * @param rating puntuación de la serie
+     * @param genres array de géneros de la serie en formato string
+     * */
+    private void indexSerie(int row, float rating, String[] genres) {
+        if (this.rowsByTitle != null) {
+            this.rowsByTitle.put(this.store.getTitle(row), row);
+        }
+        this.textIndex.addDocument(row, this.store.getTitle(row), this.store.getOverview(row));
+        this.actorIndex.addSeries(row, starsOf(row));
+        countGenresInRow(genres);
+        addSeriesToListsOfSeriesPerGender(row, genres);
+        countGenresPerScoreInRow(rating, genres);
+    }
+
+    /**
+     * Método auxiliar ejecutado por los hilos de trabajo de la carga en paralelo: construye un índice parcial
+     * con las filas de un lote
+     *
+     * @param lines filas del archivo csv sin separar en columnas
+     * @return índice parcial con los datos del lote
+     * */
+    private static SeriesIndexController indexBatch(List<String> lines) {
+        SeriesIndexController partialIndex = new SeriesIndexController((Path) null);
+        for (String line : lines) {
+            long start = IndexMetrics.startTimer();
+            String[] dataRow = CsvTokenizer.parseRecord(line);
+            start = IndexMetrics.recordStage(EIngestionStage.PARSE, start);
+            partialIndex.indexRow(dataRow);
+            IndexMetrics.recordStage(EIngestionStage.INDEX, start);
+            IndexMetrics.recordIngestedRow();
+        }
+
+        return partialIndex;
+    }
+
+    /**
+     * Método auxiliar que combina un índice parcial en los mapas de este controlador: agrega las series del almacén
+     * parcial al final del almacén (lo que también extiende la lista de series de cada género), agrega sus documentos
+     * al índice invertido y al de actores, y suma los contadores por género y por puntaje
+     *
+     * @param partialIndex índice parcial construido a partir de un lote de filas
+     * */
+    private void mergePartialIndex(SeriesIndexController partialIndex) {
+        long start = IndexMetrics.startTimer();
+        int offset = this.store.appendAll(partialIndex.store);
+        this.textIndex.appendAll(partialIndex.textIndex, offset);
+        this.actorIndex.appendAll(partialIndex.actorIndex, offset);
+        this.rowsByTitle = null;
+        partialIndex.quantityPerGender.forEach((genre, count) -> {
+            this.quantityPerGender.addTo(genre, count);
+            this.seriesPerGender.computeIfAbsent(genre, this.store::getSeriesForGenre);
+            this.quantityPerScorePerGender.merge(genre, partialIndex.quantityPerScorePerGender.get(genre), (counters, partialCounters) -> {
+                for (int i = 0; i < counters.length; i++) {
+                    counters[i] += partialCounters[i];
+                }
+                return counters;
+            });
+        });
+        IndexMetrics.recordStage(EIngestionStage.MERGE, start);
+    }
+
+    /**
+     * Método auxiliar que obtiene del almacén los actores de la serie con el id de fila indicado
+     * */
+    private String[] starsOf(int row) {
+        String[] stars = new String[SeriesColumnStore.STARS];
+        for (int i = 0; i < stars.length; i++) {
+            stars[i] = this.store.getStar(row, i);
+        }
+
+        return stars;
+    }
+
+    /**
+     * Método auxiliar que calcula el conjunto de ids de fila de las series que pertenecen a todos los géneros indicados
+     *
+     * @param genres array con al menos un género
+     * */
+    private RoaringBitmap intersectionOfGenres(String[] genres) {
+        RoaringBitmap result = this.store.getGenreBitmap(genres[0]);
+        for (int i = 1; i < genres.length; i++) {
+            result = RoaringBitmap.and(result, this.store.getGenreBitmap(genres[i]));
+        }
+
+        return result;
+    }
+
+    /**
+     * Método auxiliar que calcula el conjunto de ids de fila de las series que pertenecen a alguno de los géneros indicados
+     * */
+    private RoaringBitmap unionOfGenres(String[] genres) {
+        RoaringBitmap result = new RoaringBitmap();
+        for (String genre : genres) {
+            result = RoaringBitmap.or(result, this.store.getGenreBitmap(genre));
+        }
+
+        return result;
+    }
+
+    /**
+     * Método auxiliar que extrae el listado de géneros al que pertenece la serie representada en la fila de datos.
+     * Usa la misma regla que MappedCsvReader.getFieldParts() en la carga secuencial (se descartan las partes vacías finales)
      *
      * @return array de géneros incluidos en la fila en formato string
      * */
     private String[] getGenresFromDataRow(String[] dataRow) {
-        return dataRow[4].split("\\|");
+        return dataRow[GENRE_COLUMN].split("\\|");
     }
 
     /**
      * Método auxiliar que aumenta los contadores de series por genero contenidos en el mapa quantityPerGender a partir de un array de géneros en formato string.
-     * En caso de no existir entrada en el mapa para alguno de los géneros recibidos, se crea una con el contador puesto en 1
+     * En caso de no existir entrada en el mapa para alguno de los géneros recibidos, se crea una con el contador puesto en 1.
+     * El incremento se resuelve en una única exploración del mapa y sin crear objetos.
      *
      * @param genres array de géneros contenidos en la fila en formato string
      * */
     private void countGenresInRow(String[] genres) {
         for (String genre : genres) {
-            Integer countForGenre = this.quantityPerGender.get(genre);
-            if (countForGenre == null) {
-                countForGenre = 0;
-            }
-            countForGenre++;
-
-            this.quantityPerGender.put(genre, countForGenre);
+            this.quantityPerGender.addTo(genre, 1);
         }
     }
 
     /**
-     * Método auxiliar que mapea los datos de una fila a un objeto Serie y lo agrega a la lista correspondiente a cada uno de los géneros
-     * contenidos en el array pasado por parámetro, contenidas dentro del mapa seriesPerGender.
-     * Si no existe en el mapa una lista correspondiente para alguno de los géneros, la lista es creada y agregada al mapa
+     * Método auxiliar que agrega la serie a los postings de cada uno de los géneros contenidos en el array pasado
+     * por parámetro. Si no existe en el mapa seriesPerGender una lista correspondiente para alguno de los géneros,
+     * se agrega al mapa la vista del almacén sobre las series de ese género
      *
-     * @param dataRow array que representa una fila de datos del archivo csv
+     * @param row id de fila de la serie en el almacén
      * @param genres array de géneros contenidos en la fila en formato string
      * */
-    private void addSeriesToListsOfSeriesPerGender(String[] dataRow, String[] genres) {
-        Serie serie = new Serie(dataRow);
+    private void addSeriesToListsOfSeriesPerGender(int row, String[] genres) {
         for (String genre : genres) {
-            if (!this.seriesPerGender.containsKey(genre)) {
-                this.seriesPerGender.put(genre, new ArrayList<Serie>());
-            }
-
-            List<Serie> seriesPerGenderList = this.seriesPerGender.get(genre);
-            seriesPerGenderList.add(serie);
+            this.store.addToGenre(genre, row);
+            this.seriesPerGender.computeIfAbsent(genre, this.store::getSeriesForGenre);
         }
     }
 
     /**
-     * Método auxiliar que extrae la parte entera de la puntuación contenida en la fila de datos y aumenta los contadores correspondientes
+     * Método auxiliar que extrae la parte entera de la puntuación de la serie y aumenta los contadores correspondientes
      * a cada uno de los géneros contenidos en el array pasado como parámetro.
      * Si no existen contadores para alguno de los género, un array de 10 contadores inicializados en 0 es creado e insertado en el mapa para
      * luego aumentar en 1 el correspondiente al puntaje de la fila.
      *
-     * @param dataRow array que representa una fila de datos del archivo csv
+     * @param rating puntuación de la serie
      * @param genres array de géneros contenidos en la fila en formato string
      * */
-    private void countGenresPerScoreInRow(String[] dataRow, String[] genres) {
-        float rating = Float.parseFloat(dataRow[5]);
+    private void countGenresPerScoreInRow(float rating, String[] genres) {
         int integerRating = (int) rating;
 
         for (String genre : genres) {
-            Integer[] counterArrayForGenre = this.quantityPerScorePerGender.get(genre);
-            if (counterArrayForGenre == null) {
-                counterArrayForGenre = new Integer[10];
-                Arrays.fill(counterArrayForGenre, 0);
-                this.quantityPerScorePerGender.put(genre, counterArrayForGenre);
-            }
+            Integer[] counterArrayForGenre = this.quantityPerScorePerGender.computeIfAbsent(genre, g -> {
+                Integer[] counters = new Integer[10];
+                Arrays.fill(counters, 0);
+                return counters;
+            });
 
             counterArrayForGenre[integerRating-1]++;
         }
     }
+
+    /**
+     * Método auxiliar que obtiene de la cache el resultado de una consulta, calculándolo y guardándolo si no estaba
+     * */
+    @SuppressWarnings("unchecked")
+    private <T> T cached(QueryKey key, Function<QueryKey, T> loader) {
+        return (T) this.queryCache.computeIfAbsent(key, loader);
+    }
+
+    /**
+     * Clave de la cache de consultas: dimensión consultada, géneros incluidos y excluidos (ordenados, para que el orden
+     * en que se seleccionaron no importe) y operador
+     * */
+    private static final class QueryKey {
+        private final EDimensionDatos dimension;
+        private final String[] includedGenres;
+        private final boolean matchAll;
+        private final String[] excludedGenres;
+
+        private QueryKey(EDimensionDatos dimension, String[] includedGenres, boolean matchAll, String[] excludedGenres) {
+            this.dimension = dimension;
+            this.includedGenres = includedGenres.clone();
+            Arrays.sort(this.includedGenres);
+            //Con un único género incluido el operador no cambia el resultado
+            this.matchAll = matchAll || includedGenres.length <= 1;
+            this.excludedGenres = excludedGenres.clone();
+            Arrays.sort(this.excludedGenres);
+        }
+
+        private static QueryKey forGenres(EDimensionDatos dimension, String[] includedGenres, boolean matchAll, String[] excludedGenres) {
+            return new QueryKey(dimension, includedGenres, matchAll, excludedGenres);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof QueryKey)) return false;
+
+            QueryKey other = (QueryKey) obj;
+            return this.dimension == other.dimension
+                    && this.matchAll == other.matchAll
+                    && Arrays.equals(this.includedGenres, other.includedGenres)
+                    && Arrays.equals(this.excludedGenres, other.excludedGenres);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = Objects.hash(this.dimension, this.matchAll);
+            result = 31 * result + Arrays.hashCode(this.includedGenres);
+            return 31 * result + Arrays.hashCode(this.excludedGenres);
+        }
+    }
 }
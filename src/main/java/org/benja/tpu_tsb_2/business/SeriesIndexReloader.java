@@ -0,0 +1,269 @@
+package org.benja.tpu_tsb_2.business;
+
+import org.benja.tpu_tsb_2.persistence.CsvDataIterator;
+import org.benja.tpu_tsb_2.persistence.SeriesChangeLog;
+import org.benja.tpu_tsb_2.support.EIndexStatus;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Clase que mantiene el índice de series publicado y lo reconstruye en segundo plano cuando cambia el archivo csv o su
+ * registro de cambios.
+ *
+ * El índice publicado nunca se modifica: cada recarga construye un SeriesIndexController nuevo en el hilo de
+ * recarga y lo publica reemplazando una referencia atómica (copy-on-write). Las consultas obtienen el índice con
+ * current() al comenzar, por lo que una consulta en curso termina sobre el índice anterior aunque se publique uno
+ * nuevo mientras tanto, y ninguna consulta espera a que termine una recarga. Si la recarga falla se conserva el
+ * índice anterior.
+ * El índice nuevo se construye con loadIndex(): cuando al archivo csv o a su registro de cambios sólo se le agregaron
+ * filas al final, se abre la instantánea guardada por la carga anterior (que ya refleja los cambios aplicados) y se
+ * procesan únicamente las filas agregadas (processAppendedRows() y applyChangeLog()); el archivo completo sólo se
+ * vuelve a procesar si cambió alguna de las filas ya indexadas.
+ *
+ * Los cambios se detectan con un WatchService sobre el directorio del archivo csv. Como una escritura suele generar
+ * varios eventos seguidos, la recarga comienza luego de QUIET_PERIOD_MILLIS sin eventos.
+ * */
+public class SeriesIndexReloader implements AutoCloseable {
+    //Tiempo sin eventos de modificación que se espera antes de recargar el índice
+    private static final long QUIET_PERIOD_MILLIS = 500;
+
+    private final Path dataFile;
+    private final AtomicReference<SeriesIndexController> current;
+
+    private volatile EIndexStatus status;
+    private volatile Consumer<EIndexStatus> statusListener;
+
+    //Métricas de las recargas: cantidad de recargas exitosas y fallidas, duración y momento (epoch) de la última
+    //recarga exitosa, y mensaje de error de la última recarga fallida
+    private final AtomicInteger reloadCount;
+    private final AtomicInteger failedReloadCount;
+    private volatile long lastReloadMillis;
+    private volatile long lastReloadTime;
+    private volatile String lastError;
+
+    private WatchService watchService;
+    private Thread watcherThread;
+
+    public SeriesIndexReloader() {
+        this(CsvDataIterator.getDefaultDataFile());
+    }
+
+    /**
+     * @param dataFile archivo csv de datos
+     * */
+    public SeriesIndexReloader(Path dataFile) {
+        this.dataFile = dataFile;
+        this.current = new AtomicReference<>();
+        this.status = EIndexStatus.LOADING;
+        this.reloadCount = new AtomicInteger();
+        this.failedReloadCount = new AtomicInteger();
+    }
+
+    /**
+     * @return el índice publicado actualmente (null si todavía no se cargó)
+     * */
+    public SeriesIndexController current() {
+        return this.current.get();
+    }
+
+    public EIndexStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * Registra el objeto a notificar en cada cambio de estado. La notificación se realiza desde el hilo que cambia
+     * el estado, que en las recargas es el hilo de recarga y no el de la interfaz gráfica
+     * */
+    public void setStatusListener(Consumer<EIndexStatus> statusListener) {
+        this.statusListener = statusListener;
+    }
+
+    public int getReloadCount() {
+        return reloadCount.get();
+    }
+
+    public int getFailedReloadCount() {
+        return failedReloadCount.get();
+    }
+
+    /**
+     * @return duración en milisegundos de la última carga o recarga exitosa
+     * */
+    public long getLastReloadMillis() {
+        return lastReloadMillis;
+    }
+
+    /**
+     * @return momento (milisegundos desde epoch) en que se publicó el índice actual, 0 si todavía no se cargó
+     * */
+    public long getLastReloadTime() {
+        return lastReloadTime;
+    }
+
+    /**
+     * @return mensaje de error de la última recarga fallida, null si ninguna falló
+     * */
+    public String getLastError() {
+        return lastError;
+    }
+
+    /**
+     * Construye el índice en el hilo invocante y lo publica. Se utiliza tanto para la carga inicial como para cada
+     * recarga; si la construcción falla se conserva el índice publicado
+     *
+     * @return true si se publicó un índice nuevo
+     * */
+    public boolean reload() {
+        return reload(null);
+    }
+
+    /**
+     * Igual que reload(), notificando el avance de la construcción del índice
+     *
+     * @param listener objeto a notificar el avance de la carga (puede ser null)
+     * @return true si se publicó un índice nuevo
+     * */
+    public boolean reload(SeriesIndexController.LoadListener listener) {
+        boolean initial = this.current.get() == null;
+        this.setStatus(initial ? EIndexStatus.LOADING : EIndexStatus.RELOADING);
+
+        long start = System.nanoTime();
+        try {
+            SeriesIndexController index = new SeriesIndexController(this.dataFile);
+            index.loadIndex(listener);
+
+            this.lastReloadMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            this.lastReloadTime = System.currentTimeMillis();
+            this.current.set(index);
+            IndexMetrics.setPublishedIndex(index);
+            if (!initial) {
+                this.reloadCount.incrementAndGet();
+            }
+            this.setStatus(EIndexStatus.READY);
+            return true;
+        } catch (RuntimeException e) {
+            this.failedReloadCount.incrementAndGet();
+            this.lastError = e.getMessage();
+            if (initial) {
+                throw e;
+            }
+            this.setStatus(EIndexStatus.FAILED);
+            return false;
+        }
+    }
+
+    /**
+     * Comienza a vigilar el directorio del archivo csv en un hilo de fondo, recargando el índice ante cada cambio del
+     * archivo csv o de su registro de cambios
+     *
+     * @return true si se pudo iniciar la vigilancia (por ejemplo, no es posible si el archivo está dentro de un jar)
+     * */
+    public synchronized boolean startWatching() {
+        if (this.watcherThread != null) {
+            return true;
+        }
+
+        Path directory = this.dataFile.toAbsolutePath().getParent();
+        try {
+            this.watchService = FileSystems.getDefault().newWatchService();
+            directory.register(this.watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException | UnsupportedOperationException | IllegalArgumentException e) {
+            this.closeWatchService();
+            return false;
+        }
+
+        this.watcherThread = new Thread(this::watch, "series-index-reloader");
+        this.watcherThread.setDaemon(true);
+        this.watcherThread.start();
+        return true;
+    }
+
+    /**
+     * Detiene la vigilancia del archivo csv. El índice publicado sigue disponible
+     * */
+    @Override
+    public synchronized void close() {
+        if (this.watcherThread != null) {
+            this.watcherThread.interrupt();
+            this.watcherThread = null;
+        }
+        this.closeWatchService();
+    }
+
+    //Métodos privados de la clase
+
+    /**
+     * Ciclo del hilo de recarga: espera un evento sobre el archivo csv o su registro de cambios, espera a que dejen
+     * de llegar eventos y recarga el índice
+     * */
+    private void watch() {
+        WatchService watcher = this.watchService;
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                boolean changed = this.isDataFileEvent(watcher.take());
+                WatchKey key;
+                while ((key = watcher.poll(QUIET_PERIOD_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    changed |= this.isDataFileEvent(key);
+                }
+
+                if (changed) {
+                    this.reload();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            //Vigilancia detenida con close()
+        }
+    }
+
+    /**
+     * Consume los eventos de la clave y la rearma
+     *
+     * @return true si alguno de los eventos corresponde al archivo csv o a su registro de cambios (los cambios de
+     * otros archivos, como la instantánea del índice, se ignoran)
+     * */
+    private boolean isDataFileEvent(WatchKey key) {
+        Path dataFileName = this.dataFile.getFileName();
+        Path changeLogName = SeriesChangeLog.changeLogFileFor(this.dataFile).getFileName();
+
+        boolean matches = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            Object context = event.context();
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || dataFileName.equals(context) || changeLogName.equals(context)) {
+                matches = true;
+            }
+        }
+        key.reset();
+
+        return matches;
+    }
+
+    private void setStatus(EIndexStatus status) {
+        this.status = status;
+        Consumer<EIndexStatus> listener = this.statusListener;
+        if (listener != null) {
+            listener.accept(status);
+        }
+    }
+
+    private void closeWatchService() {
+        if (this.watchService != null) {
+            try {
+                this.watchService.close();
+            } catch (IOException e) {
+                //El servicio ya no se utiliza
+            }
+            this.watchService = null;
+        }
+    }
+}
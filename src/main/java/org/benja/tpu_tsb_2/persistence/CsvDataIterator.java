@@ -1,22 +1,45 @@
 package org.benja.tpu_tsb_2.persistence;
 
-import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Iterator;
-import java.util.Scanner;
 
 /**
  * Clase utilizada para cargar datos desde el archivo csv, fila por fila.
  * Está implementada como un iterator simple, con los métodos hasNext() y next()
  * para recorrer fila por fila el archivo en un ciclo while.
+ * Las filas se separan en columnas con CsvTokenizer, por lo que se respetan los campos entre comillas
+ * (que pueden contener comas, comillas escapadas y saltos de línea).
  * */
 public class CsvDataIterator implements Iterator<String[]> {
-    private File csvFile;
-    private Scanner fileScanner;
+    private CsvTokenizer tokenizer;
+    //Siguiente fila ya leida del archivo, o null si no quedan filas
+    private String[] nextRow;
 
     public CsvDataIterator() {
+        this(CsvDataIterator.getDefaultDataFile());
+    }
+
+    public CsvDataIterator(Path dataFile) {
+        try {
+            this.tokenizer = new CsvTokenizer(Files.newBufferedReader(dataFile, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new RuntimeException("Archivo no encontrado");
+        }
+
+        this.nextRow = this.tokenizer.nextRecord();
+    }
+
+    /**
+     * Obtiene la ubicación del archivo csv de datos incluido en los recursos de la aplicación
+     *
+     * @return path del archivo csv de datos
+     * */
+    public static Path getDefaultDataFile() {
         URL fileUrl = CsvDataIterator.class.getResource("series_data_clean.csv");
 
         if (fileUrl == null) {
@@ -24,17 +47,12 @@ public class CsvDataIterator implements Iterator<String[]> {
         }
 
         try {
-            this.csvFile = new File(fileUrl.toURI());
+            return Path.of(fileUrl.toURI());
         } catch (URISyntaxException e) {
             throw new RuntimeException("Error leyendo el path del archivo");
         }
-
-        try {
-            this.fileScanner = new Scanner(this.csvFile);
-        } catch (FileNotFoundException e) {
-            throw new RuntimeException("Archivo no encontrado");
-        }
     }
+
     /**
      * Consulta si existe otra fila dentro del csv para ser leida
      *
@@ -42,7 +60,7 @@ public class CsvDataIterator implements Iterator<String[]> {
      * */
     @Override
     public boolean hasNext() {
-        return this.fileScanner.hasNextLine();
+        return this.nextRow != null;
     }
 
     /**
@@ -58,7 +76,8 @@ public class CsvDataIterator implements Iterator<String[]> {
             throw new NullPointerException("El archivo no tiene otra fila para leer");
         }
 
-        return this.fileScanner.nextLine().split(",");
+        String[] row = this.nextRow;
+        this.nextRow = this.tokenizer.nextRecord();
+        return row;
     }
-
 }
@@ -0,0 +1,214 @@
+package org.benja.tpu_tsb_2.persistence;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Separador de registros csv según el formato RFC 4180, implementado como una máquina de estados que recorre
+ * una única vez un buffer de caracteres, sin expresiones regulares.
+ *
+ * Soporta:
+ * - campos entre comillas dobles, que pueden contener el delimitador (por ejemplo sinopsis con comas),
+ * - comillas escapadas dentro de un campo entre comillas ("" representa una comilla literal),
+ * - saltos de línea dentro de un campo entre comillas (un registro puede ocupar varias líneas físicas),
+ * - fines de línea LF y CRLF.
+ *
+ * Puede leer en forma incremental desde un Reader (nextRecord()) o separar un registro ya delimitado
+ * (parseRecord()). Una comilla que aparece en medio de un campo sin comillas se toma como un caracter común.
+ * */
+public class CsvTokenizer {
+    //Tamaño del buffer de caracteres utilizado al leer desde un Reader
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    //Estados de la máquina de estados
+    private static final int FIELD_START = 0;
+    private static final int UNQUOTED = 1;
+    private static final int QUOTED = 2;
+    private static final int QUOTE_IN_QUOTED = 3;
+
+    private final Reader reader;
+    private final char delimiter;
+
+    private char[] buffer;
+    private int position;
+    private int limit;
+    private boolean endOfInput;
+
+    //Estructuras reutilizadas entre registros para acumular el campo y los campos del registro actual
+    private final StringBuilder field;
+    private final List<String> fields;
+
+    public CsvTokenizer(Reader reader) {
+        this(reader, ',');
+    }
+
+    public CsvTokenizer(Reader reader, char delimiter) {
+        this.reader = reader;
+        this.delimiter = delimiter;
+        this.buffer = new char[BUFFER_SIZE];
+        this.position = 0;
+        this.limit = 0;
+        this.endOfInput = false;
+        this.field = new StringBuilder(256);
+        this.fields = new ArrayList<>();
+    }
+
+    /**
+     * Constructor utilizado por parseRecord(): el buffer es el registro completo y no hay Reader del cual leer más
+     * */
+    private CsvTokenizer(char[] record, char delimiter) {
+        this.reader = null;
+        this.delimiter = delimiter;
+        this.buffer = record;
+        this.position = 0;
+        this.limit = record.length;
+        this.endOfInput = true;
+        this.field = new StringBuilder(Math.min(record.length, 256));
+        this.fields = new ArrayList<>();
+    }
+
+    /**
+     * Separa en campos un registro csv completo (que puede contener campos entre comillas y saltos de línea dentro de ellos)
+     *
+     * @param record el texto del registro, sin el fin de línea final
+     * @return array de campos del registro, con las comillas de cada campo ya removidas
+     * */
+    public static String[] parseRecord(String record) {
+        return parseRecord(record, ',');
+    }
+
+    public static String[] parseRecord(String record, char delimiter) {
+        String[] fields = new CsvTokenizer(record.toCharArray(), delimiter).nextRecord();
+        return fields != null ? fields : new String[] {""};
+    }
+
+    /**
+     * Lee el siguiente registro.
+     *
+     * @return array de campos del registro, o null si no quedan registros por leer
+     * */
+    public String[] nextRecord() {
+        if (this.position >= this.limit && !this.fill()) {
+            return null;
+        }
+
+        this.fields.clear();
+        this.field.setLength(0);
+        int state = FIELD_START;
+
+        while (this.position < this.limit || this.fill()) {
+            char c = this.buffer[this.position++];
+
+            switch (state) {
+                case FIELD_START:
+                case UNQUOTED:
+                    if (c == this.delimiter) {
+                        this.endField();
+                        state = FIELD_START;
+                    }
+                    else if (c == '\n') {
+                        return this.endRecord();
+                    }
+                    else if (c == '\r') {
+                        this.skipLineFeed();
+                        return this.endRecord();
+                    }
+                    else if (c == '"' && state == FIELD_START) {
+                        state = QUOTED;
+                    }
+                    else {
+                        this.field.append(c);
+                        state = UNQUOTED;
+                    }
+                    break;
+
+                case QUOTED:
+                    if (c == '"') {
+                        state = QUOTE_IN_QUOTED;
+                    }
+                    else {
+                        this.field.append(c);
+                    }
+                    break;
+
+                case QUOTE_IN_QUOTED:
+                    if (c == '"') {
+                        //Comilla escapada: se agrega una comilla literal y se sigue dentro del campo
+                        this.field.append('"');
+                        state = QUOTED;
+                    }
+                    else if (c == this.delimiter) {
+                        this.endField();
+                        state = FIELD_START;
+                    }
+                    else if (c == '\n') {
+                        return this.endRecord();
+                    }
+                    else if (c == '\r') {
+                        this.skipLineFeed();
+                        return this.endRecord();
+                    }
+                    else {
+                        //Caracter luego de la comilla de cierre: no es RFC 4180 válido, se conserva como parte del campo
+                        this.field.append(c);
+                        state = UNQUOTED;
+                    }
+                    break;
+            }
+        }
+
+        return this.endRecord();
+    }
+
+    //Métodos privados de la clase
+
+    private void endField() {
+        this.fields.add(this.field.toString());
+        this.field.setLength(0);
+    }
+
+    private String[] endRecord() {
+        this.endField();
+        return this.fields.toArray(new String[0]);
+    }
+
+    /**
+     * Consume el LF de un fin de línea CRLF, si corresponde
+     * */
+    private void skipLineFeed() {
+        if ((this.position < this.limit || this.fill()) && this.buffer[this.position] == '\n') {
+            this.position++;
+        }
+    }
+
+    /**
+     * Carga el siguiente bloque de caracteres del Reader en el buffer.
+     *
+     * @return true si se cargaron caracteres, false si se llegó al final de la entrada
+     * */
+    private boolean fill() {
+        if (this.endOfInput) {
+            return false;
+        }
+
+        try {
+            int read;
+            do {
+                read = this.reader.read(this.buffer, 0, this.buffer.length);
+            } while (read == 0);
+
+            if (read < 0) {
+                this.endOfInput = true;
+                return false;
+            }
+
+            this.position = 0;
+            this.limit = read;
+            return true;
+        } catch (IOException e) {
+            throw new RuntimeException("Error leyendo el archivo de datos", e);
+        }
+    }
+}
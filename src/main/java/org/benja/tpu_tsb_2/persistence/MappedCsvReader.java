@@ -0,0 +1,506 @@
+package org.benja.tpu_tsb_2.persistence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Lector de archivos csv basado en un archivo mapeado en memoria (FileChannel.map).
+ *
+ * En lugar de leer el archivo línea por línea y separar cada línea con expresiones regulares, recorre
+ * directamente los bytes del archivo buscando separadores y fines de línea, y registra para la fila actual
+ * la posición de inicio y fin de cada columna dentro del buffer. Los strings sólo se crean para las columnas
+ * que el invocante efectivamente pide, y las columnas numéricas pueden convertirse sin crear ningún string.
+ *
+ * Ofrece dos formas de uso:
+ * - Un cursor de bajo nivel: nextRow() avanza a la siguiente fila y getField(), getIntField(), getFloatField()
+ *   y getFieldParts() leen columnas de la fila actual.
+ * - La misma interfaz Iterator&lt;String[]&gt; que CsvDataIterator, que materializa todas las columnas de cada fila.
+ *
+ * Los archivos más grandes que la ventana de mapeo se recorren remapeando ventanas sucesivas, cada una
+ * comenzando al principio de la fila en curso. El contenido se interpreta como UTF-8.
+ *
+ * La lectura puede comenzar en una posición intermedia del archivo (por ejemplo, la cantidad de bytes consumidos
+ * en una lectura anterior), lo que permite procesar sólo las filas agregadas al final del archivo.
+ *
+ * Respeta los campos entre comillas de RFC 4180 con las mismas reglas que CsvTokenizer: un campo entre comillas
+ * puede contener el delimitador, saltos de línea y comillas escapadas (""). Las posiciones registradas para un
+ * campo entre comillas excluyen las comillas que lo rodean, y las comillas escapadas sólo se procesan al
+ * materializar el campo.
+ * */
+public class MappedCsvReader implements Iterator<String[]>, AutoCloseable {
+    //Tamaño máximo de cada ventana del archivo mapeada en memoria
+    private static final int WINDOW_SIZE = 64 * 1024 * 1024;
+    //Cantidad inicial de columnas por fila para dimensionar los arrays de posiciones
+    private static final int INITIAL_FIELDS = 16;
+
+    //Tipos de columna: sin comillas escapadas, con comillas escapadas ("") a procesar al materializarla, o con texto
+    //luego de la comilla de cierre (fuera de RFC 4180), que se materializa con CsvTokenizer para usar su mismo criterio
+    private static final byte PLAIN_FIELD = 0;
+    private static final byte ESCAPED_FIELD = 1;
+    private static final byte MALFORMED_FIELD = 2;
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private final byte delimiter;
+
+    //Ventana del archivo mapeada actualmente, su posición dentro del archivo y una vista para copiar bytes
+    private MappedByteBuffer window;
+    private ByteBuffer windowView;
+    private long windowStart;
+
+    //Posición (relativa a la ventana) desde la que comienza la siguiente fila
+    private int position;
+
+    //Posiciones de inicio y fin (relativas a la ventana) de cada columna de la fila actual
+    private int[] fieldStarts;
+    private int[] fieldEnds;
+    //Tipo de cada columna de la fila actual: PLAIN_FIELD, ESCAPED_FIELD o MALFORMED_FIELD
+    private byte[] fieldKinds;
+    private int fieldCount;
+    private int rowStart;
+    private int rowEnd;
+    //Indica si la fila actual termina con un fin de línea (false si es la última fila y el archivo no termina en '\n')
+    private boolean rowTerminated;
+
+    //Estado del adaptador Iterator: indica si ya se avanzó a una fila que todavía no fue devuelta por next()
+    private boolean rowPending;
+    private boolean rowAvailable;
+
+    //Buffer reutilizado para copiar los bytes de una columna antes de decodificarla
+    private byte[] scratch;
+
+    public MappedCsvReader(Path file) {
+        this(file, (byte) ',');
+    }
+
+    public MappedCsvReader(Path file, byte delimiter) {
+        this(file, delimiter, 0);
+    }
+
+    /**
+     * Crea un lector que comienza a leer en la posición indicada del archivo
+     *
+     * @param file archivo csv
+     * @param delimiter separador de columnas
+     * @param start posición (en bytes) del comienzo de una fila, entre 0 y el tamaño del archivo
+     * */
+    public MappedCsvReader(Path file, byte delimiter, long start) {
+        try {
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+            this.fileSize = this.channel.size();
+        } catch (IOException e) {
+            throw new RuntimeException("Error abriendo el archivo " + file, e);
+        }
+        if (start < 0 || start > this.fileSize) {
+            this.close();
+            throw new IndexOutOfBoundsException("MappedCsvReader: posición inicial fuera del archivo: " + start);
+        }
+
+        this.delimiter = delimiter;
+        this.fieldStarts = new int[INITIAL_FIELDS];
+        this.fieldEnds = new int[INITIAL_FIELDS];
+        this.fieldKinds = new byte[INITIAL_FIELDS];
+        this.scratch = new byte[256];
+        this.mapWindow(start);
+    }
+
+    //Cursor de bajo nivel
+
+    /**
+     * Avanza a la siguiente fila del archivo y registra las posiciones de sus columnas.
+     *
+     * @return true si se leyó una fila, false si se llegó al final del archivo
+     * */
+    public boolean nextRow() {
+        this.rowPending = false;
+
+        while (true) {
+            int limit = this.window.limit();
+            if (this.position >= limit && this.windowStart + limit >= this.fileSize) {
+                this.fieldCount = 0;
+                return false;
+            }
+
+            if (this.scanRow()) {
+                return true;
+            }
+
+            //La fila no terminó dentro de la ventana actual: se remapea a partir del comienzo de la fila
+            if (this.position == 0) {
+                throw new RuntimeException("Fila del archivo csv más larga que la ventana de lectura");
+            }
+            this.mapWindow(this.windowStart + this.position);
+        }
+    }
+
+    /**
+     * @return cantidad de columnas de la fila actual
+     * */
+    public int getFieldCount() {
+        return this.fieldCount;
+    }
+
+    /**
+     * @return el contenido de la columna indicada de la fila actual
+     * */
+    public String getField(int index) {
+        this.checkField(index);
+        String value = this.decode(this.fieldStarts[index], this.fieldEnds[index]);
+        switch (this.fieldKinds[index]) {
+            case ESCAPED_FIELD:
+                return value.replace("\"\"", "\"");
+            case MALFORMED_FIELD:
+                return CsvTokenizer.parseRecord(value, (char) this.delimiter)[0];
+            default:
+                return value;
+        }
+    }
+
+    /**
+     * Convierte la columna indicada a entero sin crear ningún string.
+     *
+     * @return el valor entero de la columna
+     * @throws NumberFormatException si la columna no contiene un entero válido
+     * */
+    public int getIntField(int index) {
+        this.checkField(index);
+        int start = this.fieldStarts[index];
+        int end = this.fieldEnds[index];
+
+        boolean negative = start < end && this.window.get(start) == '-';
+        int i = negative ? start + 1 : start;
+        if (i >= end) {
+            throw new NumberFormatException("Columna " + index + " vacía o sin dígitos");
+        }
+
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = this.window.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return Integer.parseInt(this.getField(index));
+            }
+            value = value * 10 + digit;
+            if (value > Integer.MAX_VALUE) {
+                return Integer.parseInt(this.getField(index));
+            }
+        }
+
+        return (int) (negative ? -value : value);
+    }
+
+    /**
+     * Convierte la columna indicada a float. Los valores de la forma "ddd.ddd" (como los puntajes del archivo)
+     * se convierten sin crear ningún string; cualquier otro formato se delega en Float.parseFloat().
+     *
+     * @return el valor de la columna
+     * @throws NumberFormatException si la columna no contiene un número válido
+     * */
+    public float getFloatField(int index) {
+        this.checkField(index);
+        int start = this.fieldStarts[index];
+        int end = this.fieldEnds[index];
+
+        long mantissa = 0;
+        int decimals = -1;
+        int digits = 0;
+        for (int i = start; i < end; i++) {
+            byte b = this.window.get(i);
+            if (b == '.' && decimals < 0) {
+                decimals = 0;
+            }
+            else if (b >= '0' && b <= '9' && digits < 9) {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (decimals >= 0) decimals++;
+            }
+            else {
+                return Float.parseFloat(this.getField(index));
+            }
+        }
+        if (digits == 0) {
+            throw new NumberFormatException("Columna " + index + " vacía o sin dígitos");
+        }
+
+        return decimals > 0 ? (float) (mantissa / Math.pow(10, decimals)) : (float) mantissa;
+    }
+
+    /**
+     * Separa la columna indicada en partes según el separador dado (por ejemplo los géneros "Action|Drama"),
+     * creando un string por parte pero no el string de la columna completa.
+     * Sigue la misma regla que String.split: las partes vacías del final se descartan ("Action|" da sólo "Action"),
+     * salvo cuando la columna no contiene el separador, en cuyo caso se devuelve la columna completa aunque esté vacía.
+     *
+     * @return array con las partes de la columna
+     * */
+    public String[] getFieldParts(int index, char separator) {
+        this.checkField(index);
+        if (this.fieldKinds[index] != PLAIN_FIELD) {
+            return this.getField(index).split(java.util.regex.Pattern.quote(String.valueOf(separator)));
+        }
+
+        int start = this.fieldStarts[index];
+        int end = this.fieldEnds[index];
+
+        int parts = 1;
+        for (int i = start; i < end; i++) {
+            if (this.window.get(i) == separator) parts++;
+        }
+        if (parts == 1) {
+            return new String[]{this.decode(start, end)};
+        }
+
+        //Se descartan los separadores finales que sólo delimitan partes vacías
+        while (end > start && this.window.get(end - 1) == separator) {
+            end--;
+            parts--;
+        }
+        if (end == start) {
+            return new String[0];
+        }
+
+        String[] result = new String[parts];
+        int part = 0;
+        int partStart = start;
+        for (int i = start; i < end; i++) {
+            if (this.window.get(i) == separator) {
+                result[part++] = this.decode(partStart, i);
+                partStart = i + 1;
+            }
+        }
+        result[part] = this.decode(partStart, end);
+
+        return result;
+    }
+
+    /**
+     * @return el contenido completo de la fila actual, tal como aparece en el archivo
+     * */
+    public String getRowText() {
+        if (this.fieldCount == 0) {
+            throw new NoSuchElementException("MappedCsvReader: no hay una fila actual");
+        }
+        return this.decode(this.rowStart, this.rowEnd);
+    }
+
+    /**
+     * @return cantidad de bytes del archivo consumidos hasta el final de la fila actual (incluido su fin de línea)
+     * */
+    public long getConsumedBytes() {
+        return this.windowStart + this.position;
+    }
+
+    /**
+     * @return true si la fila actual termina con un fin de línea. La última fila de un archivo que todavía se está
+     * escribiendo puede estar incompleta, en cuyo caso no termina con un fin de línea
+     * */
+    public boolean isRowTerminated() {
+        return this.rowTerminated;
+    }
+
+    /**
+     * @return tamaño del archivo en bytes
+     * */
+    public long getFileSize() {
+        return this.fileSize;
+    }
+
+    //Adaptador Iterator<String[]>
+
+    /**
+     * Consulta si existe otra fila dentro del csv para ser leida
+     *
+     * @return si existe otra fila para ser leida
+     * */
+    @Override
+    public boolean hasNext() {
+        if (!this.rowPending) {
+            this.rowAvailable = this.nextRow();
+            this.rowPending = true;
+        }
+        return this.rowAvailable;
+    }
+
+    /**
+     * Extrae la siguiente fila del archivo csv y la devuelve como un array de strings
+     * con un elemento por cada columna de la fila.
+     *
+     * @return array de celdas de la fila leida representadas como strings
+     * @throws NullPointerException si no existe otra fila para ser leida
+     * */
+    @Override
+    public String[] next() throws NullPointerException {
+        if (!hasNext()) {
+            throw new NullPointerException("El archivo no tiene otra fila para leer");
+        }
+        this.rowPending = false;
+
+        String[] row = new String[this.fieldCount];
+        for (int i = 0; i < row.length; i++) {
+            row[i] = this.getField(i);
+        }
+        return row;
+    }
+
+    @Override
+    public void close() {
+        try {
+            this.channel.close();
+        } catch (IOException e) {
+            throw new RuntimeException("Error cerrando el archivo de datos", e);
+        }
+    }
+
+    //Métodos privados de la clase
+
+    /**
+     * Recorre los bytes de la ventana desde la posición actual hasta el próximo fin de línea, registrando
+     * las posiciones de cada columna.
+     *
+     * @return true si la fila terminó dentro de la ventana (o al final del archivo), false si hace falta remapear
+     * */
+    private boolean scanRow() {
+        MappedByteBuffer buffer = this.window;
+        int limit = buffer.limit();
+        boolean lastWindow = this.windowStart + limit >= this.fileSize;
+
+        int fields = 0;
+        int fieldStart = this.position;
+        //Fin del contenido de un campo entre comillas (posición de la comilla de cierre), -1 si el campo no tiene comillas
+        int quotedEnd = -1;
+        boolean escaped = false;
+        int i = this.position;
+        while (i < limit) {
+            byte b = buffer.get(i);
+            if (b == '"' && i == fieldStart) {
+                //Campo entre comillas: se busca la comilla de cierre, saltando las comillas escapadas
+                i++;
+                while (true) {
+                    if (i >= limit) {
+                        if (!lastWindow) return false;
+                        quotedEnd = limit;
+                        break;
+                    }
+                    if (buffer.get(i) == '"') {
+                        if (i + 1 >= limit && !lastWindow) return false;
+                        if (i + 1 < limit && buffer.get(i + 1) == '"') {
+                            escaped = true;
+                            i += 2;
+                            continue;
+                        }
+                        quotedEnd = i;
+                        break;
+                    }
+                    i++;
+                }
+                i++;
+                continue;
+            }
+
+            if (b == this.delimiter) {
+                fields = this.addField(fields, fieldStart, i, quotedEnd, escaped);
+                fieldStart = i + 1;
+                quotedEnd = -1;
+                escaped = false;
+            }
+            else if (b == '\n') {
+                int end = (i > fieldStart && buffer.get(i - 1) == '\r') ? i - 1 : i;
+                fields = this.addField(fields, fieldStart, end, quotedEnd, escaped);
+                this.finishRow(fields, end, i + 1, true);
+                return true;
+            }
+            i++;
+        }
+
+        if (!lastWindow) {
+            return false;
+        }
+
+        int end = (limit > fieldStart && buffer.get(limit - 1) == '\r') ? limit - 1 : limit;
+        fields = this.addField(fields, fieldStart, end, quotedEnd, escaped);
+        this.finishRow(fields, end, limit, false);
+        return true;
+    }
+
+    /**
+     * Registra las posiciones de una columna de la fila actual. Si la columna está entre comillas (quotedEnd >= 0)
+     * se registra sólo su contenido; cualquier caracter posterior a la comilla de cierre se conserva como parte
+     * del campo, igual que en CsvTokenizer.
+     * */
+    private int addField(int fields, int start, int end, int quotedEnd, boolean escaped) {
+        if (fields == this.fieldStarts.length) {
+            this.fieldStarts = Arrays.copyOf(this.fieldStarts, fields * 2);
+            this.fieldEnds = Arrays.copyOf(this.fieldEnds, fields * 2);
+            this.fieldKinds = Arrays.copyOf(this.fieldKinds, fields * 2);
+        }
+
+        byte kind = escaped ? ESCAPED_FIELD : PLAIN_FIELD;
+        if (quotedEnd >= 0 && quotedEnd + 1 >= end) {
+            start = start + 1;
+            end = Math.min(quotedEnd, end);
+        }
+        else if (quotedEnd >= 0) {
+            kind = MALFORMED_FIELD;
+        }
+
+        this.fieldStarts[fields] = start;
+        this.fieldEnds[fields] = end;
+        this.fieldKinds[fields] = kind;
+        return fields + 1;
+    }
+
+    private void finishRow(int fields, int end, int nextPosition, boolean terminated) {
+        this.fieldCount = fields;
+        this.rowTerminated = terminated;
+        this.rowStart = this.position;
+        this.rowEnd = end;
+        this.position = nextPosition;
+    }
+
+    private void checkField(int index) {
+        if (index < 0 || index >= this.fieldCount) {
+            throw new IndexOutOfBoundsException("MappedCsvReader: la fila actual no tiene la columna " + index);
+        }
+    }
+
+    /**
+     * Decodifica como UTF-8 los bytes de la ventana comprendidos entre las posiciones indicadas.
+     * */
+    private String decode(int start, int end) {
+        int length = end - start;
+        if (length <= 0) {
+            return "";
+        }
+        if (length > this.scratch.length) {
+            this.scratch = new byte[Math.max(length, this.scratch.length * 2)];
+        }
+
+        this.windowView.position(start);
+        this.windowView.get(this.scratch, 0, length);
+        return new String(this.scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Mapea en memoria una ventana del archivo a partir de la posición indicada.
+     * */
+    private void mapWindow(long start) {
+        long size = Math.min(WINDOW_SIZE, this.fileSize - start);
+        try {
+            this.window = this.channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+        } catch (IOException e) {
+            throw new RuntimeException("Error mapeando el archivo de datos", e);
+        }
+
+        this.windowView = this.window.duplicate();
+        this.windowStart = start;
+        this.position = 0;
+        this.fieldCount = 0;
+    }
+}
@@ -0,0 +1,29 @@
+package org.benja.tpu_tsb_2.persistence;
+
+import java.nio.file.Path;
+
+/**
+ * Formato del registro de cambios de las series: un archivo csv ubicado junto al archivo de datos (con extensión
+ * .changes), sin fila de cabeceras, al que sólo se le agregan filas. La primera columna de cada fila indica la operación:
+ *
+ * - U,&lt;columnas de la serie&gt;: reemplaza la serie con el mismo título por la de la fila, o la agrega si no existía.
+ *   Las columnas de la serie son las mismas, y en el mismo orden, que las del archivo de datos.
+ * - D,&lt;título&gt;: elimina la serie con el título indicado (si no existe, la fila se ignora).
+ *
+ * Las filas se aplican en orden, luego de todas las filas del archivo de datos, por lo que el índice resultante es
+ * el mismo si el registro se aplica completo al iniciar la aplicación o de a partes a medida que crece.
+ * */
+public class SeriesChangeLog {
+    public static final String UPDATE = "U";
+    public static final String DELETE = "D";
+
+    private SeriesChangeLog() {
+    }
+
+    /**
+     * @return ubicación del registro de cambios correspondiente a un archivo csv (junto al archivo, con extensión .changes)
+     * */
+    public static Path changeLogFileFor(Path csvFile) {
+        return csvFile.resolveSibling(csvFile.getFileName() + ".changes");
+    }
+}
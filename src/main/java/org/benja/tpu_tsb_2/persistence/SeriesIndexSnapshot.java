@@ -0,0 +1,489 @@
+package org.benja.tpu_tsb_2.persistence;
+
+import org.benja.tpu_tsb_2.support.ActorIndex;
+import org.benja.tpu_tsb_2.support.ESortKey;
+import org.benja.tpu_tsb_2.support.InvertedIndex;
+import org.benja.tpu_tsb_2.support.SeriesColumnStore;
+import org.benja.tpu_tsb_2.support.TSBObjectIntHashTable;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Instantánea binaria del índice de series construido a partir del archivo csv y su registro de cambios, utilizada
+ * para evitar volver a procesar los archivos en cada inicio de la aplicación y en cada recarga del índice.
+ *
+ * Formato (todos los enteros en big endian):
+ * - encabezado: MAGIC, VERSION, y para el archivo csv y para el registro de cambios la cantidad de bytes procesados
+ *   y el CRC32 del primer y el último bloque de esos bytes (ver checksum()),
+ * - diccionario de strings: cada string distinto (títulos, sinopsis, calificaciones, actores, géneros...) aparece
+ *   una única vez, como longitud + bytes UTF-8,
+ * - columnas de series: para cada columna de texto un array de índices al diccionario, las columnas de puntaje
+ *   (float) y votos (int) como arrays primitivos, y los ids de fila de las series eliminadas por el registro de
+ *   cambios (sus datos se conservan para que los ids de fila del resto no cambien),
+ * - géneros: para cada género el índice de su nombre en el diccionario, el array de ids de las series que le
+ *   pertenecen (en el orden de carga), el array de 10 contadores por puntaje y los ids de las series ordenados según
+ *   cada criterio de ESortKey, para no volver a ordenarlos al abrir la instantánea,
+ * - índice invertido de títulos y sinopsis: las longitudes de los documentos, los ids de los documentos eliminados y,
+ *   para cada término, el índice del término en el diccionario, su cantidad de documentos, su último documento y su
+ *   lista comprimida de documentos tal como la guarda InvertedIndex. Así el índice de texto se abre sin volver a
+ *   separar en términos los títulos y sinopsis,
+ * - índice de actores: para cada actor el índice de su nombre en el diccionario, los ids de sus series y sus
+ *   coprotagonistas con la cantidad de series compartidas, y los ids de los actores de cada fila, tal como los
+ *   guarda ActorIndex.
+ *
+ * La lectura se hace sobre el archivo mapeado en memoria, copiando los arrays de enteros en bloque, y el
+ * SeriesColumnStore del índice se crea con SeriesColumnStore.fromColumns() a partir de las columnas y los postings
+ * decodificados, sin volver a agregar las series ni sus géneros de a una.
+ * La instantánea sigue siendo válida mientras el archivo csv y el registro de cambios comiencen con los bytes que
+ * se procesaron al construirla: si sólo se agregaron filas al final, el índice se abre desde la instantánea y se
+ * procesan únicamente las filas agregadas a partir de getCsvSize() y getChangeLogSize(). Si alguno de los archivos
+ * se acortó o cambió su primer o su último bloque procesado, la instantánea se invalida. Para no recorrer el archivo
+ * completo en cada apertura sólo se verifican esos dos bloques: las modificaciones de series ya indexadas deben
+ * hacerse con el registro de cambios (SeriesChangeLog), no editando el archivo csv.
+ * */
+public class SeriesIndexSnapshot {
+    //Identificador de los archivos de instantánea ("TSBI") y versión del formato
+    private static final int MAGIC = 0x54534249;
+    private static final int VERSION = 5;
+
+    //Cantidad de columnas de texto de cada serie (título, emisión, calificación, duración, sinopsis, 4 protagonistas)
+    private static final int TEXT_COLUMNS = 9;
+
+    //Tamaño del primer y del último bloque de los bytes procesados de cada archivo que se incluyen en su CRC32
+    private static final int CHECKSUM_BLOCK = 64 * 1024;
+
+    //Cantidad de enteros que se convierten a bytes de una vez al escribir un arreglo
+    private static final int WRITE_BLOCK = 16 * 1024;
+
+    private final long csvSize;
+    private final long changeLogSize;
+    private final SeriesColumnStore store;
+    private final String[] genres;
+    private final int[][] histograms;
+    private final InvertedIndex textIndex;
+    private final ActorIndex actorIndex;
+
+    private SeriesIndexSnapshot(long csvSize, long changeLogSize, SeriesColumnStore store, String[] genres, int[][] histograms,
+                                InvertedIndex textIndex, ActorIndex actorIndex) {
+        this.csvSize = csvSize;
+        this.changeLogSize = changeLogSize;
+        this.store = store;
+        this.genres = genres;
+        this.histograms = histograms;
+        this.textIndex = textIndex;
+        this.actorIndex = actorIndex;
+    }
+
+    /**
+     * @return ubicación de la instantánea correspondiente a un archivo csv (junto al archivo, con extensión .idx)
+     * */
+    public static Path snapshotFileFor(Path csvFile) {
+        return csvFile.resolveSibling(csvFile.getFileName() + ".idx");
+    }
+
+    /**
+     * @return cantidad de bytes del archivo csv procesados al construir la instantánea. El archivo puede haber crecido
+     * desde entonces: las filas a partir de esta posición no forman parte de la instantánea
+     * */
+    public long getCsvSize() {
+        return csvSize;
+    }
+
+    /**
+     * @return cantidad de bytes del registro de cambios ya aplicados en la instantánea (0 si no se aplicó ninguno).
+     * Las filas del registro a partir de esta posición no forman parte de la instantánea
+     * */
+    public long getChangeLogSize() {
+        return changeLogSize;
+    }
+
+    /**
+     * @return el almacén con todas las series y los postings de cada género
+     * */
+    public SeriesColumnStore getStore() {
+        return store;
+    }
+
+    public String[] getGenres() {
+        return genres;
+    }
+
+    /**
+     * @return contadores de series por puntaje del género ubicado en la posición indicada de getGenres()
+     * */
+    public int[] getHistogram(int genreIndex) {
+        return histograms[genreIndex];
+    }
+
+    /**
+     * @return el índice invertido de los títulos y sinopsis de las series del almacén
+     * */
+    public InvertedIndex getTextIndex() {
+        return textIndex;
+    }
+
+    /**
+     * @return el índice de actores de las series del almacén
+     * */
+    public ActorIndex getActorIndex() {
+        return actorIndex;
+    }
+
+    /**
+     * Escribe la instantánea del índice. El archivo se escribe primero con un nombre temporal y luego se renombra,
+     * de modo que un lector nunca encuentre una instantánea a medio escribir. Si la escritura o el renombre fallan
+     * el archivo temporal se elimina.
+     *
+     * @param snapshotFile archivo de instantánea a escribir
+     * @param csvFile archivo csv a partir del cual se construyó el índice
+     * @param csvSize cantidad de bytes del archivo csv procesados al construir el índice
+     * @param changeLogSize cantidad de bytes del registro de cambios aplicados al índice
+     * @param store almacén con todas las series (incluidas las eliminadas) y los postings de cada género
+     * @param genres nombres de los géneros a guardar (los del almacén que todavía tienen series)
+     * @param histograms para cada género, los 10 contadores de series por puntaje
+     * @param textIndex índice invertido de los títulos y sinopsis de las series del almacén
+     * @param actorIndex índice de actores de las series del almacén
+     * @throws IOException si no se pudo escribir el archivo
+     * */
+    public static void write(Path snapshotFile, Path csvFile, long csvSize, long changeLogSize, SeriesColumnStore store,
+                             String[] genres, int[][] histograms, InvertedIndex textIndex, ActorIndex actorIndex) throws IOException {
+        if (genres.length != histograms.length) {
+            throw new IllegalArgumentException("SeriesIndexSnapshot.write(): se requiere un histograma por género");
+        }
+        long checksum = checksum(csvFile, csvSize);
+        long changeLogChecksum = checksum(SeriesChangeLog.changeLogFileFor(csvFile), changeLogSize);
+        int rows = store.size();
+
+        //Diccionario de strings: cada string distinto recibe un id en orden de aparición
+        TSBObjectIntHashTable<String> dictionary = new TSBObjectIntHashTable<>();
+        List<String> strings = new ArrayList<>();
+        int[][] textColumns = new int[TEXT_COLUMNS][rows];
+        for (int row = 0; row < rows; row++) {
+            String[] texts = textsOf(store, row);
+            for (int column = 0; column < TEXT_COLUMNS; column++) {
+                textColumns[column][row] = intern(texts[column], dictionary, strings);
+            }
+        }
+        int[] genreIds = new int[genres.length];
+        for (int g = 0; g < genres.length; g++) {
+            genreIds[g] = intern(genres[g], dictionary, strings);
+        }
+        int[] termIds = new int[textIndex.getTermCount()];
+        for (int t = 0; t < termIds.length; t++) {
+            termIds[t] = intern(textIndex.getTerm(t), dictionary, strings);
+        }
+        int[] actorIds = new int[actorIndex.getActorCount()];
+        for (int a = 0; a < actorIds.length; a++) {
+            actorIds[a] = intern(actorIndex.getActorName(a), dictionary, strings);
+        }
+
+        Path temporaryFile = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryFile), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(csvSize);
+                out.writeLong(checksum);
+                out.writeLong(changeLogSize);
+                out.writeLong(changeLogChecksum);
+
+                out.writeInt(strings.size());
+                for (String string : strings) {
+                    byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                }
+
+                out.writeInt(rows);
+                for (int[] column : textColumns) {
+                    writeInts(out, column);
+                }
+                float[] ratings = new float[rows];
+                int[] votes = new int[rows];
+                for (int row = 0; row < rows; row++) {
+                    ratings[row] = store.getImdbRating(row);
+                    votes[row] = store.getVotes(row);
+                }
+                writeFloats(out, ratings);
+                writeInts(out, votes);
+                int[] deletedRows = store.getDeletedRows();
+                out.writeInt(deletedRows.length);
+                writeInts(out, deletedRows);
+
+                out.writeInt(genres.length);
+                out.writeInt(ESortKey.values().length);
+                for (int g = 0; g < genres.length; g++) {
+                    int[] postings = store.getPostings(genres[g]);
+                    out.writeInt(genreIds[g]);
+                    out.writeInt(postings.length);
+                    writeInts(out, postings);
+                    writeInts(out, histograms[g]);
+                    for (ESortKey key : ESortKey.values()) {
+                        writeInts(out, store.getSortedPostings(genres[g], key));
+                    }
+                }
+
+                int[] documentLengths = textIndex.getDocumentLengths();
+                int[] deletedDocuments = textIndex.getDeletedDocuments();
+                out.writeInt(documentLengths.length);
+                writeInts(out, documentLengths);
+                out.writeInt(deletedDocuments.length);
+                writeInts(out, deletedDocuments);
+                out.writeInt(termIds.length);
+                for (int t = 0; t < termIds.length; t++) {
+                    byte[] postings = textIndex.getCompressedPostings(t);
+                    out.writeInt(termIds[t]);
+                    out.writeInt(textIndex.getDocumentFrequency(t));
+                    out.writeInt(textIndex.getLastDocument(t));
+                    out.writeInt(postings.length);
+                    out.write(postings);
+                }
+
+                out.writeInt(actorIds.length);
+                for (int a = 0; a < actorIds.length; a++) {
+                    int[] actorRows = actorIndex.getActorRows(a);
+                    int[] coStars = actorIndex.getCoStarIds(a);
+                    out.writeInt(actorIds[a]);
+                    out.writeInt(actorRows.length);
+                    writeInts(out, actorRows);
+                    out.writeInt(coStars.length);
+                    writeInts(out, coStars);
+                    writeInts(out, actorIndex.getSharedCounts(a));
+                }
+                int[] rowActors = actorIndex.getRowActors();
+                out.writeInt(rowActors.length);
+                writeInts(out, rowActors);
+            }
+
+            Files.move(temporaryFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            try {
+                Files.deleteIfExists(temporaryFile);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Lee la instantánea del índice si existe y sigue siendo válida para el archivo csv indicado y su registro de cambios.
+     *
+     * @param snapshotFile archivo de instantánea
+     * @param csvFile archivo csv a partir del cual se debe haber construido el índice
+     * @return la instantánea leida, o null si no existe, tiene otro formato o cambiaron los bytes ya procesados del
+     * archivo csv o del registro de cambios
+     * @throws IOException si hubo un error leyendo alguno de los archivos
+     * */
+    public static SeriesIndexSnapshot read(Path snapshotFile, Path csvFile) throws IOException {
+        if (!Files.isRegularFile(snapshotFile)) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 40 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return null;
+            }
+
+            long size = buffer.getLong();
+            long checksum = buffer.getLong();
+            long changeLogSize = buffer.getLong();
+            long changeLogChecksum = buffer.getLong();
+            if (!startsWith(csvFile, size, checksum)
+                    || !startsWith(SeriesChangeLog.changeLogFileFor(csvFile), changeLogSize, changeLogChecksum)) {
+                return null;
+            }
+
+            String[] strings = new String[buffer.getInt()];
+            byte[] bytes = new byte[256];
+            for (int i = 0; i < strings.length; i++) {
+                int length = buffer.getInt();
+                if (length > bytes.length) {
+                    bytes = new byte[Math.max(length, bytes.length * 2)];
+                }
+                buffer.get(bytes, 0, length);
+                strings[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+            }
+
+            int rows = buffer.getInt();
+            int[][] textColumns = new int[TEXT_COLUMNS][];
+            for (int column = 0; column < TEXT_COLUMNS; column++) {
+                textColumns[column] = readInts(buffer, rows);
+            }
+            float[] ratings = new float[rows];
+            buffer.asFloatBuffer().get(ratings);
+            buffer.position(buffer.position() + rows * Float.BYTES);
+            int[] votes = readInts(buffer, rows);
+            int[] deletedRows = readInts(buffer, buffer.getInt());
+
+            int genreCount = buffer.getInt();
+            if (buffer.getInt() != ESortKey.values().length) {
+                return null;
+            }
+            String[] genres = new String[genreCount];
+            int[][] postings = new int[genreCount][];
+            int[][] histograms = new int[genreCount][];
+            int[][][] sortedPostings = new int[genreCount][ESortKey.values().length][];
+            for (int g = 0; g < genreCount; g++) {
+                genres[g] = strings[buffer.getInt()];
+                postings[g] = readInts(buffer, buffer.getInt());
+                histograms[g] = readInts(buffer, 10);
+                for (ESortKey key : ESortKey.values()) {
+                    sortedPostings[g][key.ordinal()] = readInts(buffer, postings[g].length);
+                }
+            }
+
+            int[][] stars = Arrays.copyOfRange(textColumns, 5, 5 + SeriesColumnStore.STARS);
+            SeriesColumnStore store = SeriesColumnStore.fromColumns(strings, textColumns[0], textColumns[1], textColumns[2],
+                    textColumns[3], ratings, textColumns[4], stars, votes, genres, postings, deletedRows);
+            for (int g = 0; g < genreCount; g++) {
+                for (ESortKey key : ESortKey.values()) {
+                    store.setSortedPostings(genres[g], key, sortedPostings[g][key.ordinal()]);
+                }
+            }
+
+            int[] documentLengths = readInts(buffer, buffer.getInt());
+            int[] deletedDocuments = readInts(buffer, buffer.getInt());
+            int termCount = buffer.getInt();
+            String[] terms = new String[termCount];
+            byte[][] termPostings = new byte[termCount][];
+            int[] documentFrequencies = new int[termCount];
+            int[] lastDocuments = new int[termCount];
+            for (int t = 0; t < termCount; t++) {
+                terms[t] = strings[buffer.getInt()];
+                documentFrequencies[t] = buffer.getInt();
+                lastDocuments[t] = buffer.getInt();
+                termPostings[t] = new byte[buffer.getInt()];
+                buffer.get(termPostings[t]);
+            }
+            InvertedIndex textIndex = InvertedIndex.fromPostings(terms, termPostings, documentFrequencies, lastDocuments,
+                    documentLengths, deletedDocuments);
+
+            int actorCount = buffer.getInt();
+            String[] actorNames = new String[actorCount];
+            int[][] actorRows = new int[actorCount][];
+            int[][] coStars = new int[actorCount][];
+            int[][] sharedCounts = new int[actorCount][];
+            for (int a = 0; a < actorCount; a++) {
+                actorNames[a] = strings[buffer.getInt()];
+                actorRows[a] = readInts(buffer, buffer.getInt());
+                coStars[a] = readInts(buffer, buffer.getInt());
+                sharedCounts[a] = readInts(buffer, coStars[a].length);
+            }
+            int[] rowActors = readInts(buffer, buffer.getInt());
+            ActorIndex actorIndex = ActorIndex.fromArrays(actorNames, actorRows, coStars, sharedCounts, rowActors);
+
+            return new SeriesIndexSnapshot(size, changeLogSize, store, genres, histograms, textIndex, actorIndex);
+        } catch (java.nio.BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException | NegativeArraySizeException e) {
+            //Instantánea truncada o corrupta: se ignora y el índice se reconstruye desde el csv
+            return null;
+        }
+    }
+
+    //Métodos privados de la clase
+
+    private static String[] textsOf(SeriesColumnStore store, int row) {
+        return new String[] {
+                store.getTitle(row), store.getSeriesRuntime(row), store.getCertificate(row), store.getEpisodesRuntime(row),
+                store.getOverview(row), store.getStar(row, 0), store.getStar(row, 1), store.getStar(row, 2), store.getStar(row, 3)
+        };
+    }
+
+    private static int intern(String string, TSBObjectIntHashTable<String> dictionary, List<String> strings) {
+        int id = dictionary.getOrDefault(string, -1);
+        if (id < 0) {
+            id = strings.size();
+            strings.add(string);
+            dictionary.put(string, id);
+        }
+        return id;
+    }
+
+    /**
+     * Escribe los enteros de a bloques de WRITE_BLOCK a través de un buffer de bytes, en lugar de escribirlos de a uno
+     * con DataOutputStream.writeInt() (que pasa cada byte por separado al stream)
+     * */
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Math.min(values.length, WRITE_BLOCK) * Integer.BYTES);
+        IntBuffer ints = buffer.asIntBuffer();
+        for (int start = 0; start < values.length; start += WRITE_BLOCK) {
+            int length = Math.min(WRITE_BLOCK, values.length - start);
+            ints.clear();
+            ints.put(values, start, length);
+            out.write(buffer.array(), 0, length * Integer.BYTES);
+        }
+    }
+
+    /**
+     * Igual que writeInts(), para un arreglo de float
+     * */
+    private static void writeFloats(DataOutputStream out, float[] values) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Math.min(values.length, WRITE_BLOCK) * Float.BYTES);
+        FloatBuffer floats = buffer.asFloatBuffer();
+        for (int start = 0; start < values.length; start += WRITE_BLOCK) {
+            int length = Math.min(WRITE_BLOCK, values.length - start);
+            floats.clear();
+            floats.put(values, start, length);
+            out.write(buffer.array(), 0, length * Float.BYTES);
+        }
+    }
+
+    private static int[] readInts(ByteBuffer buffer, int count) {
+        int[] values = new int[count];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + count * Integer.BYTES);
+        return values;
+    }
+
+    /**
+     * Indica si el archivo tiene al menos length bytes y el checksum de sus primeros length bytes es el indicado.
+     * Si length es 0 el archivo puede no existir (por ejemplo, un registro de cambios que todavía no se creó)
+     * */
+    private static boolean startsWith(Path file, long length, long checksum) throws IOException {
+        if (length == 0) {
+            return true;
+        }
+
+        return Files.isRegularFile(file) && Files.size(file) >= length && checksum(file, length) == checksum;
+    }
+
+    /**
+     * Calcula el CRC32 del primer y del último bloque (CHECKSUM_BLOCK bytes) de los primeros length bytes del archivo,
+     * junto con length. Así el costo no depende del tamaño del archivo: se detecta un archivo reemplazado o editado
+     * al principio o en las últimas filas procesadas, pero no una edición en el medio que conserve esos bloques
+     * */
+    private static long checksum(Path file, long length) throws IOException {
+        CRC32 crc = new CRC32();
+        if (length == 0) {
+            return crc.getValue();
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long headLength = Math.min(CHECKSUM_BLOCK, length);
+            crc.update(channel.map(FileChannel.MapMode.READ_ONLY, 0, headLength));
+            long tailPosition = Math.max(headLength, length - CHECKSUM_BLOCK);
+            if (tailPosition < length) {
+                crc.update(channel.map(FileChannel.MapMode.READ_ONLY, tailPosition, length - tailPosition));
+            }
+        }
+        crc.update(ByteBuffer.allocate(Long.BYTES).putLong(0, length));
+        return crc.getValue();
+    }
+}
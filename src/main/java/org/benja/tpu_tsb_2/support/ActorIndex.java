@@ -0,0 +1,451 @@
+package org.benja.tpu_tsb_2.support;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Índice de actores (columnas Star1 a Star4) sobre los ids de fila de las series.
+ *
+ * - Para cada actor guarda, en un TSBHashTableDA con el nombre del actor como clave, la lista de ids de fila de las
+ *   series en las que participa (en orden creciente).
+ * - Para cada actor guarda también sus coprotagonistas (grafo de adyacencia), con la cantidad de series compartidas
+ *   con cada uno, que se actualiza al agregar cada serie.
+ * - Para cada fila guarda los ids de sus actores, lo que permite contar los actores de un conjunto de filas (por
+ *   ejemplo las series de un género) sin consultar la tabla de actores.
+ *
+ * Los nombres de los actores se almacenan una única vez: cada actor conserva la primera instancia de su nombre.
+ * Las series deben agregarse en orden creciente de id de fila. La clase no es segura para hilos.
+ * */
+public class ActorIndex {
+    private static final int INITIAL_CAPACITY = 64;
+
+    //Actores por nombre, y por id (cada actor recibe un id en orden de aparición)
+    private TSBHashTableDA<String, Actor> actors;
+    private Actor[] actorsById;
+    private int actorCount;
+
+    //Ids de los actores de cada fila (SeriesColumnStore.STARS por fila, -1 si no hay actor en esa posición)
+    private int[] rowActors;
+    private int rowCount;
+
+    public ActorIndex() {
+        this.actors = new TSBHashTableDA<>();
+        this.actorsById = new Actor[INITIAL_CAPACITY];
+        this.rowActors = new int[INITIAL_CAPACITY * SeriesColumnStore.STARS];
+    }
+
+    //************************ Carga
+
+    /**
+     * Crea un índice a partir de los datos de los actores ya calculados (por ejemplo, leídos de una instantánea del
+     * índice), sin volver a agregar las series de a una. Los arreglos no se copian: pasan a pertenecer al índice y no
+     * deben modificarse luego.
+     *
+     * @param names nombres de los actores, sin repetir (el id de cada actor es su posición)
+     * @param rows para cada actor, los ids de fila de sus series en orden creciente
+     * @param coStars para cada actor, los ids de sus coprotagonistas
+     * @param sharedCounts para cada actor, la cantidad de series compartidas con cada coprotagonista (en la misma posición)
+     * @param rowActors ids de los actores de cada fila (SeriesColumnStore.STARS por fila, -1 si no hay actor en esa posición)
+     * @return el índice con todos los actores
+     * */
+    public static ActorIndex fromArrays(String[] names, int[][] rows, int[][] coStars, int[][] sharedCounts, int[] rowActors) {
+        int actorCount = names.length;
+        if (rows.length != actorCount || coStars.length != actorCount || sharedCounts.length != actorCount
+                || rowActors.length % SeriesColumnStore.STARS != 0) {
+            throw new IllegalArgumentException("ActorIndex.fromArrays(): arreglos de distinto tamaño");
+        }
+        for (int id : rowActors) {
+            if (id >= actorCount) {
+                throw new IndexOutOfBoundsException("ActorIndex.fromArrays(): id de actor inválido: " + id);
+            }
+        }
+
+        ActorIndex index = new ActorIndex();
+        index.actors = new TSBHashTableDA.Builder<String, Actor>().expectedSize(actorCount).build();
+        index.actorsById = new Actor[Math.max(actorCount, INITIAL_CAPACITY)];
+        for (int id = 0; id < actorCount; id++) {
+            if (coStars[id].length != sharedCounts[id].length) {
+                throw new IllegalArgumentException("ActorIndex.fromArrays(): arreglos de distinto tamaño");
+            }
+            for (int coStar : coStars[id]) {
+                if (coStar < 0 || coStar >= actorCount) {
+                    throw new IndexOutOfBoundsException("ActorIndex.fromArrays(): id de actor inválido: " + coStar);
+                }
+            }
+
+            //Los arreglos vacíos no se utilizan (se conservan los iniciales del actor), ya que al agregar se duplica su tamaño
+            Actor actor = new Actor(names[id], id);
+            if (rows[id].length > 0) {
+                actor.rows = rows[id];
+                actor.rowCount = rows[id].length;
+            }
+            if (coStars[id].length > 0) {
+                actor.coStars = coStars[id];
+                actor.sharedCounts = sharedCounts[id];
+                actor.coStarCount = coStars[id].length;
+            }
+            index.actorsById[id] = actor;
+            if (index.actors.put(names[id], actor) != null) {
+                throw new IllegalArgumentException("ActorIndex.fromArrays(): actor repetido: " + names[id]);
+            }
+        }
+        index.actorCount = actorCount;
+
+        index.rowActors = rowActors;
+        index.rowCount = rowActors.length / SeriesColumnStore.STARS;
+
+        return index;
+    }
+
+    /**
+     * Agrega una serie al índice
+     *
+     * @param row id de fila de la serie, mayor a los de todas las series agregadas previamente
+     * @param stars nombres de los actores de la serie (los vacíos se ignoran)
+     * */
+    public void addSeries(int row, String[] stars) {
+        if (row < this.rowCount) {
+            throw new IllegalArgumentException("ActorIndex.addSeries(): las series deben agregarse en orden creciente: " + row);
+        }
+
+        this.ensureRows(row + 1);
+        Arrays.fill(this.rowActors, this.rowCount * SeriesColumnStore.STARS, row * SeriesColumnStore.STARS, -1);
+        int[] ids = new int[stars.length];
+        int count = 0;
+        for (String star : stars) {
+            if (star == null || star.isEmpty()) {
+                continue;
+            }
+
+            Actor actor = this.actorFor(star);
+            if (actor.lastRow() != row) {
+                actor.addRow(row);
+                ids[count++] = actor.id;
+            }
+        }
+
+        for (int i = 0; i < SeriesColumnStore.STARS; i++) {
+            this.rowActors[row * SeriesColumnStore.STARS + i] = i < count ? ids[i] : -1;
+        }
+        this.rowCount = row + 1;
+
+        for (int i = 0; i < count; i++) {
+            for (int j = 0; j < count; j++) {
+                if (i != j) {
+                    this.actorsById[ids[i]].addCoStar(ids[j], 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Quita una serie del índice: se elimina de las series de cada uno de sus actores y se descuentan las series
+     * compartidas entre ellos
+     *
+     * @param row id de fila de una serie agregada previamente
+     * */
+    public void removeSeries(int row) {
+        if (row < 0 || row >= this.rowCount) {
+            throw new IndexOutOfBoundsException("ActorIndex.removeSeries(): fila inexistente: " + row);
+        }
+
+        int first = row * SeriesColumnStore.STARS;
+        for (int i = first; i < first + SeriesColumnStore.STARS; i++) {
+            int id = this.rowActors[i];
+            if (id < 0) {
+                continue;
+            }
+
+            this.actorsById[id].removeRow(row);
+            for (int j = first; j < first + SeriesColumnStore.STARS; j++) {
+                if (j != i && this.rowActors[j] >= 0) {
+                    this.actorsById[id].addCoStar(this.rowActors[j], -1);
+                }
+            }
+        }
+        Arrays.fill(this.rowActors, first, first + SeriesColumnStore.STARS, -1);
+    }
+
+    /**
+     * Agrega al final de este índice todas las series de otro índice, desplazando sus ids de fila
+     *
+     * @param other índice a agregar
+     * @param offset desplazamiento de los ids de fila del otro índice, mayor o igual a la cantidad de filas de este
+     * */
+    public void appendAll(ActorIndex other, int offset) {
+        if (offset < this.rowCount) {
+            throw new IllegalArgumentException("ActorIndex.appendAll(): desplazamiento inválido: " + offset);
+        }
+
+        int[] translation = new int[other.actorCount];
+        for (int i = 0; i < other.actorCount; i++) {
+            Actor otherActor = other.actorsById[i];
+            Actor actor = this.actorFor(otherActor.name);
+            translation[i] = actor.id;
+            for (int j = 0; j < otherActor.rowCount; j++) {
+                actor.addRow(otherActor.rows[j] + offset);
+            }
+        }
+
+        for (int i = 0; i < other.actorCount; i++) {
+            Actor otherActor = other.actorsById[i];
+            Actor actor = this.actorsById[translation[i]];
+            for (int j = 0; j < otherActor.coStarCount; j++) {
+                actor.addCoStar(translation[otherActor.coStars[j]], otherActor.sharedCounts[j]);
+            }
+        }
+
+        this.ensureRows(offset + other.rowCount);
+        Arrays.fill(this.rowActors, this.rowCount * SeriesColumnStore.STARS, offset * SeriesColumnStore.STARS, -1);
+        for (int i = 0; i < other.rowCount * SeriesColumnStore.STARS; i++) {
+            int id = other.rowActors[i];
+            this.rowActors[offset * SeriesColumnStore.STARS + i] = id < 0 ? -1 : translation[id];
+        }
+        this.rowCount = offset + other.rowCount;
+    }
+
+    //************************ Consultas
+
+    public int getActorCount() {
+        return this.actorCount;
+    }
+
+    /**
+     * @return cantidad de filas del índice (el id de fila de la última serie agregada más uno)
+     * */
+    public int getRowCount() {
+        return this.rowCount;
+    }
+
+    public String getActorName(int id) {
+        return this.actorById(id).name;
+    }
+
+    /**
+     * @return copia de los ids de fila de las series del actor con el id indicado, en orden creciente
+     * */
+    public int[] getActorRows(int id) {
+        Actor actor = this.actorById(id);
+        return Arrays.copyOf(actor.rows, actor.rowCount);
+    }
+
+    /**
+     * @return copia de los ids de los coprotagonistas del actor con el id indicado, incluidos aquellos con los que ya
+     * no comparte series (por series eliminadas)
+     * */
+    public int[] getCoStarIds(int id) {
+        Actor actor = this.actorById(id);
+        return Arrays.copyOf(actor.coStars, actor.coStarCount);
+    }
+
+    /**
+     * @return copia de la cantidad de series compartidas con cada coprotagonista del actor con el id indicado, en el
+     * mismo orden que getCoStarIds()
+     * */
+    public int[] getSharedCounts(int id) {
+        Actor actor = this.actorById(id);
+        return Arrays.copyOf(actor.sharedCounts, actor.coStarCount);
+    }
+
+    /**
+     * @return copia de los ids de los actores de cada fila (SeriesColumnStore.STARS por fila, -1 si no hay actor en
+     * esa posición)
+     * */
+    public int[] getRowActors() {
+        return Arrays.copyOf(this.rowActors, this.rowCount * SeriesColumnStore.STARS);
+    }
+
+    /**
+     * @return ids de fila de las series en las que participa el actor, en orden creciente (vacío si no existe)
+     * */
+    public int[] getRowsForActor(String actor) {
+        Actor entry = this.actors.get(actor);
+        return entry == null ? new int[0] : Arrays.copyOf(entry.rows, entry.rowCount);
+    }
+
+    /**
+     * @return los actores que participaron en alguna serie con el actor indicado, con la cantidad de series compartidas,
+     * de los que compartieron más series a los que compartieron menos
+     * */
+    public List<ActorCount> getCoStars(String actor) {
+        Actor entry = this.actors.get(actor);
+        if (entry == null || entry.coStarCount == 0) {
+            return new ArrayList<>();
+        }
+
+        TopK top = new TopK(entry.coStarCount);
+        for (int i = 0; i < entry.coStarCount; i++) {
+            //Los coprotagonistas sin series compartidas (por series eliminadas) se omiten
+            if (entry.sharedCounts[i] > 0) {
+                top.offer(i, entry.sharedCounts[i]);
+            }
+        }
+
+        List<ActorCount> coStars = new ArrayList<>(entry.coStarCount);
+        for (int i : top.toSortedArray()) {
+            coStars.add(new ActorCount(this.actorsById[entry.coStars[i]].name, entry.sharedCounts[i]));
+        }
+
+        return coStars;
+    }
+
+    /**
+     * Cuenta en cuántas de las filas indicadas participa cada actor y devuelve los n actores con más series
+     *
+     * @param rows ids de fila de las series a considerar (por ejemplo, las de un género)
+     * @param n cantidad máxima de actores a devolver
+     * @return los actores con más series entre las filas indicadas, del que tiene más al que tiene menos (a igual
+     * cantidad, en el orden en que aparecieron en el archivo)
+     * */
+    public List<ActorCount> getTopActors(int[] rows, int n) {
+        int[] counts = new int[this.actorCount];
+        int[] touched = new int[Math.min(this.actorCount, rows.length * SeriesColumnStore.STARS)];
+        int touchedCount = 0;
+
+        for (int row : rows) {
+            for (int i = row * SeriesColumnStore.STARS, end = i + SeriesColumnStore.STARS; i < end; i++) {
+                int id = this.rowActors[i];
+                if (id >= 0 && counts[id]++ == 0) {
+                    touched[touchedCount++] = id;
+                }
+            }
+        }
+
+        List<ActorCount> topActors = new ArrayList<>();
+        if (touchedCount == 0 || n <= 0) {
+            return topActors;
+        }
+
+        TopK top = new TopK(Math.min(n, touchedCount));
+        for (int i = 0; i < touchedCount; i++) {
+            top.offer(touched[i], counts[touched[i]]);
+        }
+        for (int id : top.toSortedArray()) {
+            topActors.add(new ActorCount(this.actorsById[id].name, counts[id]));
+        }
+
+        return topActors;
+    }
+
+    //************************ Métodos privados de la clase
+
+    /**
+     * Devuelve el actor con el nombre indicado, creándolo si no existía
+     * */
+    private Actor actorFor(String name) {
+        Actor actor = this.actors.get(name);
+        if (actor == null) {
+            if (this.actorCount == this.actorsById.length) {
+                this.actorsById = Arrays.copyOf(this.actorsById, this.actorCount * 2);
+            }
+            actor = new Actor(name, this.actorCount);
+            this.actorsById[this.actorCount++] = actor;
+            this.actors.put(name, actor);
+        }
+
+        return actor;
+    }
+
+    private Actor actorById(int id) {
+        if (id < 0 || id >= this.actorCount) {
+            throw new IndexOutOfBoundsException("ActorIndex: id de actor inválido: " + id);
+        }
+        return this.actorsById[id];
+    }
+
+    private void ensureRows(int rows) {
+        if (rows * SeriesColumnStore.STARS > this.rowActors.length) {
+            this.rowActors = Arrays.copyOf(this.rowActors, Math.max(rows * SeriesColumnStore.STARS, this.rowActors.length * 2));
+        }
+    }
+
+    /**
+     * Datos de un actor: series en las que participa y coprotagonistas
+     * */
+    private static class Actor {
+        private final String name;
+        private final int id;
+
+        private int[] rows;
+        private int rowCount;
+
+        //Ids de los coprotagonistas y cantidad de series compartidas con cada uno, en la misma posición
+        private int[] coStars;
+        private int[] sharedCounts;
+        private int coStarCount;
+
+        private Actor(String name, int id) {
+            this.name = name;
+            this.id = id;
+            this.rows = new int[4];
+            this.coStars = new int[4];
+            this.sharedCounts = new int[4];
+        }
+
+        private int lastRow() {
+            return this.rowCount == 0 ? -1 : this.rows[this.rowCount - 1];
+        }
+
+        private void addRow(int row) {
+            if (this.rowCount == this.rows.length) {
+                this.rows = Arrays.copyOf(this.rows, this.rowCount * 2);
+            }
+            this.rows[this.rowCount++] = row;
+        }
+
+        private void removeRow(int row) {
+            int index = Arrays.binarySearch(this.rows, 0, this.rowCount, row);
+            if (index >= 0) {
+                System.arraycopy(this.rows, index + 1, this.rows, index, this.rowCount - index - 1);
+                this.rowCount--;
+            }
+        }
+
+        /**
+         * Suma series compartidas con un coprotagonista. La mayoría de los actores tiene pocos coprotagonistas,
+         * por lo que la búsqueda lineal en el arreglo es más rápida que una tabla hash
+         * */
+        private void addCoStar(int actorId, int count) {
+            for (int i = 0; i < this.coStarCount; i++) {
+                if (this.coStars[i] == actorId) {
+                    this.sharedCounts[i] += count;
+                    return;
+                }
+            }
+
+            if (this.coStarCount == this.coStars.length) {
+                this.coStars = Arrays.copyOf(this.coStars, this.coStarCount * 2);
+                this.sharedCounts = Arrays.copyOf(this.sharedCounts, this.coStarCount * 2);
+            }
+            this.coStars[this.coStarCount] = actorId;
+            this.sharedCounts[this.coStarCount++] = count;
+        }
+    }
+
+    /**
+     * Resultado de las consultas de actores: nombre del actor y cantidad de series (o de series compartidas)
+     * */
+    public static class ActorCount {
+        private final String actor;
+        private final int count;
+
+        public ActorCount(String actor, int count) {
+            this.actor = actor;
+            this.count = count;
+        }
+
+        public String getActor() {
+            return actor;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        @Override
+        public String toString() {
+            return this.actor + " (" + this.count + ")";
+        }
+    }
+}
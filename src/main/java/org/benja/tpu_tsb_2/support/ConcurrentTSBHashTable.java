@@ -0,0 +1,783 @@
+package org.benja.tpu_tsb_2.support;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.*;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Versión concurrente de TSBHashTableDA, pensada para compartir un mismo índice entre varios hilos
+ * (por ejemplo, el hilo de la interfaz gráfica y los hilos de carga o de consultas en segundo plano).
+ *
+ * Mantiene el diseño de TSBHashTableDA (direccionamiento abierto, tamaños primos y exploración cuadrática),
+ * pero divide la tabla en segmentos independientes: cada clave pertenece a un único segmento, elegido a partir
+ * de los bits altos de su hashCode, y cada segmento tiene su propio arreglo de soporte y su propio lock.
+ *
+ * - Las lecturas (get, containsKey, iteración) no toman ningún lock: el arreglo de cada segmento se publica
+ *   mediante un campo volatile y sus lugares se leen con semántica acquire a través de un VarHandle.
+ * - Las escrituras toman sólo el lock del segmento afectado, por lo que escrituras sobre claves de segmentos
+ *   distintos no se bloquean entre sí. compute(), merge() y el resto de las operaciones compuestas de
+ *   ConcurrentMap son atómicas.
+ * - Los iteradores son débilmente consistentes: nunca lanzan ConcurrentModificationException, recorren cada
+ *   par a lo sumo una vez y pueden (o no) reflejar modificaciones posteriores a su creación.
+ *
+ * Al igual que TSBHashTableDA no admite claves ni valores nulos.
+ *
+ * @author Grupo 20
+ * @version Octubre de 2022
+ * @param <K> La clase de los objetos que serán usados como clave en la tabla.
+ * @param <V> La clase de los objetos que serán los valores almacenados en la tabla.
+ */
+public class ConcurrentTSBHashTable<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V> {
+    //************************ Constantes (privadas o públicas).
+
+    // El tamaño máximo que podrá tener el arreglo de soporte de cada segmento (mismo valor que en TSBHashTableDA)
+    private final static int MAX_SIZE = 2147483587;
+
+    // Cantidad máxima de segmentos
+    private final static int MAX_SEGMENTS = 1 << 16;
+
+    // Cantidad de segmentos por defecto (cantidad de escritores que pueden trabajar en paralelo sin bloquearse)
+    private final static int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+    // Factor de carga de cada segmento: máximo que garantiza que la exploración cuadrática encuentre lugar
+    private final static float LOAD_FACTOR = 0.5f;
+
+    // Proporción de tumbas sobre el tamaño de un segmento a partir de la cual el segmento se compacta
+    private final static float TOMBSTONE_THRESHOLD = 0.25f;
+
+    // Marca utilizada en los arreglos de soporte para representar una "tumba" (entrada eliminada)
+    private final static Node<?, ?> TOMBSTONE = new Node<>(0, null, null);
+
+    // Acceso a los lugares de los arreglos de soporte con semántica acquire/release
+    private final static VarHandle SLOTS = MethodHandles.arrayElementVarHandle(Node[].class);
+
+
+    //************************ Atributos privados (estructurales).
+
+    // los segmentos en los que se divide la tabla (su cantidad es siempre una potencia de dos)
+    private final Segment<K, V>[] segments;
+
+    // desplazamiento aplicado al hash mezclado para obtener el índice del segmento a partir de sus bits altos
+    private final int segmentShift;
+
+    //************************ Atributos privados (para gestionar las vistas).
+
+    private transient Set<Map.Entry<K, V>> entrySet = null;
+
+    //************************ Constructores.
+
+    /**
+     * Crea una tabla vacía con 16 segmentos, cada uno con capacidad inicial 11.
+     */
+    public ConcurrentTSBHashTable()
+    {
+        this(11 * DEFAULT_CONCURRENCY_LEVEL, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    /**
+     * Crea una tabla vacía con 16 segmentos y capacidad inicial total cercana a la indicada.
+     * @param initialCapacity la capacidad inicial total de la tabla.
+     */
+    public ConcurrentTSBHashTable(int initialCapacity)
+    {
+        this(initialCapacity, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    /**
+     * Crea una tabla vacía con la capacidad inicial total indicada, repartida entre una cantidad de segmentos
+     * igual a la menor potencia de dos mayor o igual a concurrencyLevel. Cada segmento se crea con un tamaño
+     * primo no menor a 11.
+     * @param initialCapacity la capacidad inicial total de la tabla.
+     * @param concurrencyLevel cantidad estimada de hilos que modificarán la tabla en simultáneo.
+     */
+    public ConcurrentTSBHashTable(int initialCapacity, int concurrencyLevel)
+    {
+        if (concurrencyLevel <= 0) { concurrencyLevel = DEFAULT_CONCURRENCY_LEVEL; }
+        if (concurrencyLevel > MAX_SEGMENTS) { concurrencyLevel = MAX_SEGMENTS; }
+        if (initialCapacity < 0) { initialCapacity = 0; }
+
+        int segmentCount = Integer.highestOneBit(concurrencyLevel);
+        if (segmentCount < concurrencyLevel) { segmentCount <<= 1; }
+
+        int segmentCapacity = (int) Math.min((long) initialCapacity / segmentCount + 1, MAX_SIZE);
+        segmentCapacity = new PrimeNumberGenerator().nextPrime(Math.max(segmentCapacity, 11));
+
+        @SuppressWarnings("unchecked")
+        Segment<K, V>[] segments = (Segment<K, V>[]) new Segment<?, ?>[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment<>(segmentCapacity);
+        }
+        this.segments = segments;
+        this.segmentShift = 32 - Integer.numberOfTrailingZeros(segmentCount);
+    }
+
+    //************************ Implementación de métodos especificados por la interfaz Map.
+
+    /**
+     * Devuelve la cantidad de pares de la tabla. Si hay escrituras en curso el valor es aproximado.
+     */
+    @Override
+    public int size() {
+        long total = 0;
+        for (Segment<K, V> segment : this.segments) {
+            total += segment.count;
+        }
+
+        return (int) Math.min(total, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (Segment<K, V> segment : this.segments) {
+            if (segment.count != 0) return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return this.get(key) != null;
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        if (value == null) {
+            throw new NullPointerException("ConcurrentTSBHashTable.containsValue(): parámetro null");
+        }
+
+        for (Segment<K, V> segment : this.segments) {
+            Node<K, V>[] table = segment.table;
+            for (int i = 0; i < table.length; i++) {
+                Node<K, V> node = slotAt(table, i);
+                if (node != null && node != TOMBSTONE && value.equals(node.value)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Devuelve el valor asociado a la clave sin tomar ningún lock.
+     */
+    @Override
+    public V get(Object key) {
+        if (key == null) {
+            throw new NullPointerException("ConcurrentTSBHashTable.get(): parámetro null");
+        }
+
+        int keyHash = key.hashCode();
+        return this.segmentFor(keyHash).get(key, keyHash);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        if (key == null || value == null) {
+            throw new NullPointerException("ConcurrentTSBHashTable.put(): ninguno de los parámetros puede ser null");
+        }
+
+        int keyHash = key.hashCode();
+        return this.segmentFor(keyHash).put(key, keyHash, value, false);
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        if (key == null || value == null) {
+            throw new NullPointerException("ConcurrentTSBHashTable.putIfAbsent(): ninguno de los parámetros puede ser null");
+        }
+
+        int keyHash = key.hashCode();
+        return this.segmentFor(keyHash).put(key, keyHash, value, true);
+    }
+
+    @Override
+    public V remove(Object key) {
+        if (key == null) {
+            throw new NullPointerException("ConcurrentTSBHashTable.remove(): parámetro null");
+        }
+
+        int keyHash = key.hashCode();
+        return this.segmentFor(keyHash).replace(key, keyHash, null, null);
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        if (key == null) {
+            throw new NullPointerException("ConcurrentTSBHashTable.remove(): parámetro null");
+        }
+        if (value == null) return false;
+
+        int keyHash = key.hashCode();
+        return this.segmentFor(keyHash).replace(key, keyHash, value, null) != null;
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        if (key == null || oldValue == null || newValue == null) {
+            throw new NullPointerException("ConcurrentTSBHashTable.replace(): ninguno de los parámetros puede ser null");
+        }
+
+        int keyHash = key.hashCode();
+        return this.segmentFor(keyHash).replace(key, keyHash, oldValue, newValue) != null;
+    }
+
+    @Override
+    public V replace(K key, V value) {
+        if (key == null || value == null) {
+            throw new NullPointerException("ConcurrentTSBHashTable.replace(): ninguno de los parámetros puede ser null");
+        }
+
+        int keyHash = key.hashCode();
+        return this.segmentFor(keyHash).replace(key, keyHash, null, value);
+    }
+
+    /**
+     * Calcula atómicamente el nuevo valor de la clave a partir del valor actual (o null si no existe).
+     * Si la función devuelve null el par se elimina. La función se ejecuta con el lock del segmento
+     * tomado, por lo que debe ser breve y no debe modificar esta tabla.
+     */
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        if (key == null || remappingFunction == null) {
+            throw new NullPointerException("ConcurrentTSBHashTable.compute(): parámetro null");
+        }
+
+        int keyHash = key.hashCode();
+        return this.segmentFor(keyHash).compute(key, keyHash, remappingFunction, false);
+    }
+
+    /**
+     * Igual que compute(), pero la función sólo se invoca si la clave ya existe en la tabla.
+     */
+    @Override
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        if (key == null || remappingFunction == null) {
+            throw new NullPointerException("ConcurrentTSBHashTable.computeIfPresent(): parámetro null");
+        }
+
+        int keyHash = key.hashCode();
+        return this.segmentFor(keyHash).compute(key, keyHash, remappingFunction, true);
+    }
+
+    /**
+     * Devuelve el valor asociado a la clave o, si no existe, lo calcula e inserta atómicamente.
+     * Si la clave ya existe se resuelve sin tomar ningún lock.
+     */
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        if (key == null || mappingFunction == null) {
+            throw new NullPointerException("ConcurrentTSBHashTable.computeIfAbsent(): parámetro null");
+        }
+
+        int keyHash = key.hashCode();
+        Segment<K, V> segment = this.segmentFor(keyHash);
+        V value = segment.get(key, keyHash);
+        if (value != null) {
+            return value;
+        }
+
+        return segment.compute(key, keyHash, (k, old) -> old != null ? old : mappingFunction.apply(k), false);
+    }
+
+    /**
+     * Combina atómicamente el valor indicado con el valor actual de la clave. Si la clave no existe se inserta
+     * el valor indicado; si la función devuelve null el par se elimina.
+     */
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        if (key == null || value == null || remappingFunction == null) {
+            throw new NullPointerException("ConcurrentTSBHashTable.merge(): parámetro null");
+        }
+
+        int keyHash = key.hashCode();
+        return this.segmentFor(keyHash).compute(key, keyHash, (k, old) -> old == null ? value : remappingFunction.apply(old, value), false);
+    }
+
+    @Override
+    public void clear() {
+        for (Segment<K, V> segment : this.segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * Vista de los pares de la tabla. Sus iteradores son débilmente consistentes y su método remove()
+     * elimina el par de la tabla. Las vistas de claves y valores heredadas de AbstractMap se apoyan en ésta.
+     */
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        if (this.entrySet == null) {
+            this.entrySet = new EntrySet();
+        }
+
+        return this.entrySet;
+    }
+
+    //************************ Metodos especificos a la implementación de la clase
+
+    /**
+     * Devuelve el segmento al que pertenece una clave, a partir de los bits altos de su hashCode mezclado
+     * (los bits bajos del hashCode original se usan luego para el índice dentro del segmento).
+     */
+    private Segment<K, V> segmentFor(int keyHash) {
+        if (this.segments.length == 1) return this.segments[0];
+
+        int h = keyHash * 0x9E3779B9;
+        return this.segments[h >>> this.segmentShift];
+    }
+
+    /**
+     * Lee un lugar del arreglo de soporte con semántica acquire, de modo que si se observa un Node
+     * publicado por otro hilo también se observan sus campos inicializados.
+     */
+    @SuppressWarnings("unchecked")
+    private static <K, V> Node<K, V> slotAt(Node<K, V>[] table, int index) {
+        return (Node<K, V>) SLOTS.getAcquire(table, index);
+    }
+
+    /**
+     * Crea un arreglo de soporte vacío del tamaño indicado.
+     */
+    @SuppressWarnings("unchecked")
+    private static <K, V> Node<K, V>[] newTable(int length) {
+        return (Node<K, V>[]) new Node<?, ?>[length];
+    }
+
+    /**
+     * Escribe un lugar del arreglo de soporte con semántica release (ver slotAt()).
+     */
+    private static <K, V> void setSlotAt(Node<K, V>[] table, int index, Node<?, ?> node) {
+        SLOTS.setRelease(table, index, node);
+    }
+
+    //************************ Clases internas de soporte
+
+    /**
+     * Clase interna que representa los pares almacenados en los arreglos de soporte.
+     * La clave y su hashCode son inmutables; el valor es volatile para que las actualizaciones realizadas
+     * por un escritor sean visibles a los lectores sin lock. Al eliminar un par su valor se pone en null,
+     * de modo que un lector que aún tenga la referencia al nodo (o a un arreglo previo a un rehashing)
+     * lo considere ausente.
+     */
+    private static final class Node<K, V> {
+        final int hash;
+        final K key;
+        volatile V value;
+
+        Node(int hash, K key, V value) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Clase interna que representa cada uno de los segmentos de la tabla: una tabla hash de direccionamiento
+     * abierto independiente, con su propio lock (el segmento mismo) para las escrituras.
+     */
+    private static final class Segment<K, V> extends ReentrantLock {
+        private static final long serialVersionUID = 1L;
+
+        // el arreglo de soporte del segmento; se reemplaza completo en cada rehashing
+        volatile Node<K, V>[] table;
+
+        // la cantidad de pares del segmento
+        volatile int count;
+
+        // la cantidad de tumbas del segmento (sólo se accede con el lock tomado)
+        int tombstones;
+
+        // la cantidad de modificaciones estructurales del segmento (sólo se accede con el lock tomado), utilizada
+        // por compute() para detectar si la función de remapeo modificó el segmento
+        int modCount;
+
+        // tamaño con el que se creó el segmento, utilizado por clear()
+        final int initialCapacity;
+
+        final PrimeNumberGenerator primeGenerator;
+
+        Segment(int initialCapacity) {
+            this.initialCapacity = initialCapacity;
+            this.table = newTable(initialCapacity);
+            this.primeGenerator = new PrimeNumberGenerator();
+        }
+
+        /**
+         * Busca el valor de la clave sin tomar el lock.
+         */
+        V get(Object key, int keyHash) {
+            Node<K, V>[] table = this.table;
+            int length = table.length;
+            int index = (keyHash & 0x7fffffff) % length;
+            int step = 1;
+
+            for (int i = 0; i < length; i++) {
+                Node<K, V> node = slotAt(table, index);
+                if (node == null) {
+                    return null;
+                }
+                if (node != TOMBSTONE && node.hash == keyHash && node.key.equals(key)) {
+                    V value = node.value;
+                    if (value != null) {
+                        return value;
+                    }
+                }
+
+                index = (index >= length - step) ? index - (length - step) : index + step;
+                step += 2;
+                if (step >= length) step -= length;
+            }
+
+            return null;
+        }
+
+        /**
+         * Busca mediante exploración cuadrática el lugar de la clave. Debe invocarse con el lock tomado.
+         * @return el índice del nodo con la clave si existe, o -(i + 1) siendo i el primer lugar disponible
+         *         para insertarla (tumba o lugar nulo).
+         */
+        int search(Node<K, V>[] table, Object key, int keyHash) {
+            int length = table.length;
+            int index = (keyHash & 0x7fffffff) % length;
+            int step = 1;
+
+            int available = -1;
+            for (int i = 0; i < length; i++) {
+                Node<K, V> node = table[index];
+                if (node == null) {
+                    return -((available < 0 ? index : available) + 1);
+                }
+                if (node == TOMBSTONE) {
+                    if (available < 0) available = index;
+                }
+                else if (node.hash == keyHash && node.key.equals(key)) {
+                    return index;
+                }
+
+                index = (index >= length - step) ? index - (length - step) : index + step;
+                step += 2;
+                if (step >= length) step -= length;
+            }
+
+            if (available < 0) {
+                throw new IndexOutOfBoundsException("ConcurrentTSBHashTable: no se encontró un lugar donde ubicar el par clave-valor");
+            }
+            return -(available + 1);
+        }
+
+        V put(K key, int keyHash, V value, boolean onlyIfAbsent) {
+            this.lock();
+            try {
+                Node<K, V>[] table = this.table;
+                int index = this.search(table, key, keyHash);
+                if (index >= 0) {
+                    Node<K, V> node = table[index];
+                    V old = node.value;
+                    if (!onlyIfAbsent) {
+                        node.value = value;
+                    }
+                    return old;
+                }
+
+                this.insert(table, -(index + 1), new Node<>(keyHash, key, value));
+                return null;
+            } finally {
+                this.unlock();
+            }
+        }
+
+        /**
+         * Reemplaza o elimina el valor de una clave.
+         * @param expected si no es null, la operación sólo se realiza si el valor actual es igual a éste.
+         * @param value el nuevo valor, o null para eliminar el par.
+         * @return el valor previo si la operación se realizó, null en caso contrario.
+         */
+        V replace(Object key, int keyHash, Object expected, V value) {
+            this.lock();
+            try {
+                Node<K, V>[] table = this.table;
+                int index = this.search(table, key, keyHash);
+                if (index < 0) {
+                    return null;
+                }
+
+                Node<K, V> node = table[index];
+                V old = node.value;
+                if (expected != null && !expected.equals(old)) {
+                    return null;
+                }
+
+                if (value != null) {
+                    node.value = value;
+                }
+                else {
+                    this.delete(table, index);
+                }
+                return old;
+            } finally {
+                this.unlock();
+            }
+        }
+
+        V compute(K key, int keyHash, BiFunction<? super K, ? super V, ? extends V> remappingFunction, boolean onlyIfPresent) {
+            this.lock();
+            try {
+                Node<K, V>[] table = this.table;
+                int index = this.search(table, key, keyHash);
+                Node<K, V> node = index >= 0 ? table[index] : null;
+                V old = node != null ? node.value : null;
+                if (onlyIfPresent && node == null) {
+                    return null;
+                }
+
+                // el lock es reentrante: si la función inserta o elimina pares del mismo segmento, el lugar
+                // encontrado por search() puede haber cambiado aunque no haya habido rehashing
+                int expectedModCount = this.modCount;
+                V value = remappingFunction.apply(key, old);
+                if (this.modCount != expectedModCount) {
+                    throw new ConcurrentModificationException("ConcurrentTSBHashTable.compute(): la función modificó la tabla");
+                }
+
+                if (value == null) {
+                    if (node != null) {
+                        this.delete(table, index);
+                    }
+                }
+                else if (node != null) {
+                    node.value = value;
+                }
+                else {
+                    this.insert(table, -(index + 1), new Node<>(keyHash, key, value));
+                }
+                return value;
+            } finally {
+                this.unlock();
+            }
+        }
+
+        void clear() {
+            this.lock();
+            try {
+                Node<K, V>[] table = this.table;
+                for (int i = 0; i < table.length; i++) {
+                    Node<K, V> node = table[i];
+                    if (node != null && node != TOMBSTONE) {
+                        node.value = null;
+                    }
+                }
+                this.table = newTable(this.initialCapacity);
+                this.tombstones = 0;
+                this.count = 0;
+                this.modCount++;
+            } finally {
+                this.unlock();
+            }
+        }
+
+        /**
+         * Inserta un nodo en el lugar disponible indicado y, si hace falta, realiza el rehashing del segmento.
+         * Debe invocarse con el lock tomado.
+         */
+        private void insert(Node<K, V>[] table, int index, Node<K, V> node) {
+            if (table[index] == TOMBSTONE) {
+                this.tombstones--;
+            }
+            setSlotAt(table, index, node);
+            this.modCount++;
+
+            int count = this.count + 1;
+            this.count = count;
+            if (count >= table.length * (double) LOAD_FACTOR) {
+                int newLength = (int) Math.min((long) table.length * 2 + 1, MAX_SIZE);
+                this.rehash(Math.min(this.primeGenerator.nextPrime(newLength), MAX_SIZE));
+            }
+            else if (this.tombstones > table.length * (double) TOMBSTONE_THRESHOLD) {
+                this.rehash(table.length);
+            }
+        }
+
+        /**
+         * Elimina el nodo del lugar indicado dejando una tumba. Debe invocarse con el lock tomado.
+         */
+        private void delete(Node<K, V>[] table, int index) {
+            table[index].value = null;
+            setSlotAt(table, index, TOMBSTONE);
+            this.modCount++;
+            this.tombstones++;
+            this.count = this.count - 1;
+        }
+
+        /**
+         * Copia los nodos vigentes a un arreglo nuevo del tamaño indicado y lo publica. Los nodos se reutilizan,
+         * por lo que un lector que siga recorriendo el arreglo anterior observa igualmente los valores actuales.
+         * Debe invocarse con el lock tomado.
+         */
+        private void rehash(int newLength) {
+            Node<K, V>[] oldTable = this.table;
+            Node<K, V>[] newTable = newTable(newLength);
+
+            for (Node<K, V> node : oldTable) {
+                if (node != null && node != TOMBSTONE) {
+                    int index = (node.hash & 0x7fffffff) % newLength;
+                    int step = 1;
+                    while (newTable[index] != null) {
+                        index = (index >= newLength - step) ? index - (newLength - step) : index + step;
+                        step += 2;
+                        if (step >= newLength) step -= newLength;
+                    }
+                    newTable[index] = node;
+                }
+            }
+
+            this.tombstones = 0;
+            this.table = newTable;
+        }
+    }
+
+    /**
+     * Clase interna que representa una vista de todos los PARES mapeados en la tabla.
+     */
+    private class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return new EntryIterator();
+        }
+
+        @Override
+        public int size() {
+            return ConcurrentTSBHashTable.this.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry)) return false;
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+            if (entry.getKey() == null) return false;
+
+            V value = ConcurrentTSBHashTable.this.get(entry.getKey());
+            return value != null && value.equals(entry.getValue());
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!(o instanceof Map.Entry)) return false;
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+            if (entry.getKey() == null) return false;
+
+            return ConcurrentTSBHashTable.this.remove(entry.getKey(), entry.getValue());
+        }
+
+        @Override
+        public void clear() {
+            ConcurrentTSBHashTable.this.clear();
+        }
+    }
+
+    /**
+     * Iterador débilmente consistente: recorre segmento por segmento el arreglo de soporte vigente al momento
+     * de llegar a cada segmento. No utiliza contador de modificaciones, por lo que nunca lanza
+     * ConcurrentModificationException.
+     */
+    private class EntryIterator implements Iterator<Map.Entry<K, V>> {
+        private int segmentIndex;
+        private Node<K, V>[] table;
+        private int slotIndex;
+
+        private K nextKey;
+        private V nextValue;
+        private K lastKey;
+
+        private EntryIterator() {
+            this.segmentIndex = 0;
+            this.table = ConcurrentTSBHashTable.this.segments[0].table;
+            this.slotIndex = -1;
+            this.advance();
+        }
+
+        /**
+         * Avanza hasta el próximo par vigente, guardando su clave y valor.
+         */
+        private void advance() {
+            this.nextKey = null;
+            this.nextValue = null;
+
+            Segment<K, V>[] segments = ConcurrentTSBHashTable.this.segments;
+            while (true) {
+                this.slotIndex++;
+                while (this.slotIndex < this.table.length) {
+                    Node<K, V> node = slotAt(this.table, this.slotIndex);
+                    if (node != null && node != TOMBSTONE) {
+                        V value = node.value;
+                        if (value != null) {
+                            this.nextKey = node.key;
+                            this.nextValue = value;
+                            return;
+                        }
+                    }
+                    this.slotIndex++;
+                }
+
+                this.segmentIndex++;
+                if (this.segmentIndex >= segments.length) {
+                    return;
+                }
+                this.table = segments[this.segmentIndex].table;
+                this.slotIndex = -1;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.nextKey != null;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            if (this.nextKey == null) {
+                throw new NoSuchElementException("EntryIterator.next(): no hay siguiente elemento");
+            }
+
+            Map.Entry<K, V> entry = new WriteThroughEntry(this.nextKey, this.nextValue);
+            this.lastKey = this.nextKey;
+            this.advance();
+            return entry;
+        }
+
+        @Override
+        public void remove() {
+            if (this.lastKey == null) {
+                throw new IllegalStateException("EntryIterator.remove(): se debe invocar a next() antes de remove()");
+            }
+
+            ConcurrentTSBHashTable.this.remove(this.lastKey);
+            this.lastKey = null;
+        }
+    }
+
+    /**
+     * Par devuelto por los iteradores: una copia de la clave y el valor cuyo setValue() actualiza también la tabla.
+     */
+    private class WriteThroughEntry extends AbstractMap.SimpleEntry<K, V> {
+        private static final long serialVersionUID = 1L;
+
+        WriteThroughEntry(K key, V value) {
+            super(key, value);
+        }
+
+        @Override
+        public V setValue(V value) {
+            if (value == null) {
+                throw new NullPointerException("WriteThroughEntry.setValue(): no se acepta null como parámetro");
+            }
+
+            ConcurrentTSBHashTable.this.put(this.getKey(), value);
+            return super.setValue(value);
+        }
+    }
+}
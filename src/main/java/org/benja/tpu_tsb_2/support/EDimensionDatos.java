@@ -6,7 +6,9 @@ package org.benja.tpu_tsb_2.support;
 public enum EDimensionDatos {
     CANTIDAD_SERIES("Cantidad de series"),
     LISTADO_SERIES("Detalle de series"),
-    CANTIDAD_SERIES_PUNTUACION("Cantidad por puntuación");
+    CANTIDAD_SERIES_PUNTUACION("Cantidad por puntuación"),
+    COMBINACION_GENEROS("Combinación de géneros"),
+    ACTORES_FRECUENTES("Actores más frecuentes");
 
     //Atributo que representa la cadena de texto visualizada por pantalla para cada valor posible del enum.
     private String displayString;
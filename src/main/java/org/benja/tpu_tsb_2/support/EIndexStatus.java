@@ -0,0 +1,24 @@
+package org.benja.tpu_tsb_2.support;
+
+/**
+ * Enum que representa los estados posibles del índice de series publicado, mostrados en el indicador de estado
+ * de la ventana principal.
+ */
+public enum EIndexStatus {
+    LOADING("Cargando índice..."),
+    READY("Índice actualizado"),
+    RELOADING("Actualizando índice..."),
+    FAILED("Error al actualizar el índice");
+
+    //Atributo que representa la cadena de texto visualizada por pantalla para cada valor posible del enum.
+    private String displayString;
+
+    EIndexStatus(String displayString) {
+        this.displayString = displayString;
+    }
+
+    @Override
+    public String toString() {
+        return displayString;
+    }
+}
@@ -0,0 +1,23 @@
+package org.benja.tpu_tsb_2.support;
+
+/**
+ * Enum que representa las etapas de la carga del archivo csv cuya duración se mide con las métricas del índice.
+ */
+public enum EIngestionStage {
+    READ("Lectura"),
+    PARSE("Separación de columnas"),
+    INDEX("Indexación"),
+    MERGE("Combinación de índices parciales");
+
+    //Atributo que representa la cadena de texto visualizada por pantalla para cada valor posible del enum.
+    private String displayString;
+
+    EIngestionStage(String displayString) {
+        this.displayString = displayString;
+    }
+
+    @Override
+    public String toString() {
+        return displayString;
+    }
+}
@@ -0,0 +1,23 @@
+package org.benja.tpu_tsb_2.support;
+
+/**
+ * Enum que representa los criterios de ordenamiento disponibles para los listados de series de un género.
+ * Los criterios numéricos ordenan de mayor a menor y el título en orden alfabético.
+ */
+public enum ESortKey {
+    RATING("Puntaje"),
+    VOTES("Votos"),
+    TITLE("Título");
+
+    //Atributo que representa la cadena de texto visualizada por pantalla para cada valor posible del enum.
+    private String displayString;
+
+    ESortKey(String displayString) {
+        this.displayString = displayString;
+    }
+
+    @Override
+    public String toString() {
+        return displayString;
+    }
+}
@@ -0,0 +1,525 @@
+package org.benja.tpu_tsb_2.support;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Índice invertido para búsquedas por palabras clave sobre el título y la sinopsis de las series.
+ *
+ * Para cada término (palabra normalizada: en minúsculas y sin tildes) guarda la lista de documentos (ids de fila) que lo
+ * contienen junto con la frecuencia del término en cada documento. Las listas se guardan comprimidas en un arreglo de
+ * bytes: cada documento se codifica como la diferencia con el documento anterior y la frecuencia, ambos como enteros
+ * de longitud variable (7 bits por byte), por lo que la mayoría de las entradas ocupa 2 bytes.
+ *
+ * Las consultas se ordenan según la función de relevancia BM25 y sólo se conservan los k mejores resultados mediante
+ * un heap de tamaño acotado. Las palabras del título cuentan TITLE_WEIGHT veces, para que una coincidencia en el
+ * título pese más que una en la sinopsis.
+ * También permite buscar términos por prefijo (autocompletado), mediante búsqueda binaria sobre los términos ordenados.
+ *
+ * Los documentos eliminados no se quitan de las listas comprimidas: se registran en un RoaringBitmap y se descartan al
+ * recorrer las listas en cada consulta. Las frecuencias de documento de los términos siguen contándolos, lo que sólo
+ * altera levemente los puntajes hasta que el índice se reconstruye.
+ *
+ * Los documentos deben agregarse en orden creciente de id. La clase no es segura para hilos.
+ * */
+public class InvertedIndex {
+    //Parámetros de BM25
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+
+    //Cantidad de veces que cuenta cada palabra del título
+    private static final int TITLE_WEIGHT = 3;
+
+    //Longitud mínima de un término
+    private static final int MIN_TERM_LENGTH = 2;
+
+    private static final int INITIAL_TERMS = 256;
+
+    //Términos: cada término recibe un id en orden de aparición
+    private TSBObjectIntHashTable<String> termIds;
+    private String[] terms;
+    private int termCount;
+
+    //Listas de documentos comprimidas de cada término, cantidad de bytes usados, cantidad de documentos y último documento
+    private byte[][] postings;
+    private int[] postingLengths;
+    private int[] documentFrequencies;
+    private int[] lastDocuments;
+
+    //Longitud (cantidad de términos, con el peso del título) de cada documento, y suma de todas las longitudes
+    private int[] documentLengths;
+    private int documentCount;
+    private long totalLength;
+
+    //Documentos eliminados
+    private RoaringBitmap deletedDocuments;
+
+    //Términos ordenados alfabéticamente para las búsquedas por prefijo (se reconstruye si se agregan términos)
+    private String[] sortedTerms;
+
+    public InvertedIndex() {
+        this.termIds = new TSBObjectIntHashTable<>();
+        this.terms = new String[INITIAL_TERMS];
+        this.postings = new byte[INITIAL_TERMS][];
+        this.postingLengths = new int[INITIAL_TERMS];
+        this.documentFrequencies = new int[INITIAL_TERMS];
+        this.lastDocuments = new int[INITIAL_TERMS];
+        this.documentLengths = new int[INITIAL_TERMS];
+        this.deletedDocuments = new RoaringBitmap();
+    }
+
+    //************************ Carga
+
+    /**
+     * Crea un índice a partir de sus listas comprimidas ya construidas (por ejemplo desde una instantánea del índice),
+     * sin volver a separar en términos los títulos y sinopsis. Los arreglos recibidos pasan a pertenecer al índice y
+     * no deben modificarse luego.
+     *
+     * @param terms los términos, sin repetir; cada id de término es su posición en este arreglo
+     * @param postings lista comprimida de documentos de cada término (ver getCompressedPostings())
+     * @param documentFrequencies cantidad de documentos de cada término
+     * @param lastDocuments último documento de la lista de cada término
+     * @param documentLengths longitud de cada documento; su tamaño es la cantidad de documentos del índice
+     * @param deletedDocuments ids de los documentos eliminados
+     * @return el índice con todos los documentos
+     * */
+    public static InvertedIndex fromPostings(String[] terms, byte[][] postings, int[] documentFrequencies, int[] lastDocuments,
+                                             int[] documentLengths, int[] deletedDocuments) {
+        int count = terms.length;
+        if (postings.length != count || documentFrequencies.length != count || lastDocuments.length != count) {
+            throw new IllegalArgumentException("InvertedIndex.fromPostings(): arreglos de términos de distinto tamaño");
+        }
+
+        InvertedIndex index = new InvertedIndex();
+        int capacity = Math.max(count, INITIAL_TERMS);
+        index.termIds = TSBObjectIntHashTable.withExpectedSize(count);
+        index.terms = Arrays.copyOf(terms, capacity);
+        index.postings = Arrays.copyOf(postings, capacity);
+        index.postingLengths = new int[capacity];
+        index.documentFrequencies = Arrays.copyOf(documentFrequencies, capacity);
+        index.lastDocuments = Arrays.copyOf(lastDocuments, capacity);
+        for (int termId = 0; termId < count; termId++) {
+            if (index.termIds.getOrDefault(terms[termId], -1) >= 0) {
+                throw new IllegalArgumentException("InvertedIndex.fromPostings(): término repetido: " + terms[termId]);
+            }
+            if (lastDocuments[termId] >= documentLengths.length) {
+                throw new IndexOutOfBoundsException("InvertedIndex.fromPostings(): documento inexistente: " + lastDocuments[termId]);
+            }
+            index.termIds.put(terms[termId], termId);
+            index.postingLengths[termId] = postings[termId].length;
+        }
+        index.termCount = count;
+
+        index.documentCount = documentLengths.length;
+        index.documentLengths = documentLengths.length > 0 ? documentLengths : index.documentLengths;
+        for (int length : documentLengths) {
+            index.totalLength += length;
+        }
+        for (int document : deletedDocuments) {
+            index.removeDocument(document);
+        }
+
+        return index;
+    }
+
+    /**
+     * Agrega un documento al índice
+     *
+     * @param document id del documento, mayor a los de todos los documentos agregados previamente
+     * @param title título de la serie
+     * @param overview sinopsis de la serie
+     * */
+    public void addDocument(int document, String title, String overview) {
+        if (this.documentCount > 0 && document <= this.documentCount - 1) {
+            throw new IllegalArgumentException("InvertedIndex.addDocument(): los documentos deben agregarse en orden creciente: " + document);
+        }
+
+        //Frecuencia de cada término en el documento (pocos términos por documento: alcanza con una tabla chica)
+        TSBObjectIntHashTable<String> frequencies = new TSBObjectIntHashTable<>();
+        int length = 0;
+        for (String term : tokenize(title)) {
+            frequencies.addTo(term, TITLE_WEIGHT);
+            length += TITLE_WEIGHT;
+        }
+        for (String term : tokenize(overview)) {
+            frequencies.addTo(term, 1);
+            length++;
+        }
+
+        for (String term : frequencies.keysToArray(new String[0])) {
+            this.addPosting(this.termIdFor(term), document, frequencies.get(term));
+        }
+
+        if (document >= this.documentLengths.length) {
+            this.documentLengths = Arrays.copyOf(this.documentLengths, Math.max(document + 1, this.documentLengths.length * 2));
+        }
+        this.documentLengths[document] = length;
+        this.documentCount = document + 1;
+        this.totalLength += length;
+    }
+
+    /**
+     * Elimina un documento del índice: deja de aparecer en los resultados de las búsquedas
+     *
+     * @param document id de un documento agregado previamente
+     * */
+    public void removeDocument(int document) {
+        if (document < 0 || document >= this.documentCount) {
+            throw new IndexOutOfBoundsException("InvertedIndex.removeDocument(): documento inexistente: " + document);
+        }
+        if (this.deletedDocuments.contains(document)) {
+            return;
+        }
+
+        this.deletedDocuments.add(document);
+        this.totalLength -= this.documentLengths[document];
+    }
+
+    /**
+     * Agrega al final de este índice todos los documentos de otro índice, desplazando sus ids
+     *
+     * @param other índice a agregar
+     * @param offset desplazamiento de los ids de documento del otro índice, mayor o igual a la cantidad de documentos de este
+     * */
+    public void appendAll(InvertedIndex other, int offset) {
+        if (offset < this.documentCount) {
+            throw new IllegalArgumentException("InvertedIndex.appendAll(): desplazamiento inválido: " + offset);
+        }
+
+        for (int otherTermId = 0; otherTermId < other.termCount; otherTermId++) {
+            int termId = this.termIdFor(other.terms[otherTermId]);
+            PostingsCursor cursor = new PostingsCursor(other.postings[otherTermId], other.postingLengths[otherTermId]);
+            while (cursor.next()) {
+                this.addPosting(termId, cursor.document + offset, cursor.frequency);
+            }
+        }
+
+        int newCount = offset + other.documentCount;
+        if (newCount > this.documentLengths.length) {
+            this.documentLengths = Arrays.copyOf(this.documentLengths, Math.max(newCount, this.documentLengths.length * 2));
+        }
+        System.arraycopy(other.documentLengths, 0, this.documentLengths, offset, other.documentCount);
+        other.deletedDocuments.forEach(document -> this.deletedDocuments.add(document + offset));
+        this.documentCount = newCount;
+        this.totalLength += other.totalLength;
+    }
+
+    //************************ Consultas
+
+    /**
+     * @return cantidad de documentos no eliminados
+     * */
+    public int getDocumentCount() {
+        return this.documentCount - this.deletedDocuments.getCardinality();
+    }
+
+    public int getTermCount() {
+        return this.termCount;
+    }
+
+    /**
+     * @return cantidad de documentos que contienen el término (ya normalizado)
+     * */
+    public int getDocumentFrequency(String term) {
+        int termId = this.termIds.getOrDefault(term, -1);
+        return termId < 0 ? 0 : this.documentFrequencies[termId];
+    }
+
+    //************************ Acceso a las listas comprimidas (para guardar el índice, ver fromPostings())
+
+    /**
+     * @param termId id del término, entre 0 y getTermCount()-1 (en orden de aparición)
+     * */
+    public String getTerm(int termId) {
+        this.checkTermId(termId);
+        return this.terms[termId];
+    }
+
+    /**
+     * @return cantidad de documentos que contienen el término con el id indicado
+     * */
+    public int getDocumentFrequency(int termId) {
+        this.checkTermId(termId);
+        return this.documentFrequencies[termId];
+    }
+
+    /**
+     * @return id del último documento de la lista del término con el id indicado
+     * */
+    public int getLastDocument(int termId) {
+        this.checkTermId(termId);
+        return this.lastDocuments[termId];
+    }
+
+    /**
+     * @return copia de la lista comprimida de documentos del término con el id indicado: para cada documento, la
+     * diferencia con el documento anterior y la frecuencia, como enteros de longitud variable
+     * */
+    public byte[] getCompressedPostings(int termId) {
+        this.checkTermId(termId);
+        return Arrays.copyOf(this.postings[termId], this.postingLengths[termId]);
+    }
+
+    /**
+     * @return copia de las longitudes de todos los documentos, incluyendo los eliminados
+     * */
+    public int[] getDocumentLengths() {
+        return Arrays.copyOf(this.documentLengths, this.documentCount);
+    }
+
+    /**
+     * @return ids de los documentos eliminados, en orden creciente
+     * */
+    public int[] getDeletedDocuments() {
+        return this.deletedDocuments.toArray();
+    }
+
+    /**
+     * Busca los documentos más relevantes para una consulta de palabras clave, según BM25.
+     * Un documento es candidato si contiene al menos una de las palabras de la consulta.
+     *
+     * @param query texto de la consulta
+     * @param k cantidad máxima de resultados
+     * @return ids de los documentos encontrados, del más relevante al menos relevante
+     * */
+    public int[] search(String query, int k) {
+        List<String> queryTerms = tokenize(query);
+        int liveCount = this.getDocumentCount();
+        if (queryTerms.isEmpty() || k <= 0 || liveCount == 0) {
+            return new int[0];
+        }
+
+        boolean hasDeletions = !this.deletedDocuments.isEmpty();
+        float averageLength = (float) this.totalLength / liveCount;
+        float[] scores = new float[this.documentCount];
+        int[] candidates = new int[16];
+        int candidateCount = 0;
+
+        TSBObjectIntHashTable<String> seenTerms = new TSBObjectIntHashTable<>();
+        for (String term : queryTerms) {
+            int termId = this.termIds.getOrDefault(term, -1);
+            if (termId < 0 || seenTerms.containsKey(term)) {
+                continue;
+            }
+            seenTerms.put(term, 1);
+
+            int df = this.documentFrequencies[termId];
+            float idf = (float) Math.log(1 + Math.max(liveCount - df + 0.5, 0.5) / (df + 0.5));
+
+            PostingsCursor cursor = new PostingsCursor(this.postings[termId], this.postingLengths[termId]);
+            while (cursor.next()) {
+                int document = cursor.document;
+                if (hasDeletions && this.deletedDocuments.contains(document)) {
+                    continue;
+                }
+                float tf = cursor.frequency;
+                float norm = K1 * (1 - B + B * this.documentLengths[document] / averageLength);
+                if (scores[document] == 0) {
+                    if (candidateCount == candidates.length) {
+                        candidates = Arrays.copyOf(candidates, candidateCount * 2);
+                    }
+                    candidates[candidateCount++] = document;
+                }
+                scores[document] += idf * tf * (K1 + 1) / (tf + norm);
+            }
+        }
+
+        TopK top = new TopK(Math.min(k, Math.max(candidateCount, 1)));
+        for (int i = 0; i < candidateCount; i++) {
+            top.offer(candidates[i], scores[candidates[i]]);
+        }
+
+        return top.toSortedArray();
+    }
+
+    /**
+     * Busca los términos que comienzan con el prefijo indicado (autocompletado)
+     *
+     * @param prefix prefijo a buscar (se normaliza igual que los términos)
+     * @param limit cantidad máxima de términos a devolver
+     * @return los términos con el prefijo, de los que aparecen en más documentos a los que aparecen en menos
+     * */
+    public String[] complete(String prefix, int limit) {
+        String normalizedPrefix = normalize(prefix);
+        if (normalizedPrefix.isEmpty() || limit <= 0) {
+            return new String[0];
+        }
+
+        String[] sorted = this.getSortedTerms();
+        int index = Arrays.binarySearch(sorted, normalizedPrefix);
+        if (index < 0) {
+            index = -index - 1;
+        }
+
+        TopK top = new TopK(limit);
+        int[] matches = new int[16];
+        int matchCount = 0;
+        for (int i = index; i < sorted.length && sorted[i].startsWith(normalizedPrefix); i++) {
+            if (matchCount == matches.length) {
+                matches = Arrays.copyOf(matches, matchCount * 2);
+            }
+            matches[matchCount] = i;
+            top.offer(matchCount++, this.documentFrequencies[this.termIds.get(sorted[i])]);
+        }
+
+        int[] best = top.toSortedArray();
+        String[] completions = new String[best.length];
+        for (int i = 0; i < best.length; i++) {
+            completions[i] = sorted[matches[best[i]]];
+        }
+
+        return completions;
+    }
+
+    /**
+     * Separa un texto en términos normalizados (en minúsculas y sin tildes), descartando los de un solo caracter
+     * */
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean letterOrDigit = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (letterOrDigit && start < 0) {
+                start = i;
+            }
+            else if (!letterOrDigit && start >= 0) {
+                if (i - start >= MIN_TERM_LENGTH) {
+                    tokens.add(normalize(text.substring(start, i)));
+                }
+                start = -1;
+            }
+        }
+
+        return tokens;
+    }
+
+    //************************ Métodos privados de la clase
+
+    private void checkTermId(int termId) {
+        if (termId < 0 || termId >= this.termCount) {
+            throw new IndexOutOfBoundsException("InvertedIndex: id de término inválido: " + termId);
+        }
+    }
+
+    /**
+     * Pasa el término a minúsculas y elimina las tildes y demás marcas diacríticas
+     * */
+    private static String normalize(String term) {
+        String lowerCase = term.toLowerCase();
+        for (int i = 0; i < lowerCase.length(); i++) {
+            if (lowerCase.charAt(i) > 127) {
+                return Normalizer.normalize(lowerCase, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+            }
+        }
+
+        return lowerCase;
+    }
+
+    private int termIdFor(String term) {
+        int termId = this.termIds.getOrDefault(term, -1);
+        if (termId >= 0) {
+            return termId;
+        }
+
+        termId = this.termCount++;
+        if (termId == this.terms.length) {
+            int capacity = termId * 2;
+            this.terms = Arrays.copyOf(this.terms, capacity);
+            this.postings = Arrays.copyOf(this.postings, capacity);
+            this.postingLengths = Arrays.copyOf(this.postingLengths, capacity);
+            this.documentFrequencies = Arrays.copyOf(this.documentFrequencies, capacity);
+            this.lastDocuments = Arrays.copyOf(this.lastDocuments, capacity);
+        }
+        this.terms[termId] = term;
+        this.postings[termId] = new byte[8];
+        this.termIds.put(term, termId);
+        this.sortedTerms = null;
+
+        return termId;
+    }
+
+    /**
+     * Agrega el documento al final de la lista comprimida del término
+     * */
+    private void addPosting(int termId, int document, int frequency) {
+        int delta = this.documentFrequencies[termId] == 0 ? document : document - this.lastDocuments[termId];
+
+        byte[] bytes = this.postings[termId];
+        int length = this.postingLengths[termId];
+        if (length + 10 > bytes.length) {
+            bytes = this.postings[termId] = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + 10));
+        }
+        length = writeVarInt(bytes, length, delta);
+        length = writeVarInt(bytes, length, frequency);
+
+        this.postingLengths[termId] = length;
+        this.documentFrequencies[termId]++;
+        this.lastDocuments[termId] = document;
+    }
+
+    private static int writeVarInt(byte[] bytes, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            bytes[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[position++] = (byte) value;
+
+        return position;
+    }
+
+    private String[] getSortedTerms() {
+        if (this.sortedTerms == null) {
+            this.sortedTerms = Arrays.copyOf(this.terms, this.termCount);
+            Arrays.sort(this.sortedTerms);
+        }
+
+        return this.sortedTerms;
+    }
+
+    /**
+     * Recorre una lista comprimida de documentos, decodificando un documento por vez
+     * */
+    private static class PostingsCursor {
+        private final byte[] bytes;
+        private final int length;
+        private int position;
+        private int document;
+        private int frequency;
+
+        private PostingsCursor(byte[] bytes, int length) {
+            this.bytes = bytes;
+            this.length = length;
+            this.position = 0;
+            this.document = 0;
+        }
+
+        private boolean next() {
+            if (this.position >= this.length) {
+                return false;
+            }
+
+            this.document += this.readVarInt();
+            this.frequency = this.readVarInt();
+            return true;
+        }
+
+        private int readVarInt() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = this.bytes[this.position++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+
+            return value;
+        }
+    }
+}
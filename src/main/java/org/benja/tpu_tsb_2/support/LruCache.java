@@ -0,0 +1,173 @@
+package org.benja.tpu_tsb_2.support;
+
+import java.util.function.Function;
+
+/**
+ * Cache de tamaño acotado con desalojo LRU (se desaloja el elemento usado hace más tiempo).
+ *
+ * Los elementos se guardan en un TSBHashTableDA, que resuelve las búsquedas por clave, y a la vez en una lista
+ * doblemente enlazada ordenada por uso: cada consulta exitosa mueve el elemento al frente de la lista, y al superar
+ * la capacidad se desaloja el último. Todas las operaciones son O(1).
+ *
+ * Cuenta los aciertos, los fallos y los desalojos. Al igual que TSBHashTableDA no admite claves ni valores nulos.
+ * La clase no es segura para hilos (incluso get() modifica el orden de uso).
+ *
+ * @param <K> La clase de las claves de la cache.
+ * @param <V> La clase de los valores almacenados.
+ * */
+public class LruCache<K, V> {
+    private final int maxSize;
+    private final TSBHashTableDA<K, Node<K, V>> entries;
+
+    //Nodo centinela de la lista de uso: head.next es el elemento usado más recientemente y head.previous el menos reciente
+    private final Node<K, V> head;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param maxSize cantidad máxima de elementos de la cache
+     * */
+    public LruCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("LruCache(): la capacidad debe ser positiva: " + maxSize);
+        }
+
+        this.maxSize = maxSize;
+        this.entries = new TSBHashTableDA.Builder<K, Node<K, V>>().expectedSize(maxSize + 1).build();
+        this.head = new Node<>(null, null);
+        this.head.next = this.head;
+        this.head.previous = this.head;
+    }
+
+    /**
+     * Devuelve el valor asociado a la clave y lo marca como usado recientemente
+     *
+     * @return el valor, o null si la clave no está en la cache
+     * */
+    public V get(K key) {
+        Node<K, V> node = this.entries.get(key);
+        if (node == null) {
+            this.misses++;
+            return null;
+        }
+
+        this.hits++;
+        this.moveToFront(node);
+        return node.value;
+    }
+
+    /**
+     * Devuelve el valor asociado a la clave; si no está en la cache lo calcula con la función indicada y lo agrega
+     *
+     * @param key la clave
+     * @param loader función que calcula el valor de la clave (no puede devolver null)
+     * @return el valor asociado a la clave
+     * */
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> loader) {
+        V value = this.get(key);
+        if (value == null) {
+            value = loader.apply(key);
+            this.put(key, value);
+        }
+
+        return value;
+    }
+
+    /**
+     * Agrega o reemplaza el valor asociado a la clave. Si se supera la capacidad se desaloja el elemento usado hace más tiempo
+     * */
+    public void put(K key, V value) {
+        if (value == null) {
+            throw new NullPointerException("LruCache.put(): el valor no puede ser null");
+        }
+
+        Node<K, V> node = this.entries.get(key);
+        if (node != null) {
+            node.value = value;
+            this.moveToFront(node);
+            return;
+        }
+
+        node = new Node<>(key, value);
+        this.entries.put(key, node);
+        this.linkFirst(node);
+
+        if (this.entries.size() > this.maxSize) {
+            Node<K, V> eldest = this.head.previous;
+            this.unlink(eldest);
+            this.entries.remove(eldest.key);
+            this.evictions++;
+        }
+    }
+
+    /**
+     * Elimina todos los elementos de la cache (los contadores se conservan). Si la cache ya está vacía no hace nada
+     * */
+    public void clear() {
+        if (this.entries.isEmpty()) {
+            return;
+        }
+
+        this.entries.clear();
+        this.head.next = this.head;
+        this.head.previous = this.head;
+    }
+
+    public int size() {
+        return this.entries.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    //************************ Métodos privados de la clase
+
+    private void moveToFront(Node<K, V> node) {
+        if (this.head.next != node) {
+            this.unlink(node);
+            this.linkFirst(node);
+        }
+    }
+
+    private void linkFirst(Node<K, V> node) {
+        node.previous = this.head;
+        node.next = this.head.next;
+        this.head.next.previous = node;
+        this.head.next = node;
+    }
+
+    private void unlink(Node<K, V> node) {
+        node.previous.next = node.next;
+        node.next.previous = node.previous;
+    }
+
+    /**
+     * Nodo de la lista de uso
+     * */
+    private static class Node<K, V> {
+        private final K key;
+        private V value;
+        private Node<K, V> previous;
+        private Node<K, V> next;
+
+        private Node(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+}
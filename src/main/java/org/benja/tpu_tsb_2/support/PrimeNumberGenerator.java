@@ -1,28 +1,101 @@
 package org.benja.tpu_tsb_2.support;
 
+import java.util.Arrays;
+
 /**
  * Clase auxiliar utilizada por TSBHashTable para el manejo de números primos.
  * Legada de la entrega anterior del TPU
+ *
+ * Los tamaños por los que crecen las tablas están precalculados en PRIME_LADDER, por lo que el primo siguiente a
+ * cada crecimiento se obtiene con una búsqueda binaria. Para cualquier otro valor (por ejemplo una capacidad inicial
+ * arbitraria) se buscan candidatos impares con el test de Miller-Rabin, que con las bases 2, 7 y 61 es determinístico
+ * para todo valor int, en lugar de dividir por todos los números hasta la raíz cuadrada.
  * */
 public class PrimeNumberGenerator {
+    //Escalera de tamaños de tabla: cada primo es el menor primo mayor o igual al doble del anterior más uno, a partir
+    //de 11 (la secuencia de crecimiento de TSBHashTableDA). Llega hasta 1685759167; por encima sólo queda MAX_SIZE
+    private static final int[] PRIME_LADDER = {
+            11, 23, 47, 97, 197, 397, 797, 1597, 3203, 6421, 12853, 25717, 51437, 102877, 205759, 411527, 823117,
+            1646237, 3292489, 6584983, 13169977, 26339969, 52679969, 105359939, 210719881, 421439783, 842879579,
+            1685759167
+    };
+
+    //Primos menores o iguales a la mayor base de Miller-Rabin, que se comprueban por división
+    private static final int[] SMALL_PRIMES = {2, 3, 5, 7, 11, 13, 17, 19, 23, 29, 31, 37, 41, 43, 47, 53, 59, 61};
+
+    /**
+     * @return el menor número primo mayor o igual a n
+     * */
     public int nextPrime(int n) {
-        int prime = n;
-        if (prime % 2 == 0) prime++;
+        if (n <= 2) return 2;
 
-        while (!this.isPrime(prime)) {
+        int rung = Arrays.binarySearch(PRIME_LADDER, n);
+        if (rung >= 0) return n;
+
+        //PRIME_LADDER[rung] es el menor primo mayor o igual a 2 * PRIME_LADDER[rung - 1] + 1, por lo que también es
+        //el menor primo mayor o igual a cualquier n comprendido entre ambos valores
+        rung = -rung - 1;
+        if (rung > 0 && rung < PRIME_LADDER.length && n >= 2 * PRIME_LADDER[rung - 1] + 1) {
+            return PRIME_LADDER[rung];
+        }
+
+        //Integer.MAX_VALUE es primo, por lo que la búsqueda termina sin desbordarse
+        int prime = n | 1;
+        while (!isPrime(prime)) {
             prime += 2;
         }
 
         return prime;
     }
 
-    private boolean isPrime(int n) {
-        int sqrt = (int) Math.floor(Math.sqrt(n));
+    /**
+     * Test de primalidad de Miller-Rabin determinístico para valores int (bases 2, 7 y 61)
+     * */
+    public static boolean isPrime(int n) {
+        if (n < 2) return false;
+
+        for (int p : SMALL_PRIMES) {
+            if (n == p) return true;
+            if (n % p == 0) return false;
+        }
+
+        //n - 1 = d * 2^s, con d impar
+        int s = Integer.numberOfTrailingZeros(n - 1);
+        long d = (n - 1) >>> s;
+
+        return isStrongProbablePrime(n, d, s, 2)
+                && isStrongProbablePrime(n, d, s, 7)
+                && isStrongProbablePrime(n, d, s, 61);
+    }
+
+    //Métodos privados de la clase
+
+    /**
+     * Una ronda de Miller-Rabin. Como n es menor a 2^31, los productos módulo n entran en un long
+     * */
+    private static boolean isStrongProbablePrime(long n, long d, int s, long base) {
+        long x = modPow(base, d, n);
+        if (x == 1 || x == n - 1) return true;
+
+        for (int r = 1; r < s; r++) {
+            x = x * x % n;
+            if (x == n - 1) return true;
+        }
+
+        return false;
+    }
 
-        for (int i = 2; i <= sqrt; i++) {
-            if (n % i == 0) return false;
+    private static long modPow(long base, long exponent, long modulus) {
+        long result = 1;
+        base %= modulus;
+        while (exponent > 0) {
+            if ((exponent & 1) == 1) {
+                result = result * base % modulus;
+            }
+            base = base * base % modulus;
+            exponent >>= 1;
         }
 
-        return true;
+        return result;
     }
 }
@@ -0,0 +1,722 @@
+package org.benja.tpu_tsb_2.support;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Conjunto comprimido de enteros no negativos (ids de fila) con el esquema de contenedores de los "roaring bitmaps".
+ *
+ * El rango de enteros se divide en bloques de 65536 valores según sus 16 bits altos; cada bloque no vacío tiene un
+ * contenedor con sus 16 bits bajos:
+ * - ArrayContainer: arreglo ordenado de char, para bloques con hasta 4096 valores (2 bytes por valor),
+ * - BitmapContainer: mapa de 65536 bits (8 KB), para bloques con más de 4096 valores.
+ * Así un bloque nunca ocupa más de 8 KB, y los bloques poco poblados ocupan mucho menos.
+ *
+ * Las operaciones de conjunto (and, or, andNot) se resuelven contenedor por contenedor, sobre los bloques comunes,
+ * y andCardinality() calcula el tamaño de la intersección sin crear el conjunto resultante.
+ * Los valores se agregan con add(); agregar valores en orden creciente (caso de los ids de fila durante la carga)
+ * no requiere búsquedas sobre los bloques.
+ * La clase no es segura para hilos.
+ * */
+public class RoaringBitmap {
+    //Cantidad máxima de valores de un ArrayContainer: a partir de ese tamaño un BitmapContainer ocupa menos memoria
+    private static final int ARRAY_CONTAINER_MAX_SIZE = 4096;
+
+    private static final int INITIAL_CONTAINERS = 4;
+
+    //16 bits altos de cada bloque (ordenados) y su contenedor, en la misma posición
+    private char[] keys;
+    private Container[] containers;
+    private int size;
+
+    public RoaringBitmap() {
+        this.keys = new char[INITIAL_CONTAINERS];
+        this.containers = new Container[INITIAL_CONTAINERS];
+        this.size = 0;
+    }
+
+    /**
+     * Crea el conjunto a partir de valores en orden estrictamente creciente (por ejemplo los postings de un género),
+     * armando cada contenedor de una sola vez en lugar de agregar los valores de a uno
+     *
+     * @param values arreglo con los valores, que no pueden ser negativos
+     * @param length cantidad de valores del arreglo (desde el principio) que forman el conjunto
+     * */
+    public static RoaringBitmap ofSorted(int[] values, int length) {
+        for (int i = 0; i < length; i++) {
+            if (values[i] < 0 || (i > 0 && values[i] <= values[i - 1])) {
+                throw new IllegalArgumentException("RoaringBitmap.ofSorted(): valores negativos o no ordenados en la posición " + i);
+            }
+        }
+
+        RoaringBitmap bitmap = new RoaringBitmap();
+        int start = 0;
+        while (start < length) {
+            char high = (char) (values[start] >>> 16);
+            int end = start + 1;
+            while (end < length && (values[end] >>> 16) == high) {
+                end++;
+            }
+
+            int cardinality = end - start;
+            Container container;
+            if (cardinality <= ARRAY_CONTAINER_MAX_SIZE) {
+                char[] content = new char[cardinality];
+                for (int i = start; i < end; i++) {
+                    content[i - start] = (char) values[i];
+                }
+                container = new ArrayContainer(content, cardinality);
+            }
+            else {
+                long[] words = new long[1024];
+                for (int i = start; i < end; i++) {
+                    char low = (char) values[i];
+                    words[low >>> 6] |= 1L << low;
+                }
+                container = new BitmapContainer(words, cardinality);
+            }
+            bitmap.appendContainer(high, container);
+            start = end;
+        }
+
+        return bitmap;
+    }
+
+    //************************ Actualización y consulta
+
+    /**
+     * Agrega un valor al conjunto
+     *
+     * @param value el valor, que no puede ser negativo
+     * */
+    public void add(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("RoaringBitmap.add(): valor negativo: " + value);
+        }
+
+        char high = (char) (value >>> 16);
+        char low = (char) value;
+
+        //Camino rápido: el valor pertenece al último bloque (valores agregados en orden creciente)
+        int index = this.size > 0 && this.keys[this.size - 1] == high ? this.size - 1 : this.indexOfKey(high);
+        if (index >= 0) {
+            this.containers[index] = this.containers[index].add(low);
+        }
+        else {
+            this.insertContainer(-index - 1, high, new ArrayContainer().add(low));
+        }
+    }
+
+    /**
+     * Elimina un valor del conjunto, si pertenecía a él
+     * */
+    public void remove(int value) {
+        if (value < 0) {
+            return;
+        }
+
+        int index = this.indexOfKey((char) (value >>> 16));
+        if (index >= 0) {
+            Container container = this.containers[index].remove((char) value);
+            if (container.cardinality() == 0) {
+                this.removeContainer(index);
+            }
+            else {
+                this.containers[index] = container;
+            }
+        }
+    }
+
+    public boolean contains(int value) {
+        if (value < 0) {
+            return false;
+        }
+
+        int index = this.indexOfKey((char) (value >>> 16));
+        return index >= 0 && this.containers[index].contains((char) value);
+    }
+
+    public int getCardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < this.size; i++) {
+            cardinality += this.containers[i].cardinality();
+        }
+
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Aplica la acción a cada valor del conjunto, en orden creciente
+     * */
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < this.size; i++) {
+            this.containers[i].forEach(this.keys[i] << 16, action);
+        }
+    }
+
+    /**
+     * @return arreglo con todos los valores del conjunto, en orden creciente
+     * */
+    public int[] toArray() {
+        int[] values = new int[this.getCardinality()];
+        int position = 0;
+        for (int i = 0; i < this.size; i++) {
+            position = this.containers[i].fill(this.keys[i] << 16, values, position);
+        }
+
+        return values;
+    }
+
+    //************************ Operaciones de conjunto
+
+    /**
+     * @return nuevo conjunto con los valores que pertenecen a ambos conjuntos
+     * */
+    public static RoaringBitmap and(RoaringBitmap a, RoaringBitmap b) {
+        RoaringBitmap result = new RoaringBitmap();
+        int i = 0, j = 0;
+        while (i < a.size && j < b.size) {
+            if (a.keys[i] < b.keys[j]) {
+                i++;
+            }
+            else if (a.keys[i] > b.keys[j]) {
+                j++;
+            }
+            else {
+                Container container = a.containers[i].and(b.containers[j]);
+                if (container.cardinality() > 0) {
+                    result.appendContainer(a.keys[i], container);
+                }
+                i++;
+                j++;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @return nuevo conjunto con los valores que pertenecen a alguno de los dos conjuntos
+     * */
+    public static RoaringBitmap or(RoaringBitmap a, RoaringBitmap b) {
+        RoaringBitmap result = new RoaringBitmap();
+        int i = 0, j = 0;
+        while (i < a.size || j < b.size) {
+            if (j == b.size || (i < a.size && a.keys[i] < b.keys[j])) {
+                result.appendContainer(a.keys[i], a.containers[i].copy());
+                i++;
+            }
+            else if (i == a.size || a.keys[i] > b.keys[j]) {
+                result.appendContainer(b.keys[j], b.containers[j].copy());
+                j++;
+            }
+            else {
+                result.appendContainer(a.keys[i], a.containers[i].or(b.containers[j]));
+                i++;
+                j++;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @return nuevo conjunto con los valores de a que no pertenecen a b
+     * */
+    public static RoaringBitmap andNot(RoaringBitmap a, RoaringBitmap b) {
+        RoaringBitmap result = new RoaringBitmap();
+        int i = 0, j = 0;
+        while (i < a.size) {
+            if (j == b.size || a.keys[i] < b.keys[j]) {
+                result.appendContainer(a.keys[i], a.containers[i].copy());
+                i++;
+            }
+            else if (a.keys[i] > b.keys[j]) {
+                j++;
+            }
+            else {
+                Container container = a.containers[i].andNot(b.containers[j]);
+                if (container.cardinality() > 0) {
+                    result.appendContainer(a.keys[i], container);
+                }
+                i++;
+                j++;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @return cantidad de valores que pertenecen a ambos conjuntos, calculada sin crear la intersección
+     * */
+    public static int andCardinality(RoaringBitmap a, RoaringBitmap b) {
+        int cardinality = 0;
+        int i = 0, j = 0;
+        while (i < a.size && j < b.size) {
+            if (a.keys[i] < b.keys[j]) {
+                i++;
+            }
+            else if (a.keys[i] > b.keys[j]) {
+                j++;
+            }
+            else {
+                cardinality += a.containers[i].andCardinality(b.containers[j]);
+                i++;
+                j++;
+            }
+        }
+
+        return cardinality;
+    }
+
+    //************************ Métodos redefinidos heredados de Object
+
+    @Override
+    public String toString() {
+        StringBuilder string = new StringBuilder("{");
+        this.forEach(value -> {
+            if (string.length() > 1) string.append(", ");
+            string.append(value);
+        });
+
+        return string.append("}").toString();
+    }
+
+    //************************ Métodos privados de la clase
+
+    /**
+     * Búsqueda binaria del bloque
+     *
+     * @return posición del bloque, o (-(posición de inserción) - 1) si no existe
+     * */
+    private int indexOfKey(char key) {
+        return Arrays.binarySearch(this.keys, 0, this.size, key);
+    }
+
+    private void insertContainer(int index, char key, Container container) {
+        if (this.size == this.keys.length) {
+            this.keys = Arrays.copyOf(this.keys, this.size * 2);
+            this.containers = Arrays.copyOf(this.containers, this.size * 2);
+        }
+        System.arraycopy(this.keys, index, this.keys, index + 1, this.size - index);
+        System.arraycopy(this.containers, index, this.containers, index + 1, this.size - index);
+        this.keys[index] = key;
+        this.containers[index] = container;
+        this.size++;
+    }
+
+    private void appendContainer(char key, Container container) {
+        this.insertContainer(this.size, key, container);
+    }
+
+    private void removeContainer(int index) {
+        System.arraycopy(this.keys, index + 1, this.keys, index, this.size - index - 1);
+        System.arraycopy(this.containers, index + 1, this.containers, index, this.size - index - 1);
+        this.containers[--this.size] = null;
+    }
+
+    /**
+     * Contenedor de los 16 bits bajos de los valores de un bloque. Las operaciones que modifican el contenedor
+     * devuelven el contenedor resultante, que puede ser de otro tipo (por ejemplo al superar ARRAY_CONTAINER_MAX_SIZE)
+     * */
+    private abstract static class Container {
+        abstract Container add(char value);
+
+        abstract Container remove(char value);
+
+        abstract boolean contains(char value);
+
+        abstract int cardinality();
+
+        abstract Container and(Container other);
+
+        abstract Container or(Container other);
+
+        abstract Container andNot(Container other);
+
+        abstract int andCardinality(Container other);
+
+        abstract Container copy();
+
+        abstract void forEach(int high, IntConsumer action);
+
+        /**
+         * Copia los valores (con los 16 bits altos indicados) en el arreglo a partir de la posición indicada
+         *
+         * @return la posición siguiente al último valor copiado
+         * */
+        abstract int fill(int high, int[] values, int position);
+    }
+
+    /**
+     * Contenedor para bloques poco poblados: arreglo ordenado de valores
+     * */
+    private static final class ArrayContainer extends Container {
+        private char[] content;
+        private int cardinality;
+
+        ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        ArrayContainer(char[] content, int cardinality) {
+            this.content = content;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char value) {
+            //Camino rápido: valor mayor a todos los existentes
+            int index = this.cardinality > 0 && this.content[this.cardinality - 1] < value
+                    ? -this.cardinality - 1
+                    : Arrays.binarySearch(this.content, 0, this.cardinality, value);
+            if (index >= 0) {
+                return this;
+            }
+
+            if (this.cardinality == ARRAY_CONTAINER_MAX_SIZE) {
+                return this.toBitmapContainer().add(value);
+            }
+
+            index = -index - 1;
+            if (this.cardinality == this.content.length) {
+                this.content = Arrays.copyOf(this.content, Math.min(this.cardinality * 2, ARRAY_CONTAINER_MAX_SIZE));
+            }
+            System.arraycopy(this.content, index, this.content, index + 1, this.cardinality - index);
+            this.content[index] = value;
+            this.cardinality++;
+
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            int index = Arrays.binarySearch(this.content, 0, this.cardinality, value);
+            if (index >= 0) {
+                System.arraycopy(this.content, index + 1, this.content, index, this.cardinality - index - 1);
+                this.cardinality--;
+            }
+
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(this.content, 0, this.cardinality, value) >= 0;
+        }
+
+        @Override
+        int cardinality() {
+            return this.cardinality;
+        }
+
+        @Override
+        Container and(Container other) {
+            char[] result = new char[this.cardinality];
+            int count = 0;
+            if (other instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) other;
+                int i = 0, j = 0;
+                while (i < this.cardinality && j < array.cardinality) {
+                    if (this.content[i] < array.content[j]) i++;
+                    else if (this.content[i] > array.content[j]) j++;
+                    else {
+                        result[count++] = this.content[i];
+                        i++;
+                        j++;
+                    }
+                }
+            }
+            else {
+                for (int i = 0; i < this.cardinality; i++) {
+                    if (other.contains(this.content[i])) result[count++] = this.content[i];
+                }
+            }
+
+            return new ArrayContainer(result, count);
+        }
+
+        @Override
+        Container or(Container other) {
+            if (other instanceof BitmapContainer) {
+                return other.or(this);
+            }
+
+            ArrayContainer array = (ArrayContainer) other;
+            char[] result = new char[this.cardinality + array.cardinality];
+            int count = 0;
+            int i = 0, j = 0;
+            while (i < this.cardinality || j < array.cardinality) {
+                if (j == array.cardinality || (i < this.cardinality && this.content[i] < array.content[j])) {
+                    result[count++] = this.content[i++];
+                }
+                else if (i == this.cardinality || this.content[i] > array.content[j]) {
+                    result[count++] = array.content[j++];
+                }
+                else {
+                    result[count++] = this.content[i];
+                    i++;
+                    j++;
+                }
+            }
+
+            ArrayContainer union = new ArrayContainer(result, count);
+            return count > ARRAY_CONTAINER_MAX_SIZE ? union.toBitmapContainer() : union;
+        }
+
+        @Override
+        Container andNot(Container other) {
+            char[] result = new char[this.cardinality];
+            int count = 0;
+            for (int i = 0; i < this.cardinality; i++) {
+                if (!other.contains(this.content[i])) result[count++] = this.content[i];
+            }
+
+            return new ArrayContainer(result, count);
+        }
+
+        @Override
+        int andCardinality(Container other) {
+            int count = 0;
+            if (other instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) other;
+                int i = 0, j = 0;
+                while (i < this.cardinality && j < array.cardinality) {
+                    if (this.content[i] < array.content[j]) i++;
+                    else if (this.content[i] > array.content[j]) j++;
+                    else {
+                        count++;
+                        i++;
+                        j++;
+                    }
+                }
+            }
+            else {
+                for (int i = 0; i < this.cardinality; i++) {
+                    if (other.contains(this.content[i])) count++;
+                }
+            }
+
+            return count;
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(this.content, Math.max(this.cardinality, 1)), this.cardinality);
+        }
+
+        @Override
+        void forEach(int high, IntConsumer action) {
+            for (int i = 0; i < this.cardinality; i++) {
+                action.accept(high | this.content[i]);
+            }
+        }
+
+        @Override
+        int fill(int high, int[] values, int position) {
+            for (int i = 0; i < this.cardinality; i++) {
+                values[position++] = high | this.content[i];
+            }
+
+            return position;
+        }
+
+        private BitmapContainer toBitmapContainer() {
+            BitmapContainer bitmap = new BitmapContainer();
+            for (int i = 0; i < this.cardinality; i++) {
+                bitmap.set(this.content[i]);
+            }
+
+            return bitmap;
+        }
+    }
+
+    /**
+     * Contenedor para bloques muy poblados: un bit por cada uno de los 65536 valores posibles
+     * */
+    private static final class BitmapContainer extends Container {
+        private final long[] words;
+        private int cardinality;
+
+        BitmapContainer() {
+            this(new long[1024], 0);
+        }
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char value) {
+            this.set(value);
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            long mask = 1L << value;
+            if ((this.words[value >>> 6] & mask) != 0) {
+                this.words[value >>> 6] &= ~mask;
+                this.cardinality--;
+            }
+
+            return this.cardinality <= ARRAY_CONTAINER_MAX_SIZE ? this.toArrayContainer() : this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (this.words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        int cardinality() {
+            return this.cardinality;
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.and(this);
+            }
+
+            long[] otherWords = ((BitmapContainer) other).words;
+            long[] result = new long[1024];
+            int count = 0;
+            for (int i = 0; i < result.length; i++) {
+                result[i] = this.words[i] & otherWords[i];
+                count += Long.bitCount(result[i]);
+            }
+
+            return new BitmapContainer(result, count).shrink();
+        }
+
+        @Override
+        Container or(Container other) {
+            BitmapContainer result = (BitmapContainer) this.copy();
+            if (other instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) other;
+                for (int i = 0; i < array.cardinality; i++) {
+                    result.set(array.content[i]);
+                }
+            }
+            else {
+                long[] otherWords = ((BitmapContainer) other).words;
+                int count = 0;
+                for (int i = 0; i < result.words.length; i++) {
+                    result.words[i] |= otherWords[i];
+                    count += Long.bitCount(result.words[i]);
+                }
+                result.cardinality = count;
+            }
+
+            return result;
+        }
+
+        @Override
+        Container andNot(Container other) {
+            long[] result = Arrays.copyOf(this.words, this.words.length);
+            int count;
+            if (other instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) other;
+                count = this.cardinality;
+                for (int i = 0; i < array.cardinality; i++) {
+                    char value = array.content[i];
+                    long mask = 1L << value;
+                    if ((result[value >>> 6] & mask) != 0) {
+                        result[value >>> 6] &= ~mask;
+                        count--;
+                    }
+                }
+            }
+            else {
+                long[] otherWords = ((BitmapContainer) other).words;
+                count = 0;
+                for (int i = 0; i < result.length; i++) {
+                    result[i] &= ~otherWords[i];
+                    count += Long.bitCount(result[i]);
+                }
+            }
+
+            return new BitmapContainer(result, count).shrink();
+        }
+
+        @Override
+        int andCardinality(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.andCardinality(this);
+            }
+
+            long[] otherWords = ((BitmapContainer) other).words;
+            int count = 0;
+            for (int i = 0; i < this.words.length; i++) {
+                count += Long.bitCount(this.words[i] & otherWords[i]);
+            }
+
+            return count;
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(Arrays.copyOf(this.words, this.words.length), this.cardinality);
+        }
+
+        @Override
+        void forEach(int high, IntConsumer action) {
+            for (int i = 0; i < this.words.length; i++) {
+                long word = this.words[i];
+                while (word != 0) {
+                    action.accept(high | (i << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        @Override
+        int fill(int high, int[] values, int position) {
+            for (int i = 0; i < this.words.length; i++) {
+                long word = this.words[i];
+                while (word != 0) {
+                    values[position++] = high | (i << 6) | Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                }
+            }
+
+            return position;
+        }
+
+        private void set(char value) {
+            long mask = 1L << value;
+            if ((this.words[value >>> 6] & mask) == 0) {
+                this.words[value >>> 6] |= mask;
+                this.cardinality++;
+            }
+        }
+
+        /**
+         * @return este contenedor, o un ArrayContainer equivalente si tiene pocos valores
+         * */
+        private Container shrink() {
+            return this.cardinality <= ARRAY_CONTAINER_MAX_SIZE ? this.toArrayContainer() : this;
+        }
+
+        private ArrayContainer toArrayContainer() {
+            char[] content = new char[Math.max(this.cardinality, 1)];
+            int count = 0;
+            for (int i = 0; i < this.words.length; i++) {
+                long word = this.words[i];
+                while (word != 0) {
+                    content[count++] = (char) ((i << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+
+            return new ArrayContainer(content, count);
+        }
+    }
+}
@@ -1,48 +1,17 @@
 package org.benja.tpu_tsb_2.support;
 
 /**
- * Clase puramente de datos que encapsula la información obtenida del csv correspondiente a una serie.
+ * Vista liviana de una serie almacenada en un SeriesColumnStore: sólo guarda la referencia al almacén y el id de fila,
+ * y cada getter lee la columna correspondiente del almacén.
  * */
 public class Serie {
-    private String title;
-    private String seriesRuntime;
-    private String certificate;
-    private String episodesRuntime;
-    private float imdbRating;
-    private String overview;
-    private String star1;
-    private String star2;
-    private String star3;
-    private String star4;
-    private int votes;
-
-
-    public Serie(String title, String seriesRuntime, String certificate, String episodesRuntime, float imdbRating, String overview, String star1, String star2, String star3, String star4, int votes) {
-        this.title = title;
-        this.seriesRuntime = seriesRuntime;
-        this.certificate = certificate;
-        this.episodesRuntime = episodesRuntime;
-        this.imdbRating = imdbRating;
-        this.overview = overview;
-        this.star1 = star1;
-        this.star2 = star2;
-        this.star3 = star3;
-        this.star4 = star4;
-        this.votes = votes;
-    }
-
-    public Serie(String[] dataRow) {
-        this.title = dataRow[0];
-        this.seriesRuntime = dataRow[1];
-        this.certificate = dataRow[2];
-        this.episodesRuntime = dataRow[3];
-        this.imdbRating = Float.parseFloat(dataRow[5]);
-        this.overview = dataRow[6];
-        this.star1 = dataRow[7];
-        this.star2 = dataRow[8];
-        this.star3 = dataRow[9];
-        this.star4 = dataRow[10];
-        this.votes = Integer.parseInt(dataRow[11]);
+    private final SeriesColumnStore store;
+    private final int rowId;
+
+
+    public Serie(SeriesColumnStore store, int rowId) {
+        this.store = store;
+        this.rowId = rowId;
     }
 
     @Override
@@ -50,47 +19,65 @@ public class Serie {
         return this.getTitle();
     }
 
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof Serie)) return false;
+
+        Serie other = (Serie) obj;
+        return this.store == other.store && this.rowId == other.rowId;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * System.identityHashCode(this.store) + this.rowId;
+    }
+
+    public int getRowId() {
+        return rowId;
+    }
+
     public String getTitle() {
-        return title;
+        return store.getTitle(rowId);
     }
 
     public String getSeriesRuntime() {
-        return seriesRuntime;
+        return store.getSeriesRuntime(rowId);
     }
 
     public String getCertificate() {
-        return certificate;
+        return store.getCertificate(rowId);
     }
 
     public String getEpisodesRuntime() {
-        return episodesRuntime;
+        return store.getEpisodesRuntime(rowId);
     }
 
     public float getImdbRating() {
-        return imdbRating;
+        return store.getImdbRating(rowId);
     }
 
     public String getOverview() {
-        return overview;
+        return store.getOverview(rowId);
     }
 
     public String getStar1() {
-        return star1;
+        return store.getStar(rowId, 0);
     }
 
     public String getStar2() {
-        return star2;
+        return store.getStar(rowId, 1);
     }
 
     public String getStar3() {
-        return star3;
+        return store.getStar(rowId, 2);
     }
 
     public String getStar4() {
-        return star4;
+        return store.getStar(rowId, 3);
     }
 
     public int getVotes() {
-        return votes;
+        return store.getVotes(rowId);
     }
 }
@@ -0,0 +1,711 @@
+package org.benja.tpu_tsb_2.support;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Almacén columnar de series: en lugar de un objeto por serie guarda cada columna del csv en un arreglo, y cada serie
+ * queda identificada por su posición (id de fila) en esos arreglos.
+ *
+ * - El puntaje y los votos se guardan en arreglos primitivos (float[] e int[]).
+ * - Las columnas con pocos valores distintos (duraciones, calificación y protagonistas) se codifican con un diccionario
+ *   compartido: cada fila guarda sólo el índice del string en el diccionario, por lo que un mismo actor o calificación
+ *   se almacena una única vez.
+ * - El título y la sinopsis, que son prácticamente únicos por serie, se guardan directamente.
+ * - Por cada género se guarda un arreglo de ids de fila (postings), en el orden en que se agregaron las series, y el
+ *   mismo conjunto de ids como RoaringBitmap, utilizado en las consultas que combinan varios géneros.
+ * - Por cada género y criterio de ordenamiento (ESortKey) se guardan los postings ordenados, que se calculan una vez
+ *   (sortGenres() o la primera consulta) y se descartan cuando se agregan series al género.
+ * - Las series eliminadas conservan su id de fila y sus datos, pero se quitan de los postings de sus géneros y se
+ *   registran en un RoaringBitmap de filas eliminadas. Los ids de fila de los postings quedan siempre en orden creciente.
+ *
+ * Los objetos Serie devueltos son vistas livianas sobre un id de fila, creadas al momento de consultarlas.
+ * La clase no es segura para hilos: cada hilo de la carga en paralelo llena su propio almacén, que luego se combina
+ * con appendAll().
+ * */
+public class SeriesColumnStore {
+    //Cantidad de protagonistas por serie
+    public static final int STARS = 4;
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private int size;
+
+    //Columnas guardadas directamente
+    private String[] titles;
+    private String[] overviews;
+    private float[] ratings;
+    private int[] votes;
+
+    //Columnas codificadas con el diccionario (cada valor es un índice en dictionary)
+    private int[] seriesRuntimes;
+    private int[] certificates;
+    private int[] episodesRuntimes;
+    private int[][] stars;
+
+    //Diccionario de strings compartido por las columnas codificadas
+    private TSBObjectIntHashTable<String> dictionaryIds;
+    private String[] dictionary;
+    private int dictionarySize;
+
+    //Géneros (cada género recibe un id en orden de aparición) y ids de fila de las series de cada género
+    private TSBObjectIntHashTable<String> genreIds;
+    private String[] genres;
+    private int[][] postings;
+    private int[] postingSizes;
+    private RoaringBitmap[] genreBitmaps;
+    private int genreCount;
+
+    //Postings de cada género ordenados según cada criterio ([género][criterio], null si hay que recalcularlos)
+    private int[][][] sortedPostings;
+    //Posición de cada fila en el orden alfabético de los títulos (null si hay que recalcularla)
+    private int[] titleRanks;
+
+    //Ids de fila de las series eliminadas
+    private RoaringBitmap deletedRows;
+
+    public SeriesColumnStore() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize cantidad de series que se espera almacenar, utilizada para dimensionar los arreglos
+     * */
+    public SeriesColumnStore(int expectedSize) {
+        int capacity = Math.max(expectedSize, DEFAULT_CAPACITY);
+        this.titles = new String[capacity];
+        this.overviews = new String[capacity];
+        this.ratings = new float[capacity];
+        this.votes = new int[capacity];
+        this.seriesRuntimes = new int[capacity];
+        this.certificates = new int[capacity];
+        this.episodesRuntimes = new int[capacity];
+        this.stars = new int[STARS][capacity];
+
+        this.dictionaryIds = new TSBObjectIntHashTable<>();
+        this.dictionary = new String[DEFAULT_CAPACITY];
+        this.genreIds = new TSBObjectIntHashTable<>();
+        this.genres = new String[DEFAULT_CAPACITY];
+        this.postings = new int[DEFAULT_CAPACITY][];
+        this.postingSizes = new int[DEFAULT_CAPACITY];
+        this.genreBitmaps = new RoaringBitmap[DEFAULT_CAPACITY];
+        this.sortedPostings = new int[DEFAULT_CAPACITY][][];
+        this.deletedRows = new RoaringBitmap();
+    }
+
+    //************************ Carga
+
+    /**
+     * Crea un almacén a partir de columnas y postings ya decodificados (por ejemplo desde una instantánea del índice),
+     * copiando cada columna en bloque en lugar de agregar las series y sus géneros de a uno. Las columnas de texto se
+     * reciben como índices a un arreglo de strings, y cada string distinto de las columnas codificadas se busca en el
+     * diccionario una única vez.
+     *
+     * Los arreglos de postings no se copian: pasan a pertenecer al almacén y no deben modificarse luego.
+     *
+     * @param strings strings a los que refieren los índices de las columnas de texto
+     * @param stars índices de los protagonistas ([protagonista][fila], STARS arreglos)
+     * @param genres nombres de los géneros, sin repetir
+     * @param postings para cada género, los ids de fila de sus series en orden creciente
+     * @param deletedRows ids de fila de las series eliminadas, en orden creciente (no deben figurar en los postings)
+     * @return el almacén con todas las series y los postings de cada género
+     * */
+    public static SeriesColumnStore fromColumns(String[] strings, int[] titles, int[] seriesRuntimes, int[] certificates,
+                                                int[] episodesRuntimes, float[] ratings, int[] overviews, int[][] stars,
+                                                int[] votes, String[] genres, int[][] postings, int[] deletedRows) {
+        int rows = titles.length;
+        if (seriesRuntimes.length != rows || certificates.length != rows || episodesRuntimes.length != rows
+                || ratings.length != rows || overviews.length != rows || votes.length != rows || stars.length != STARS
+                || genres.length != postings.length) {
+            throw new IllegalArgumentException("SeriesColumnStore.fromColumns(): columnas de distinto tamaño");
+        }
+        for (int[] starColumn : stars) {
+            if (starColumn.length != rows) {
+                throw new IllegalArgumentException("SeriesColumnStore.fromColumns(): columnas de distinto tamaño");
+            }
+        }
+
+        SeriesColumnStore store = new SeriesColumnStore(rows);
+        int[] translation = new int[strings.length];
+        Arrays.fill(translation, -1);
+        for (int row = 0; row < rows; row++) {
+            store.titles[row] = strings[titles[row]];
+            store.overviews[row] = strings[overviews[row]];
+            store.seriesRuntimes[row] = store.encode(strings, translation, seriesRuntimes[row]);
+            store.certificates[row] = store.encode(strings, translation, certificates[row]);
+            store.episodesRuntimes[row] = store.encode(strings, translation, episodesRuntimes[row]);
+            for (int i = 0; i < STARS; i++) {
+                store.stars[i][row] = store.encode(strings, translation, stars[i][row]);
+            }
+        }
+        System.arraycopy(ratings, 0, store.ratings, 0, rows);
+        System.arraycopy(votes, 0, store.votes, 0, rows);
+        store.size = rows;
+
+        for (int g = 0; g < genres.length; g++) {
+            int[] genrePostings = postings[g];
+            if (genrePostings.length > 0 && genrePostings[genrePostings.length - 1] >= rows) {
+                throw new IndexOutOfBoundsException("SeriesColumnStore.fromColumns(): id de fila inválido: " + genrePostings[genrePostings.length - 1]);
+            }
+            if (store.genreIds.getOrDefault(genres[g], -1) >= 0) {
+                throw new IllegalArgumentException("SeriesColumnStore.fromColumns(): género repetido: " + genres[g]);
+            }
+
+            int genreId = store.addGenre(genres[g]);
+            store.genreBitmaps[genreId] = RoaringBitmap.ofSorted(genrePostings, genrePostings.length);
+            if (genrePostings.length > 0) {
+                store.postings[genreId] = genrePostings;
+            }
+            store.postingSizes[genreId] = genrePostings.length;
+        }
+
+        if (deletedRows.length > 0 && deletedRows[deletedRows.length - 1] >= rows) {
+            throw new IndexOutOfBoundsException("SeriesColumnStore.fromColumns(): id de fila inválido: " + deletedRows[deletedRows.length - 1]);
+        }
+        store.deletedRows = RoaringBitmap.ofSorted(deletedRows, deletedRows.length);
+
+        return store;
+    }
+
+    /**
+     * Agrega una serie al almacén.
+     *
+     * @param stars los protagonistas de la serie (STARS valores)
+     * @return el id de fila asignado a la serie
+     * */
+    public int add(String title, String seriesRuntime, String certificate, String episodesRuntime, float imdbRating, String overview, String[] stars, int votes) {
+        int row = this.size;
+        if (row == this.titles.length) {
+            this.grow(row + 1);
+        }
+
+        this.titles[row] = title;
+        this.overviews[row] = overview;
+        this.ratings[row] = imdbRating;
+        this.votes[row] = votes;
+        this.seriesRuntimes[row] = this.encode(seriesRuntime);
+        this.certificates[row] = this.encode(certificate);
+        this.episodesRuntimes[row] = this.encode(episodesRuntime);
+        for (int i = 0; i < STARS; i++) {
+            this.stars[i][row] = this.encode(stars[i]);
+        }
+
+        this.size++;
+        this.titleRanks = null;
+        return row;
+    }
+
+    /**
+     * Agrega la serie con el id de fila indicado al final de los postings del género
+     * */
+    public void addToGenre(String genre, int row) {
+        if (row < 0 || row >= this.size) {
+            throw new IndexOutOfBoundsException("SeriesColumnStore.addToGenre(): id de fila inválido: " + row);
+        }
+
+        int genreId = this.genreIds.getOrDefault(genre, -1);
+        if (genreId < 0) {
+            genreId = this.addGenre(genre);
+        }
+
+        int[] genrePostings = this.postings[genreId];
+        int genreSize = this.postingSizes[genreId];
+        if (genreSize == genrePostings.length) {
+            genrePostings = this.postings[genreId] = Arrays.copyOf(genrePostings, genreSize * 2);
+        }
+        genrePostings[genreSize] = row;
+        this.postingSizes[genreId] = genreSize + 1;
+        this.genreBitmaps[genreId].add(row);
+        Arrays.fill(this.sortedPostings[genreId], null);
+    }
+
+    /**
+     * Elimina la serie con el id de fila indicado: la quita de los postings de todos sus géneros y la marca como
+     * eliminada. Los datos de la fila se conservan, para que los ids de fila del resto de las series no cambien
+     *
+     * @param row id de fila de la serie
+     * @return los géneros de los que se quitó la serie (vacío si ya estaba eliminada)
+     * */
+    public String[] delete(int row) {
+        this.checkRow(row);
+        if (this.deletedRows.contains(row)) {
+            return new String[0];
+        }
+        this.deletedRows.add(row);
+
+        String[] removedFrom = new String[this.genreCount];
+        int count = 0;
+        for (int genreId = 0; genreId < this.genreCount; genreId++) {
+            if (!this.genreBitmaps[genreId].contains(row)) {
+                continue;
+            }
+            this.genreBitmaps[genreId].remove(row);
+
+            int[] genrePostings = this.postings[genreId];
+            int genreSize = this.postingSizes[genreId];
+            int index = Arrays.binarySearch(genrePostings, 0, genreSize, row);
+            System.arraycopy(genrePostings, index + 1, genrePostings, index, genreSize - index - 1);
+            this.postingSizes[genreId] = genreSize - 1;
+            Arrays.fill(this.sortedPostings[genreId], null);
+            removedFrom[count++] = this.genres[genreId];
+        }
+
+        return Arrays.copyOf(removedFrom, count);
+    }
+
+    /**
+     * Agrega al final de este almacén todas las series de otro almacén, conservando su orden. Los ids de fila del otro
+     * almacén se desplazan en la cantidad de series que tenía este almacén, y sus códigos de diccionario se traducen
+     * al diccionario de este almacén (cada string distinto se busca una única vez).
+     *
+     * @param other almacén a agregar
+     * @return el desplazamiento aplicado a los ids de fila del otro almacén
+     * */
+    public int appendAll(SeriesColumnStore other) {
+        int offset = this.size;
+        int newSize = offset + other.size;
+        if (newSize > this.titles.length) {
+            this.grow(newSize);
+        }
+
+        int[] translation = new int[other.dictionarySize];
+        for (int i = 0; i < other.dictionarySize; i++) {
+            translation[i] = this.encode(other.dictionary[i]);
+        }
+
+        System.arraycopy(other.titles, 0, this.titles, offset, other.size);
+        System.arraycopy(other.overviews, 0, this.overviews, offset, other.size);
+        System.arraycopy(other.ratings, 0, this.ratings, offset, other.size);
+        System.arraycopy(other.votes, 0, this.votes, offset, other.size);
+        for (int row = 0; row < other.size; row++) {
+            this.seriesRuntimes[offset + row] = translation[other.seriesRuntimes[row]];
+            this.certificates[offset + row] = translation[other.certificates[row]];
+            this.episodesRuntimes[offset + row] = translation[other.episodesRuntimes[row]];
+            for (int i = 0; i < STARS; i++) {
+                this.stars[i][offset + row] = translation[other.stars[i][row]];
+            }
+        }
+        this.size = newSize;
+        this.titleRanks = null;
+        other.deletedRows.forEach(row -> this.deletedRows.add(row + offset));
+
+        for (int otherGenreId = 0; otherGenreId < other.genreCount; otherGenreId++) {
+            String genre = other.genres[otherGenreId];
+            int genreId = this.genreIds.getOrDefault(genre, -1);
+            if (genreId < 0) {
+                genreId = this.addGenre(genre);
+            }
+
+            int otherSize = other.postingSizes[otherGenreId];
+            int genreSize = this.postingSizes[genreId];
+            if (genreSize + otherSize > this.postings[genreId].length) {
+                this.postings[genreId] = Arrays.copyOf(this.postings[genreId], Math.max(genreSize + otherSize, genreSize * 2));
+            }
+
+            int[] otherPostings = other.postings[otherGenreId];
+            int[] genrePostings = this.postings[genreId];
+            RoaringBitmap genreBitmap = this.genreBitmaps[genreId];
+            for (int i = 0; i < otherSize; i++) {
+                genrePostings[genreSize + i] = otherPostings[i] + offset;
+                genreBitmap.add(otherPostings[i] + offset);
+            }
+            this.postingSizes[genreId] = genreSize + otherSize;
+            Arrays.fill(this.sortedPostings[genreId], null);
+        }
+
+        return offset;
+    }
+
+    //************************ Consultas por id de fila
+
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @return cantidad de series no eliminadas
+     * */
+    public int getLiveCount() {
+        return this.size - this.deletedRows.getCardinality();
+    }
+
+    /**
+     * @return ids de fila de las series eliminadas, en orden creciente
+     * */
+    public int[] getDeletedRows() {
+        return this.deletedRows.toArray();
+    }
+
+    public boolean isDeleted(int row) {
+        this.checkRow(row);
+        return this.deletedRows.contains(row);
+    }
+
+    /**
+     * @return vista liviana de la serie con el id de fila indicado
+     * */
+    public Serie getSerie(int row) {
+        this.checkRow(row);
+        return new Serie(this, row);
+    }
+
+    public String getTitle(int row) {
+        this.checkRow(row);
+        return this.titles[row];
+    }
+
+    public String getSeriesRuntime(int row) {
+        this.checkRow(row);
+        return this.dictionary[this.seriesRuntimes[row]];
+    }
+
+    public String getCertificate(int row) {
+        this.checkRow(row);
+        return this.dictionary[this.certificates[row]];
+    }
+
+    public String getEpisodesRuntime(int row) {
+        this.checkRow(row);
+        return this.dictionary[this.episodesRuntimes[row]];
+    }
+
+    public float getImdbRating(int row) {
+        this.checkRow(row);
+        return this.ratings[row];
+    }
+
+    public String getOverview(int row) {
+        this.checkRow(row);
+        return this.overviews[row];
+    }
+
+    /**
+     * @param index número de protagonista, entre 0 y STARS-1
+     * */
+    public String getStar(int row, int index) {
+        this.checkRow(row);
+        return this.dictionary[this.stars[index][row]];
+    }
+
+    public int getVotes(int row) {
+        this.checkRow(row);
+        return this.votes[row];
+    }
+
+    //************************ Consultas por género
+
+    /**
+     * @return los géneros presentes en el almacén, en orden de aparición
+     * */
+    public String[] getGenres() {
+        return Arrays.copyOf(this.genres, this.genreCount);
+    }
+
+    public int getSeriesCountForGenre(String genre) {
+        int genreId = this.genreIds.getOrDefault(genre, -1);
+        return genreId < 0 ? 0 : this.postingSizes[genreId];
+    }
+
+    /**
+     * @return copia de los ids de fila de las series del género, en el orden en que fueron agregadas
+     * */
+    public int[] getPostings(String genre) {
+        int genreId = this.genreIds.getOrDefault(genre, -1);
+        return genreId < 0 ? new int[0] : Arrays.copyOf(this.postings[genreId], this.postingSizes[genreId]);
+    }
+
+    /**
+     * Devuelve una vista de sólo lectura de las series del género. La vista no copia los postings: refleja las series
+     * que se agreguen al género luego de obtenerla, y cada Serie se crea al momento de accederla.
+     *
+     * @return lista de series del género, vacía si el género no existe
+     * */
+    public List<Serie> getSeriesForGenre(String genre) {
+        int genreId = this.genreIds.getOrDefault(genre, -1);
+        return genreId < 0 ? Collections.<Serie>emptyList() : new GenreSeriesList(genreId);
+    }
+
+    /**
+     * Devuelve una página de las series del género ordenadas según el criterio indicado. Los postings ordenados se
+     * calculan una única vez por género y criterio, por lo que cada consulta sólo crea las series de la página.
+     *
+     * @param genre el género
+     * @param key criterio de ordenamiento
+     * @param offset posición de la primera serie de la página
+     * @param count cantidad máxima de series de la página
+     * @return vista de sólo lectura de las series de la página (vacía si el género no existe o offset supera su tamaño)
+     * */
+    public List<Serie> getSortedSeriesForGenre(String genre, ESortKey key, int offset, int count) {
+        if (offset < 0 || count < 0) {
+            throw new IllegalArgumentException("SeriesColumnStore.getSortedSeriesForGenre(): página inválida: " + offset + ", " + count);
+        }
+
+        int genreId = this.genreIds.getOrDefault(genre, -1);
+        if (genreId < 0 || offset >= this.postingSizes[genreId]) {
+            return Collections.emptyList();
+        }
+
+        int[] sorted = this.sortedPostings(genreId, key);
+        return new RowSeriesList(sorted, offset, Math.min(count, sorted.length - offset));
+    }
+
+    /**
+     * @return copia de los ids de fila de las series del género ordenados según el criterio indicado (calculándolos
+     * si hace falta), vacía si el género no existe
+     * */
+    public int[] getSortedPostings(String genre, ESortKey key) {
+        int genreId = this.genreIds.getOrDefault(genre, -1);
+        return genreId < 0 ? new int[0] : this.sortedPostings(genreId, key).clone();
+    }
+
+    /**
+     * Registra los postings del género ya ordenados según el criterio (por ejemplo, leídos de una instantánea del
+     * índice), para no volver a ordenarlos. El arreglo no se copia: pasa a pertenecer al almacén y no debe
+     * modificarse luego. Si luego se agregan o eliminan series del género se vuelve a ordenar, como con los
+     * postings calculados por el almacén.
+     *
+     * @param genre el género, que debe existir
+     * @param key criterio de ordenamiento
+     * @param sorted los ids de fila de las series del género ordenados según el criterio
+     * */
+    public void setSortedPostings(String genre, ESortKey key, int[] sorted) {
+        int genreId = this.genreIds.getOrDefault(genre, -1);
+        if (genreId < 0) {
+            throw new IllegalArgumentException("SeriesColumnStore.setSortedPostings(): género inexistente: " + genre);
+        }
+        if (sorted.length != this.postingSizes[genreId]) {
+            throw new IllegalArgumentException("SeriesColumnStore.setSortedPostings(): cantidad de series distinta a la del género " + genre);
+        }
+
+        this.sortedPostings[genreId][key.ordinal()] = sorted;
+    }
+
+    /**
+     * Calcula los postings ordenados de todos los géneros según todos los criterios
+     * */
+    public void sortGenres() {
+        for (int genreId = 0; genreId < this.genreCount; genreId++) {
+            for (ESortKey key : ESortKey.values()) {
+                this.sortedPostings(genreId, key);
+            }
+        }
+    }
+
+    /**
+     * Devuelve el conjunto de ids de fila de las series del género. El conjunto es el utilizado internamente por el
+     * almacén, por lo que no debe modificarse.
+     *
+     * @return conjunto de ids de fila del género, vacío si el género no existe
+     * */
+    public RoaringBitmap getGenreBitmap(String genre) {
+        int genreId = this.genreIds.getOrDefault(genre, -1);
+        return genreId < 0 ? new RoaringBitmap() : this.genreBitmaps[genreId];
+    }
+
+    /**
+     * @return vista de sólo lectura de las series con los ids de fila indicados, en el mismo orden
+     * */
+    public List<Serie> getSeries(int[] rows) {
+        for (int row : rows) {
+            this.checkRow(row);
+        }
+
+        return new RowSeriesList(rows, 0, rows.length);
+    }
+
+    //************************ Métodos privados de la clase
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= this.size) {
+            throw new IndexOutOfBoundsException("SeriesColumnStore: id de fila inválido: " + row);
+        }
+    }
+
+    /**
+     * Devuelve el código del string en el diccionario, agregándolo si no existía
+     * */
+    private int encode(String value) {
+        int id = this.dictionaryIds.getOrDefault(value, -1);
+        if (id < 0) {
+            id = this.dictionarySize++;
+            if (id == this.dictionary.length) {
+                this.dictionary = Arrays.copyOf(this.dictionary, id * 2);
+            }
+            this.dictionary[id] = value;
+            this.dictionaryIds.put(value, id);
+        }
+
+        return id;
+    }
+
+    /**
+     * Devuelve el código en el diccionario del string strings[index], recordando en translation el código de cada
+     * índice ya traducido (-1 si todavía no se tradujo)
+     * */
+    private int encode(String[] strings, int[] translation, int index) {
+        int id = translation[index];
+        if (id < 0) {
+            id = translation[index] = this.encode(strings[index]);
+        }
+
+        return id;
+    }
+
+    private int addGenre(String genre) {
+        int genreId = this.genreCount++;
+        if (genreId == this.genres.length) {
+            this.genres = Arrays.copyOf(this.genres, genreId * 2);
+            this.postings = Arrays.copyOf(this.postings, genreId * 2);
+            this.postingSizes = Arrays.copyOf(this.postingSizes, genreId * 2);
+            this.genreBitmaps = Arrays.copyOf(this.genreBitmaps, genreId * 2);
+            this.sortedPostings = Arrays.copyOf(this.sortedPostings, genreId * 2);
+        }
+        this.genres[genreId] = genre;
+        this.postings[genreId] = new int[DEFAULT_CAPACITY];
+        this.genreBitmaps[genreId] = new RoaringBitmap();
+        this.sortedPostings[genreId] = new int[ESortKey.values().length][];
+        this.genreIds.put(genre, genreId);
+
+        return genreId;
+    }
+
+    /**
+     * Devuelve los postings del género ordenados según el criterio, calculándolos si hace falta.
+     * Cada fila se empaqueta en un long con la clave de ordenamiento en los 32 bits altos y el id de fila en los bajos,
+     * y se ordena el arreglo de long (sin objetos ni comparadores). A igual clave quedan en el orden de carga.
+     * */
+    private int[] sortedPostings(int genreId, ESortKey key) {
+        int[] sorted = this.sortedPostings[genreId][key.ordinal()];
+        if (sorted != null) {
+            return sorted;
+        }
+
+        int genreSize = this.postingSizes[genreId];
+        int[] genrePostings = this.postings[genreId];
+        int[] ranks = key == ESortKey.TITLE ? this.getTitleRanks() : null;
+        long[] packed = new long[genreSize];
+        for (int i = 0; i < genreSize; i++) {
+            int row = genrePostings[i];
+            int sortKey;
+            switch (key) {
+                case RATING:
+                    //Los bits de un float no negativo respetan su orden; se invierten para ordenar de mayor a menor
+                    sortKey = Integer.MAX_VALUE - Float.floatToIntBits(Math.max(this.ratings[row], 0f));
+                    break;
+                case VOTES:
+                    sortKey = Integer.MAX_VALUE - Math.max(this.votes[row], 0);
+                    break;
+                default:
+                    sortKey = ranks[row];
+                    break;
+            }
+            packed[i] = ((long) sortKey << 32) | row;
+        }
+        Arrays.sort(packed);
+
+        sorted = new int[genreSize];
+        for (int i = 0; i < genreSize; i++) {
+            sorted[i] = (int) packed[i];
+        }
+
+        this.sortedPostings[genreId][key.ordinal()] = sorted;
+        return sorted;
+    }
+
+    /**
+     * Devuelve la posición de cada fila en el orden alfabético (sin distinguir mayúsculas) de los títulos,
+     * calculándola si hace falta. Se calcula una única vez para todos los géneros
+     * */
+    private int[] getTitleRanks() {
+        if (this.titleRanks == null) {
+            Integer[] rows = new Integer[this.size];
+            for (int row = 0; row < this.size; row++) {
+                rows[row] = row;
+            }
+            Arrays.sort(rows, (a, b) -> {
+                int result = String.CASE_INSENSITIVE_ORDER.compare(this.titles[a], this.titles[b]);
+                return result != 0 ? result : this.titles[a].compareTo(this.titles[b]);
+            });
+
+            int[] ranks = new int[this.size];
+            for (int rank = 0; rank < rows.length; rank++) {
+                ranks[rows[rank]] = rank;
+            }
+            this.titleRanks = ranks;
+        }
+
+        return this.titleRanks;
+    }
+
+    /**
+     * Agranda todas las columnas para poder almacenar al menos minCapacity series
+     * */
+    private void grow(int minCapacity) {
+        int capacity = Math.max(minCapacity, this.titles.length + (this.titles.length >> 1));
+        this.titles = Arrays.copyOf(this.titles, capacity);
+        this.overviews = Arrays.copyOf(this.overviews, capacity);
+        this.ratings = Arrays.copyOf(this.ratings, capacity);
+        this.votes = Arrays.copyOf(this.votes, capacity);
+        this.seriesRuntimes = Arrays.copyOf(this.seriesRuntimes, capacity);
+        this.certificates = Arrays.copyOf(this.certificates, capacity);
+        this.episodesRuntimes = Arrays.copyOf(this.episodesRuntimes, capacity);
+        for (int i = 0; i < STARS; i++) {
+            this.stars[i] = Arrays.copyOf(this.stars[i], capacity);
+        }
+    }
+
+    /**
+     * Vista de las series de un género sobre sus postings
+     * */
+    private class GenreSeriesList extends AbstractList<Serie> implements RandomAccess {
+        private final int genreId;
+
+        private GenreSeriesList(int genreId) {
+            this.genreId = genreId;
+        }
+
+        @Override
+        public Serie get(int index) {
+            if (index < 0 || index >= postingSizes[this.genreId]) {
+                throw new IndexOutOfBoundsException("Índice: " + index + ", tamaño: " + postingSizes[this.genreId]);
+            }
+            return new Serie(SeriesColumnStore.this, postings[this.genreId][index]);
+        }
+
+        @Override
+        public int size() {
+            return postingSizes[this.genreId];
+        }
+    }
+
+    /**
+     * Vista de las series correspondientes a un tramo de un arreglo de ids de fila
+     * */
+    private class RowSeriesList extends AbstractList<Serie> implements RandomAccess {
+        private final int[] rows;
+        private final int offset;
+        private final int length;
+
+        private RowSeriesList(int[] rows, int offset, int length) {
+            this.rows = rows;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public Serie get(int index) {
+            if (index < 0 || index >= this.length) {
+                throw new IndexOutOfBoundsException("Índice: " + index + ", tamaño: " + this.length);
+            }
+            return new Serie(SeriesColumnStore.this, this.rows[this.offset + index]);
+        }
+
+        @Override
+        public int size() {
+            return this.length;
+        }
+    }
+}
@@ -2,6 +2,10 @@ package org.benja.tpu_tsb_2.support;
 
 import java.io.Serializable;
 import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * Clase que emula la funcionalidad de la clase nativa java.util.Hashtable provista por Java.
@@ -24,6 +28,15 @@ public class TSBHashTableDA<K, V> implements Map<K, V>, Cloneable, Serializable
     // Se utiliza el numero dado ya que se trata del numero primo más cercano al valor devuelto por Integer.MAX_VALUE
     private final static int MAX_SIZE = 2147483587;
 
+    // El tamaño máximo de la tabla cuando se utiliza el modo de capacidad potencia de dos
+    private final static int MAX_POWER_OF_TWO_SIZE = 1 << 30;
+
+    // Constante multiplicativa (derivada de la razón áurea) utilizada para mezclar los bits del hashCode en modo potencia de dos
+    private final static int SPREAD_CONSTANT = 0x9E3779B9;
+
+    // Proporción de tumbas sobre el tamaño de la tabla a partir de la cual se compacta la tabla (por defecto)
+    private final static float DEFAULT_TOMBSTONE_THRESHOLD = 0.25f;
+
 
     //************************ Atributos privados (estructurales).
 
@@ -36,9 +49,18 @@ public class TSBHashTableDA<K, V> implements Map<K, V>, Cloneable, Serializable
     // la cantidad de objetos que contiene la tabla
     private int count;
 
+    // la cantidad de lugares de la tabla marcados como "tumba" (entradas eliminadas aún no reutilizadas)
+    private int tombstones;
+
+    // proporción de tumbas sobre el tamaño de la tabla a partir de la cual la tabla se compacta
+    private float tombstoneThreshold;
+
     // el factor de carga utilizado para determinar si hace falta un rehashing de la tabla
     private float loadFactor;
 
+    // indica si la tabla utiliza tamaños potencia de dos (indexado por máscara) en lugar de tamaños primos
+    private boolean powerOfTwo;
+
     // Generador auxiliar de numeros primos
     private PrimeNumberGenerator primeGenerator;
 
@@ -92,7 +114,49 @@ public class TSBHashTableDA<K, V> implements Map<K, V>, Cloneable, Serializable
      */
     public TSBHashTableDA(int initialCapacity, float loadFactor)
     {
-        if(loadFactor <= 0) { loadFactor = 0.5f; }
+        this(initialCapacity, loadFactor, false);
+    }
+
+    /**
+     * Crea una tabla vacía, con la capacidad inicial indicada, el factor de carga
+     * indicado y el modo de dimensionamiento elegido.
+     *
+     * En el modo por defecto (powerOfTwo = false) la tabla usa tamaños primos, índice
+     * por módulo y exploración cuadrática; el factor de carga se limita a 0.5f, que es
+     * el máximo para el cual la exploración cuadrática garantiza encontrar un lugar libre.
+     *
+     * En el modo potencia de dos la capacidad se redondea a la siguiente potencia de dos,
+     * el índice se obtiene aplicando una máscara al hashCode mezclado y la exploración es
+     * triangular (desplazamientos 1, 3, 6, 10...), que recorre todos los lugares de una
+     * tabla de ese tamaño. En este modo el factor de carga puede ser cualquier valor menor a 1.
+     * @param initialCapacity la capacidad inicial de la tabla.
+     * @param loadFactor el factor de carga de la tabla.
+     * @param powerOfTwo true para utilizar tamaños potencia de dos, false para tamaños primos.
+     */
+    public TSBHashTableDA(int initialCapacity, float loadFactor, boolean powerOfTwo)
+    {
+        this(initialCapacity, loadFactor, powerOfTwo, DEFAULT_TOMBSTONE_THRESHOLD);
+    }
+
+    /**
+     * Crea una tabla vacía con la capacidad inicial, el factor de carga y el modo de
+     * dimensionamiento indicados (ver TSBHashTableDA(int, float, boolean)), y con el umbral
+     * de compactación de tumbas indicado.
+     *
+     * Las entradas eliminadas quedan como tumbas que alargan las búsquedas fallidas; cuando
+     * la proporción de tumbas sobre el tamaño de la tabla supera tombstoneThreshold, la
+     * siguiente inserción reorganiza la tabla sin cambiar su tamaño, descartando las tumbas.
+     * Si el umbral no está en el intervalo (0, 1) se ajustará a 0.25f.
+     * @param initialCapacity la capacidad inicial de la tabla.
+     * @param loadFactor el factor de carga de la tabla.
+     * @param powerOfTwo true para utilizar tamaños potencia de dos, false para tamaños primos.
+     * @param tombstoneThreshold proporción de tumbas que dispara la compactación.
+     */
+    public TSBHashTableDA(int initialCapacity, float loadFactor, boolean powerOfTwo, float tombstoneThreshold)
+    {
+        if(tombstoneThreshold <= 0 || tombstoneThreshold >= 1) { tombstoneThreshold = DEFAULT_TOMBSTONE_THRESHOLD; }
+        if(loadFactor <= 0 || loadFactor >= 1) { loadFactor = 0.5f; }
+        if(!powerOfTwo && loadFactor > 0.5f) { loadFactor = 0.5f; }
         if(initialCapacity <= 0) { initialCapacity = 11; }
         else
         {
@@ -101,12 +165,18 @@ public class TSBHashTableDA<K, V> implements Map<K, V>, Cloneable, Serializable
                 initialCapacity = TSBHashTableDA.MAX_SIZE;
             }
         }
+        if(powerOfTwo) { initialCapacity = TSBHashTableDA.powerOfTwoFor(initialCapacity); }
+        // en modo primo la exploración cuadrática sólo garantiza encontrar un lugar libre en tablas de tamaño primo
+        else { initialCapacity = Math.min(new PrimeNumberGenerator().nextPrime(initialCapacity), MAX_SIZE); }
 
         this.table = new Entry[initialCapacity];
 
         this.initialCapacity = initialCapacity;
         this.loadFactor = loadFactor;
+        this.powerOfTwo = powerOfTwo;
+        this.tombstoneThreshold = tombstoneThreshold;
         this.count = 0;
+        this.tombstones = 0;
         this.modCount = 0;
 
         this.primeGenerator = new PrimeNumberGenerator();
@@ -150,7 +220,7 @@ public class TSBHashTableDA<K, V> implements Map<K, V>, Cloneable, Serializable
             throw new NullPointerException("TSBHashTableDA.get(): parámetro null");
         }
 
-        int indexOfKey = this.searchForIndexOfKey((K) key);
+        int indexOfKey = this.searchForIndexOfKey(key, key.hashCode());
 
         V value = null;
         if (indexOfKey >= 0) {
@@ -169,25 +239,21 @@ public class TSBHashTableDA<K, V> implements Map<K, V>, Cloneable, Serializable
             throw new NullPointerException("TSBHashTableDA.put(): ninguno de los parámetros puede ser null");
         }
 
-        int indexOfKey = this.searchForIndexOfKey(key);
+        int keyHash = key.hashCode();
+        int indexOfKey = this.searchForIndexOfKey(key, keyHash);
 
         if (indexOfKey < 0) {
             throw new IndexOutOfBoundsException("TSBHashTableDA.put(): no se encontró un lugar donde ubicar el par clave-valor");
         }
 
         V oldValue = null;
-        Map.Entry<K, V> entry = this.table[indexOfKey];
-        if (entry != null && !((Entry) entry).isDeleted()) {
+        Entry<K, V> entry = this.liveEntryAt(indexOfKey);
+        if (entry != null) {
             oldValue = entry.getValue();
             entry.setValue(value);
         }
         else {
-            this.table[indexOfKey] = new Entry<>(key, value);
-            this.count++;
-            this.modCount++;
-            if (this.isTableOverloaded()) {
-                this.rehash();
-            }
+            this.insertAt(indexOfKey, key, value, keyHash);
         }
 
         return oldValue;
@@ -199,24 +265,27 @@ public class TSBHashTableDA<K, V> implements Map<K, V>, Cloneable, Serializable
             throw new NullPointerException("TSBHashTableDA.get(): parámetro null");
         }
 
-        int indexOfKey = this.searchForIndexOfKey((K) key);
+        int indexOfKey = this.searchForIndexOfKey(key, key.hashCode());
 
         V value = null;
-        if (indexOfKey >= 0) {
-            Map.Entry<K, V> entry = this.table[indexOfKey];
-            if (entry != null && !((Entry<K, V>) entry).isDeleted()) {
-                value = entry.getValue();
-                ((Entry<K, V>) entry).delete();
-                this.modCount++;
-                this.count--;
-            }
+        Entry<K, V> entry = this.liveEntryAt(indexOfKey);
+        if (entry != null) {
+            value = entry.getValue();
+            this.removeAt(indexOfKey);
+            this.compactIfNeeded();
         }
 
         return value;
     }
 
+    /**
+     * Inserta todos los pares del Map indicado. Antes de insertar se dimensiona la tabla (con a lo sumo
+     * un rehashing) para que entren todos los pares, en lugar de crecer de a saltos durante la inserción.
+     * @param m el Map cuyos pares se insertarán en la tabla.
+     */
     @Override
     public void putAll(Map<? extends K, ? extends V> m) {
+        this.ensureCapacity(this.count + m.size());
         for(Map.Entry<? extends K, ? extends V> e : m.entrySet())
         {
             this.put(e.getKey(), e.getValue());
@@ -225,8 +294,14 @@ public class TSBHashTableDA<K, V> implements Map<K, V>, Cloneable, Serializable
 
     @Override
     public void clear() {
+        // una tabla sin pares ni tumbas ya está vacía: no se crea un arreglo nuevo
+        if (this.count == 0 && this.tombstones == 0) {
+            return;
+        }
+
         this.table = new Entry[this.initialCapacity];
         this.count = 0;
+        this.tombstones = 0;
         this.modCount++;
     }
 
@@ -257,6 +332,198 @@ public class TSBHashTableDA<K, V> implements Map<K, V>, Cloneable, Serializable
         return this.entrySet;
     }
 
+    //************************ Redefinición de los métodos por defecto de Map.
+
+    /*
+     * Las implementaciones por defecto de Map combinan get(), containsKey(), put() y remove(), por lo que buscan
+     * la clave dos o tres veces, o recorren la tabla a través de entrySet() creando un iterador. Las siguientes
+     * buscan la clave una única vez y operan directamente sobre el lugar encontrado del arreglo de soporte.
+     * Si la función invocada modifica la estructura de la tabla se lanza ConcurrentModificationException.
+     */
+
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        if (key == null) {
+            throw new NullPointerException("TSBHashTableDA.getOrDefault(): parámetro null");
+        }
+
+        Entry<K, V> entry = this.liveEntryAt(this.searchForIndexOfKey(key, key.hashCode()));
+        return entry == null ? defaultValue : entry.getValue();
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        if (key == null || value == null) {
+            throw new NullPointerException("TSBHashTableDA.putIfAbsent(): ninguno de los parámetros puede ser null");
+        }
+
+        int keyHash = key.hashCode();
+        int indexOfKey = this.searchForIndexOfKey(key, keyHash);
+        Entry<K, V> entry = this.liveEntryAt(indexOfKey);
+        if (entry != null) {
+            return entry.getValue();
+        }
+
+        this.insertAt(indexOfKey, key, value, keyHash);
+        return null;
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        if (key == null || mappingFunction == null) {
+            throw new NullPointerException("TSBHashTableDA.computeIfAbsent(): ninguno de los parámetros puede ser null");
+        }
+
+        int keyHash = key.hashCode();
+        int indexOfKey = this.searchForIndexOfKey(key, keyHash);
+        Entry<K, V> entry = this.liveEntryAt(indexOfKey);
+        if (entry != null) {
+            return entry.getValue();
+        }
+
+        int expectedModCount = this.modCount;
+        V value = mappingFunction.apply(key);
+        this.checkModCount(expectedModCount);
+        if (value != null) {
+            this.insertAt(indexOfKey, key, value, keyHash);
+        }
+
+        return value;
+    }
+
+    @Override
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        if (key == null || remappingFunction == null) {
+            throw new NullPointerException("TSBHashTableDA.computeIfPresent(): ninguno de los parámetros puede ser null");
+        }
+
+        int indexOfKey = this.searchForIndexOfKey(key, key.hashCode());
+        Entry<K, V> entry = this.liveEntryAt(indexOfKey);
+        if (entry == null) {
+            return null;
+        }
+
+        int expectedModCount = this.modCount;
+        V value = remappingFunction.apply(key, entry.getValue());
+        this.checkModCount(expectedModCount);
+        this.replaceAt(indexOfKey, entry, value);
+
+        return value;
+    }
+
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        if (key == null || remappingFunction == null) {
+            throw new NullPointerException("TSBHashTableDA.compute(): ninguno de los parámetros puede ser null");
+        }
+
+        int keyHash = key.hashCode();
+        int indexOfKey = this.searchForIndexOfKey(key, keyHash);
+        Entry<K, V> entry = this.liveEntryAt(indexOfKey);
+
+        int expectedModCount = this.modCount;
+        V value = remappingFunction.apply(key, entry == null ? null : entry.getValue());
+        this.checkModCount(expectedModCount);
+        if (entry != null) {
+            this.replaceAt(indexOfKey, entry, value);
+        }
+        else if (value != null) {
+            this.insertAt(indexOfKey, key, value, keyHash);
+        }
+
+        return value;
+    }
+
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        if (key == null || value == null || remappingFunction == null) {
+            throw new NullPointerException("TSBHashTableDA.merge(): ninguno de los parámetros puede ser null");
+        }
+
+        int keyHash = key.hashCode();
+        int indexOfKey = this.searchForIndexOfKey(key, keyHash);
+        Entry<K, V> entry = this.liveEntryAt(indexOfKey);
+        if (entry == null) {
+            this.insertAt(indexOfKey, key, value, keyHash);
+            return value;
+        }
+
+        int expectedModCount = this.modCount;
+        V newValue = remappingFunction.apply(entry.getValue(), value);
+        this.checkModCount(expectedModCount);
+        this.replaceAt(indexOfKey, entry, newValue);
+
+        return newValue;
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        if (action == null) {
+            throw new NullPointerException("TSBHashTableDA.forEach(): parámetro null");
+        }
+
+        int expectedModCount = this.modCount;
+        for (Map.Entry<K, V> entry : this.table) {
+            if (entry != null && !((Entry<K, V>) entry).isDeleted()) {
+                action.accept(entry.getKey(), entry.getValue());
+            }
+        }
+        this.checkModCount(expectedModCount);
+    }
+
+    @Override
+    public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+        if (function == null) {
+            throw new NullPointerException("TSBHashTableDA.replaceAll(): parámetro null");
+        }
+
+        int expectedModCount = this.modCount;
+        for (Map.Entry<K, V> entry : this.table) {
+            if (entry != null && !((Entry<K, V>) entry).isDeleted()) {
+                entry.setValue(function.apply(entry.getKey(), entry.getValue()));
+            }
+        }
+        this.checkModCount(expectedModCount);
+    }
+
+    /**
+     * Recorre las claves de la tabla directamente sobre el arreglo de soporte, sin crear un iterador.
+     * @param action acción a ejecutar con cada clave.
+     */
+    public void forEachKey(Consumer<? super K> action)
+    {
+        if (action == null) {
+            throw new NullPointerException("TSBHashTableDA.forEachKey(): parámetro null");
+        }
+
+        int expectedModCount = this.modCount;
+        for (Map.Entry<K, V> entry : this.table) {
+            if (entry != null && !((Entry<K, V>) entry).isDeleted()) {
+                action.accept(entry.getKey());
+            }
+        }
+        this.checkModCount(expectedModCount);
+    }
+
+    /**
+     * Recorre los valores de la tabla directamente sobre el arreglo de soporte, sin crear un iterador.
+     * @param action acción a ejecutar con cada valor.
+     */
+    public void forEachValue(Consumer<? super V> action)
+    {
+        if (action == null) {
+            throw new NullPointerException("TSBHashTableDA.forEachValue(): parámetro null");
+        }
+
+        int expectedModCount = this.modCount;
+        for (Map.Entry<K, V> entry : this.table) {
+            if (entry != null && !((Entry<K, V>) entry).isDeleted()) {
+                action.accept(entry.getValue());
+            }
+        }
+        this.checkModCount(expectedModCount);
+    }
+
     //************************ Métodos redefinidos heredados de Object
 
     @Override
@@ -282,6 +549,7 @@ public class TSBHashTableDA<K, V> implements Map<K, V>, Cloneable, Serializable
         clonedHashTable.keySet = null;
         clonedHashTable.values = null;
         clonedHashTable.count = 0;
+        clonedHashTable.tombstones = 0;
         clonedHashTable.table = new Entry[this.table.length];
         clonedHashTable.putAll(this);
         clonedHashTable.modCount = 0;
@@ -372,33 +640,74 @@ public class TSBHashTableDA<K, V> implements Map<K, V>, Cloneable, Serializable
 
     /**
      * Función hash
+     * En ambos modos mezcla los bits del hashCode. En modo potencia de dos aplica luego una máscara; en modo
+     * primo, en lugar del módulo (una división), reduce el valor al rango [0, t) con una multiplicación y un
+     * desplazamiento (reducción de Lemire: (h * t) / 2^32), que utiliza los bits altos del valor mezclado.
      * @param k clave entera
      * @param t tamaño de tabla
      * @return indice válido para la clave k para poder acceder a una tabla del tamaño especificado
      */
     private int hash(int k, int t)
     {
-        if(k < 0) k *= -1;
-        return k % t;
+        if (this.powerOfTwo) {
+            return TSBHashTableDA.spread(k) & (t - 1);
+        }
+        return (int) (((TSBHashTableDA.spread(k) & 0xffffffffL) * t) >>> 32);
+    }
+
+    /**
+     * Función de mezcla de bits del hashCode
+     * @param k hashCode original
+     * @return hashCode con los bits altos distribuidos sobre los bajos
+     */
+    private static int spread(int k)
+    {
+        int h = k * SPREAD_CONSTANT;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Calcula la menor potencia de dos mayor o igual a n, acotada por MAX_POWER_OF_TWO_SIZE
+     * @param n valor de referencia
+     * @return potencia de dos correspondiente
+     */
+    private static int powerOfTwoFor(int n)
+    {
+        if (n >= MAX_POWER_OF_TWO_SIZE) return MAX_POWER_OF_TWO_SIZE;
+        int p = Integer.highestOneBit(Math.max(n, 2));
+        return p < n ? p << 1 : p;
     }
 
     /**
      * Busca en el arreglo mediante exploración cuadrática el indice donde se encuentra ubicado el objeto con la clave dada o el primer lugar disponible para su insercion
      * El elemento del arreglo estará disponible cuando sea nulo (nunca fue ocupado) o cuando esté marcado como "tumba" (entrada eliminada).
      * La gestión de colisiones mediante direccionamiento abierto se encuentra implementada en este método
+     *
+     * Los desplazamientos se calculan de forma incremental, sin potencias ni multiplicaciones:
+     * en modo primo el paso crece de a 2 (i² = (i-1)² + 2i - 1) y se reduce por resta en lugar de módulo,
+     * por lo que no hay desbordamiento aún en tablas cercanas a MAX_SIZE; en modo potencia de dos el paso
+     * crece de a 1 (números triangulares) y el índice se reduce con la máscara.
+     *
+     * Antes de invocar a equals() se compara el hashCode guardado en cada entrada con el de la clave buscada,
+     * de modo que las colisiones con claves distintas se descartan sin comparar los objetos.
      * @param key clave cuyo indice debe buscarse
+     * @param keyHash hashCode de la clave (calculado una única vez por el invocante)
      * @return indice del par donde se encuentra la clave o un lugar disponible para su inserción.
      * */
-    private int searchForIndexOfKey(K key) {
-        int motherIndex = this.hash(key);
+    private int searchForIndexOfKey(Object key, int keyHash) {
+        Map.Entry<K, V>[] table = this.table;
+        int length = table.length;
+        int mask = length - 1;
+        int currentIndex = this.hash(keyHash, length);
+        int step = 1;
 
         int tombstoneIndex = -1;
         Map.Entry<K, V> currentEntry;
-        for (int i = 0; i < this.table.length; i++) {
-            int currentIndex = (motherIndex + (int)Math.pow(i, 2)) % this.table.length;
-            currentEntry = this.table[currentIndex];
+        for (int i = 0; i < length; i++) {
+            currentEntry = table[currentIndex];
 
             if (currentEntry == null) {
+                if (TableMetrics.ENABLED) TableMetrics.recordProbe(i + 1);
                 return tombstoneIndex < 0? currentIndex : tombstoneIndex;
             }
 
@@ -406,14 +715,128 @@ public class TSBHashTableDA<K, V> implements Map<K, V>, Cloneable, Serializable
                 tombstoneIndex = currentIndex;
             }
 
-            if (currentEntry.getKey().equals(key)) {
+            Entry<K, V> entry = (Entry<K, V>) currentEntry;
+            if (entry.hash == keyHash && entry.getKey().equals(key)) {
+                if (TableMetrics.ENABLED) TableMetrics.recordProbe(i + 1);
                 return currentIndex;
             }
+
+            if (this.powerOfTwo) {
+                currentIndex = (currentIndex + step) & mask;
+                step++;
+            }
+            else {
+                currentIndex = (currentIndex >= length - step) ? currentIndex - (length - step) : currentIndex + step;
+                step += 2;
+                if (step >= length) step -= length;
+            }
         }
 
+        if (TableMetrics.ENABLED) TableMetrics.recordProbe(length);
         return tombstoneIndex;
     }
 
+    /**
+     * Se asegura de que la tabla pueda contener la cantidad de pares indicada sin superar el factor de carga.
+     * Si hace falta, realiza un único rehashing directamente al tamaño necesario (en lugar de varios
+     * rehashing sucesivos duplicando el tamaño).
+     * @param expectedSize cantidad de pares que se espera almacenar en la tabla.
+     */
+    public void ensureCapacity(int expectedSize)
+    {
+        if (expectedSize >= this.overloadThreshold()) {
+            int newLength = TSBHashTableDA.capacityFor(expectedSize, this.loadFactor, this.powerOfTwo, this.primeGenerator);
+            if (newLength > this.table.length) {
+                this.rehash(newLength);
+            }
+        }
+    }
+
+    /**
+     * @return el tamaño actual del arreglo de soporte de la tabla.
+     */
+    public int getCapacity()
+    {
+        return this.table.length;
+    }
+
+    /**
+     * @return la cantidad de lugares de la tabla marcados como tumba.
+     */
+    public int getTombstoneCount()
+    {
+        return this.tombstones;
+    }
+
+    /**
+     * Crea una tabla dimensionada para la cantidad de pares esperada y la carga con los pares provistos
+     * por el iterador. Equivale a new Builder&lt;K, V&gt;().expectedSize(expectedSize).bulkLoad(entries).
+     * @param entries iterador de los pares a insertar.
+     * @param expectedSize cantidad de pares que se espera insertar.
+     * @return la tabla cargada.
+     */
+    public static <K, V> TSBHashTableDA<K, V> bulkLoad(Iterator<? extends Map.Entry<? extends K, ? extends V>> entries, int expectedSize)
+    {
+        return new Builder<K, V>().expectedSize(expectedSize).bulkLoad(entries);
+    }
+
+    /**
+     * Calcula el tamaño de tabla necesario para almacenar la cantidad de pares indicada sin superar el factor de carga
+     * @param expectedSize cantidad de pares a almacenar
+     * @param loadFactor factor de carga de la tabla
+     * @param powerOfTwo modo de dimensionamiento de la tabla
+     * @param primeGenerator generador de números primos a utilizar en modo primo
+     * @return tamaño de tabla primo o potencia de dos, según el modo
+     */
+    private static int capacityFor(int expectedSize, float loadFactor, boolean powerOfTwo, PrimeNumberGenerator primeGenerator)
+    {
+        long needed = (long) Math.ceil(expectedSize / (double) loadFactor) + 1;
+        if (powerOfTwo) {
+            return TSBHashTableDA.powerOfTwoFor((int) Math.min(needed, MAX_POWER_OF_TWO_SIZE));
+        }
+        return Math.min(primeGenerator.nextPrime((int) Math.min(needed, MAX_SIZE)), MAX_SIZE);
+    }
+
+    /**
+     * Inserta los pares provistos por el iterador sin las comprobaciones de carga y de tumbas que realiza put()
+     * en cada inserción: sólo se compara la cantidad de pares contra un umbral precalculado, y si la cantidad
+     * esperada fue subestimada, la tabla crece directamente al doble de la cantidad alcanzada.
+     * El contador de modificaciones se incrementa una única vez al finalizar la carga.
+     * @param entries iterador de los pares a insertar.
+     */
+    private void bulkInsert(Iterator<? extends Map.Entry<? extends K, ? extends V>> entries)
+    {
+        int threshold = this.overloadThreshold();
+        while (entries.hasNext()) {
+            Map.Entry<? extends K, ? extends V> pair = entries.next();
+            K key = pair.getKey();
+            V value = pair.getValue();
+            if (key == null || value == null) {
+                throw new NullPointerException("TSBHashTableDA.bulkLoad(): ninguno de los parámetros puede ser null");
+            }
+
+            int keyHash = key.hashCode();
+            int indexOfKey = this.searchForIndexOfKey(key, keyHash);
+            Map.Entry<K, V> entry = this.table[indexOfKey];
+            if (entry != null && !((Entry) entry).isDeleted()) {
+                entry.setValue(value);
+                continue;
+            }
+            if (entry != null) {
+                this.tombstones--;
+            }
+
+            this.table[indexOfKey] = new Entry<>(key, value, keyHash);
+            this.count++;
+            if (this.count >= threshold) {
+                this.rehash(TSBHashTableDA.capacityFor(this.count * 2, this.loadFactor, this.powerOfTwo, this.primeGenerator));
+                threshold = this.overloadThreshold();
+            }
+        }
+
+        this.modCount++;
+    }
+
     /**
      * Determina si alguna clave de la tabla está asociada al objeto value que
      * entra como parámetro. Equivale a containsValue().
@@ -422,10 +845,10 @@ public class TSBHashTableDA<K, V> implements Map<K, V>, Cloneable, Serializable
      */
     public boolean contains(Object value)
     {
-        Set<Map.Entry<K, V>> entries = this.entrySet();
+        if (value == null) return false;
 
-        for (Map.Entry<K, V> entry : entries) {
-            if (Objects.equals(value, entry.getValue())) {
+        for (Map.Entry<K, V> entry : this.table) {
+            if (entry != null && !((Entry<K, V>) entry).isDeleted() && value.equals(entry.getValue())) {
                 return true;
             }
         }
@@ -433,30 +856,188 @@ public class TSBHashTableDA<K, V> implements Map<K, V>, Cloneable, Serializable
         return false;
     }
 
+    /**
+     * Devuelve la entrada vigente ubicada en el lugar indicado de la tabla.
+     * @param index lugar de la tabla, resultado de searchForIndexOfKey().
+     * @return la entrada, o null si el lugar es inválido, está vacío o es una tumba.
+     */
+    private Entry<K, V> liveEntryAt(int index)
+    {
+        if (index < 0) return null;
+
+        Map.Entry<K, V> entry = this.table[index];
+        if (entry == null || ((Entry<K, V>) entry).isDeleted()) return null;
+
+        return (Entry<K, V>) entry;
+    }
+
+    /**
+     * Inserta un par nuevo en el lugar indicado (vacío o tumba) y, si hace falta, realiza el rehashing
+     * o la compactación de la tabla.
+     * @param index lugar de la tabla, resultado de searchForIndexOfKey() para la clave.
+     * @param key la clave a insertar.
+     * @param value el valor a insertar.
+     * @param keyHash hashCode de la clave.
+     */
+    private void insertAt(int index, K key, V value, int keyHash)
+    {
+        if (index < 0) {
+            throw new IndexOutOfBoundsException("TSBHashTableDA: no se encontró un lugar donde ubicar el par clave-valor");
+        }
+
+        // si el lugar encontrado es una tumba se reutiliza, y deja de contarse como tal
+        if (this.table[index] != null) {
+            this.tombstones--;
+        }
+        this.table[index] = new Entry<>(key, value, keyHash);
+        this.count++;
+        this.modCount++;
+        if (this.isTableOverloaded()) {
+            this.rehash();
+        }
+        else if (this.hasTooManyTombstones()) {
+            this.compact();
+        }
+    }
+
+    /**
+     * Marca como tumba la entrada vigente ubicada en el lugar indicado. No compacta la tabla, ya que los
+     * iteradores necesitan que las entradas no cambien de lugar mientras recorren: quien invoca decide cuándo
+     * hacerlo con compactIfNeeded().
+     * @param index lugar de la tabla de una entrada vigente.
+     */
+    private void removeAt(int index)
+    {
+        ((Entry<K, V>) this.table[index]).delete();
+        this.modCount++;
+        this.count--;
+        this.tombstones++;
+    }
+
+    /**
+     * Reemplaza el valor de la entrada vigente ubicada en el lugar indicado, o la elimina si el valor nuevo es null
+     * (semántica de compute() y merge()).
+     */
+    private void replaceAt(int index, Entry<K, V> entry, V value)
+    {
+        if (value == null) {
+            this.removeAt(index);
+            this.compactIfNeeded();
+        }
+        else {
+            entry.setValue(value);
+        }
+    }
+
+    /**
+     * Compacta la tabla si la proporción de tumbas superó tombstoneThreshold. Se invoca luego de cada borrado
+     * (y al terminar un recorrido que borró con Iterator.remove()), de modo que una tabla que sólo recibe
+     * borrados tampoco acumule tumbas.
+     */
+    private void compactIfNeeded()
+    {
+        if (this.hasTooManyTombstones()) {
+            this.compact();
+        }
+    }
+
+    private void checkModCount(int expectedModCount)
+    {
+        if (this.modCount != expectedModCount) {
+            throw new ConcurrentModificationException("TSBHashTableDA: la tabla fue modificada durante la operación");
+        }
+    }
+
     /**
      * Incrementa el tamaño de la tabla y reorganiza su contenido.
      * Se invoca automaticamente cuando se detecta que la proporción entre
      * elementos almacenados en la tabla y su tamaño supera el valor loadFactor.
      * También se asegura que el tamaño de la tabla siempre se trate de un numero
      * primo y que no supere el valor maximo dado por la constante MAX_SIZE
+     * (o de una potencia de dos que no supere MAX_POWER_OF_TWO_SIZE, si la tabla usa ese modo). Una tabla en modo
+     * potencia de dos que ya tiene el tamaño MAX_POWER_OF_TWO_SIZE no crece más: sólo se compacta si tiene tumbas.
      */
     private void rehash() {
         int oldLength = this.table.length;
-        int newLength = oldLength * 2 + 1;
-        newLength = this.primeGenerator.nextPrime(newLength);
-        newLength = Math.min(newLength, MAX_SIZE);
+        int newLength;
+        if (this.powerOfTwo) {
+            if (oldLength >= MAX_POWER_OF_TWO_SIZE) {
+                if (this.tombstones > 0) {
+                    this.compact();
+                }
+                return;
+            }
+            newLength = TSBHashTableDA.powerOfTwoFor((int) Math.min(oldLength * 2L, MAX_POWER_OF_TWO_SIZE));
+        }
+        else {
+            newLength = (int) Math.min(oldLength * 2L + 1, MAX_SIZE);
+            newLength = this.primeGenerator.nextPrime(newLength);
+            newLength = Math.min(newLength, MAX_SIZE);
+        }
+
+        this.rehash(newLength);
+    }
+
+    /**
+     * Reorganiza la tabla sin cambiar su tamaño, descartando todas las tumbas.
+     * Se invoca automaticamente al insertar o borrar cuando la proporción de tumbas supera tombstoneThreshold,
+     * de modo que las búsquedas fallidas no tengan que recorrer secuencias cada vez más largas de
+     * entradas eliminadas en tablas con muchas inserciones y borrados.
+     */
+    private void compact() {
+        this.rehash(this.table.length);
+    }
 
+    /**
+     * Reubica todas las entradas vigentes en una tabla nueva del tamaño indicado.
+     * Las tumbas no se copian, por lo que la tabla resultante no contiene ninguna.
+     * Si las métricas están habilitadas se registra la duración (ver TableMetrics).
+     * @param newLength tamaño de la tabla nueva
+     */
+    private void rehash(int newLength) {
+        long start = TableMetrics.ENABLED ? System.nanoTime() : 0;
         Map.Entry<K, V>[] oldTable = this.table;
         this.table = new Entry[newLength];
 
         this.modCount++;
-        this.count = 0;
+        this.tombstones = 0;
 
         for (Map.Entry<K, V> entry : oldTable) {
             if (entry != null && !((Entry) entry).isDeleted()) {
-                this.put(entry.getKey(), entry.getValue());
+                this.relocate((Entry<K, V>) entry);
             }
         }
+
+        if (TableMetrics.ENABLED) TableMetrics.recordRehash(System.nanoTime() - start, newLength == oldTable.length);
+    }
+
+    /**
+     * Ubica una entrada ya existente en la tabla nueva durante el rehashing.
+     * Reutiliza el objeto Entry y el hashCode guardado en él, por lo que no se vuelve a invocar
+     * a hashCode() ni a equals(): la tabla nueva no tiene tumbas ni claves repetidas, así que
+     * basta con explorar hasta el primer lugar nulo.
+     * @param entry la entrada a reubicar
+     */
+    private void relocate(Entry<K, V> entry) {
+        Map.Entry<K, V>[] table = this.table;
+        int length = table.length;
+        int mask = length - 1;
+        int currentIndex = this.hash(entry.hash, length);
+        int step = 1;
+
+        while (table[currentIndex] != null) {
+            if (this.powerOfTwo) {
+                currentIndex = (currentIndex + step) & mask;
+                step++;
+            }
+            else {
+                currentIndex = (currentIndex >= length - step) ? currentIndex - (length - step) : currentIndex + step;
+                step += 2;
+                if (step >= length) step -= length;
+            }
+        }
+
+        table[currentIndex] = entry;
     }
 
     /**
@@ -465,11 +1046,107 @@ public class TSBHashTableDA<K, V> implements Map<K, V>, Cloneable, Serializable
      * @return si la tabla supera el factor de carga o no*/
     private boolean isTableOverloaded() {
         double length = this.table.length;
-        return this.count / length >= 0.5;
+        return this.count / length >= this.loadFactor;
+    }
+
+    /**
+     * Calcula la cantidad de pares a partir de la cual la tabla supera el factor de carga
+     * @return cantidad de pares que dispara el rehashing*/
+    private int overloadThreshold() {
+        return (int) Math.ceil(this.table.length * (double) this.loadFactor);
+    }
+
+    /**
+     * Comprueba si la proporción de tumbas sobre el tamaño de la tabla superó el umbral de compactación
+     * @return si la tabla debe compactarse o no*/
+    private boolean hasTooManyTombstones() {
+        double length = this.table.length;
+        return this.tombstones / length > this.tombstoneThreshold;
     }
 
     //************************ Clases internas de soporte
 
+    /**
+     * Clase que permite configurar y crear una tabla dimensionada de antemano para la cantidad de pares
+     * que se espera almacenar, y opcionalmente cargarla de una sola vez con bulkLoad().
+     * Al conocer la cantidad esperada, la tabla se crea con su tamaño definitivo y se evita la cascada de
+     * rehashing (11, 23, 47...) que se produce al crecer desde el tamaño por defecto.
+     *
+     * @param <K> La clase de los objetos que serán usados como clave en la tabla.
+     * @param <V> La clase de los objetos que serán los valores almacenados en la tabla.
+     */
+    public static class Builder<K, V> {
+        private int expectedSize;
+        private float loadFactor;
+        private boolean powerOfTwo;
+        private float tombstoneThreshold;
+
+        public Builder()
+        {
+            this.expectedSize = 0;
+            this.loadFactor = 0.5f;
+            this.powerOfTwo = false;
+            this.tombstoneThreshold = DEFAULT_TOMBSTONE_THRESHOLD;
+        }
+
+        /**
+         * @param expectedSize cantidad de pares que se espera almacenar en la tabla.*/
+        public Builder<K, V> expectedSize(int expectedSize)
+        {
+            this.expectedSize = expectedSize;
+            return this;
+        }
+
+        /**
+         * @param loadFactor el factor de carga de la tabla.*/
+        public Builder<K, V> loadFactor(float loadFactor)
+        {
+            this.loadFactor = loadFactor;
+            return this;
+        }
+
+        /**
+         * @param powerOfTwo true para utilizar tamaños potencia de dos, false para tamaños primos.*/
+        public Builder<K, V> powerOfTwo(boolean powerOfTwo)
+        {
+            this.powerOfTwo = powerOfTwo;
+            return this;
+        }
+
+        /**
+         * @param tombstoneThreshold proporción de tumbas que dispara la compactación.*/
+        public Builder<K, V> tombstoneThreshold(float tombstoneThreshold)
+        {
+            this.tombstoneThreshold = tombstoneThreshold;
+            return this;
+        }
+
+        /**
+         * Crea una tabla vacía con la configuración indicada, dimensionada para la cantidad de pares esperada.
+         * @return la tabla creada.
+         */
+        public TSBHashTableDA<K, V> build()
+        {
+            TSBHashTableDA<K, V> table = new TSBHashTableDA<>(11, this.loadFactor, this.powerOfTwo, this.tombstoneThreshold);
+            table.ensureCapacity(this.expectedSize);
+            table.initialCapacity = table.table.length;
+            return table;
+        }
+
+        /**
+         * Crea la tabla con la configuración indicada y la carga con los pares provistos por el iterador.
+         * Si la cantidad esperada es correcta la carga no realiza ningún rehashing.
+         * @param entries iterador de los pares a insertar.
+         * @return la tabla cargada.
+         */
+        public TSBHashTableDA<K, V> bulkLoad(Iterator<? extends Map.Entry<? extends K, ? extends V>> entries)
+        {
+            TSBHashTableDA<K, V> table = this.build();
+            table.bulkInsert(entries);
+            return table;
+        }
+    }
+
     /**
      * Clase interna que representa los pares de objetos clave-valor a almacenar dentro de la tabla hash.
      * Instancias de esta clase son las almacenadas dentro del arreglo de soporte
@@ -479,11 +1156,13 @@ public class TSBHashTableDA<K, V> implements Map<K, V>, Cloneable, Serializable
         private K key;
         private V value;
         private boolean deleted;
+        // hashCode completo de la clave, calculado una única vez al insertar el par
+        private final int hash;
 
         /**
          * Constructor de la clase
          * @throws IllegalArgumentException si se intenta inicializar con clave y/o valor nulos*/
-        public Entry(K key, V value)
+        public Entry(K key, V value, int hash)
         {
             if(key == null || value == null)
             {
@@ -491,6 +1170,7 @@ public class TSBHashTableDA<K, V> implements Map<K, V>, Cloneable, Serializable
             }
             this.key = key;
             this.value = value;
+            this.hash = hash;
         }
 
         @Override
@@ -577,29 +1257,39 @@ public class TSBHashTableDA<K, V> implements Map<K, V>, Cloneable, Serializable
          * Comprueba si la vista (y por tanto la tabla hash) contiene el par especificado*/
         @Override
         public boolean contains(Object o) {
-           if (o == null) return false;
-           if (!(o instanceof Entry)) return false;
-
-           Map.Entry<K, V> entry = (Map.Entry<K, V>) o;
-           K key = entry.getKey();
-           int index = TSBHashTableDA.this.hash(key);
-
-           Map.Entry<K, V> tableEntry = TSBHashTableDA.this.table[index];
-
-           return Objects.equals(entry, tableEntry);
+            return this.indexOf(o) >= 0;
         }
 
+        /**
+         * Elimina el par sólo si la tabla contiene la clave asociada al mismo valor*/
         @Override
         public boolean remove(Object o) {
             if (o == null) {
                 throw new NullPointerException("remove(): parámetro null");
             }
-            if (!(o instanceof Entry)) return false;
 
-            Map.Entry<K, V> entry = (Map.Entry<K, V>) o;
-            K key = entry.getKey();
+            int index = this.indexOf(o);
+            if (index < 0) return false;
+
+            TSBHashTableDA.this.removeAt(index);
+            TSBHashTableDA.this.compactIfNeeded();
+            return true;
+        }
+
+        /**
+         * Busca en la tabla (explorando desde el lugar de la clave) la entrada con la clave y el valor del par indicado
+         * @return lugar de la tabla de la entrada, o -1 si la tabla no contiene el par*/
+        private int indexOf(Object o) {
+            if (!(o instanceof Map.Entry)) return -1;
+
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+            Object key = entry.getKey();
+            if (key == null) return -1;
+
+            int index = TSBHashTableDA.this.searchForIndexOfKey(key, key.hashCode());
+            Entry<K, V> tableEntry = TSBHashTableDA.this.liveEntryAt(index);
 
-            return TSBHashTableDA.this.remove(key) != null;
+            return tableEntry != null && Objects.equals(tableEntry.getValue(), entry.getValue()) ? index : -1;
         }
 
         @Override
@@ -607,11 +1297,18 @@ public class TSBHashTableDA<K, V> implements Map<K, V>, Cloneable, Serializable
             return new EntrySetIterator();
         }
 
+        @Override
+        public Spliterator<Map.Entry<K, V>> spliterator() {
+            return new TableSpliterator<>(entry -> entry, Spliterator.DISTINCT | Spliterator.NONNULL);
+        }
+
         private class EntrySetIterator implements Iterator<Map.Entry<K, V>> {
             private int currentEntry;
             private int lastEntry;
             private boolean nextOk;
             private int expectedModCount;
+            // si se borró alguna entrada con remove(): la compactación se posterga hasta terminar el recorrido
+            private boolean removedAny;
 
             private EntrySetIterator() {
                 currentEntry = -1;
@@ -623,16 +1320,22 @@ public class TSBHashTableDA<K, V> implements Map<K, V>, Cloneable, Serializable
 
             @Override
             public boolean hasNext() {
-                if (TSBHashTableDA.this.isEmpty()) return false;
                 Map.Entry<K, V>[] table = TSBHashTableDA.this.table;
-                if (currentEntry >= table.length) return false;
 
-                int nextEntry = currentEntry + 1;
+                // si la tabla está vacía no hace falta explorarla
+                int nextEntry = TSBHashTableDA.this.isEmpty() ? table.length : currentEntry + 1;
                 while (nextEntry < table.length && (table[nextEntry] == null || ((Entry) table[nextEntry]).isDeleted())) {
                     nextEntry++;
                 }
 
-                return nextEntry < table.length;
+                if (nextEntry < table.length) return true;
+                if (removedAny) {
+                    // terminado el recorrido ya se pueden reubicar las entradas
+                    TSBHashTableDA.this.compactIfNeeded();
+                    expectedModCount = TSBHashTableDA.this.modCount;
+                    removedAny = false;
+                }
+                return false;
             }
 
             @Override
@@ -662,8 +1365,8 @@ public class TSBHashTableDA<K, V> implements Map<K, V>, Cloneable, Serializable
                     throw new IllegalStateException("EntrySetIterator.remove(): se debe invocar a next() antes de volver a invocar a remove()");
                 }
 
-                Map.Entry<K, V> removed = TSBHashTableDA.this.table[currentEntry];
-                EntrySet.this.remove(removed);
+                TSBHashTableDA.this.removeAt(currentEntry);
+                removedAny = true;
 
                 if(lastEntry != currentEntry)
                 {
@@ -696,6 +1399,12 @@ public class TSBHashTableDA<K, V> implements Map<K, V>, Cloneable, Serializable
             return new KeySetIterator();
         }
 
+        @Override
+        public Spliterator<K> spliterator()
+        {
+            return new TableSpliterator<>(Map.Entry::getKey, Spliterator.DISTINCT | Spliterator.NONNULL);
+        }
+
         @Override
         public int size()
         {
@@ -729,6 +1438,9 @@ public class TSBHashTableDA<K, V> implements Map<K, V>, Cloneable, Serializable
 
             private int expectedModCount;
 
+            // si se borró alguna entrada con remove(): la compactación se posterga hasta terminar el recorrido
+            private boolean removedAny;
+
             /**
              * Crea un iterador comenzando en la primera lista. Activa el
              * mecanismo fail-fast.
@@ -748,16 +1460,22 @@ public class TSBHashTableDA<K, V> implements Map<K, V>, Cloneable, Serializable
             @Override
             public boolean hasNext()
             {
-                if (TSBHashTableDA.this.isEmpty()) return false;
                 Map.Entry<K, V>[] table = TSBHashTableDA.this.table;
-                if (currentEntry >= table.length) return false;
 
-                int nextEntry = currentEntry + 1;
+                // si la tabla está vacía no hace falta explorarla
+                int nextEntry = TSBHashTableDA.this.isEmpty() ? table.length : currentEntry + 1;
                 while (nextEntry < table.length && (table[nextEntry] == null || ((Entry) table[nextEntry]).isDeleted())) {
                     nextEntry++;
                 }
 
-                return nextEntry < table.length;
+                if (nextEntry < table.length) return true;
+                if (removedAny) {
+                    // terminado el recorrido ya se pueden reubicar las entradas
+                    TSBHashTableDA.this.compactIfNeeded();
+                    expectedModCount = TSBHashTableDA.this.modCount;
+                    removedAny = false;
+                }
+                return false;
             }
 
             /*
@@ -798,8 +1516,8 @@ public class TSBHashTableDA<K, V> implements Map<K, V>, Cloneable, Serializable
                     throw new IllegalStateException("KeySetIterator.remove(): se debe invocar a next() antes de volver a invocar a remove()");
                 }
 
-                Map.Entry<K, V> removed = TSBHashTableDA.this.table[currentEntry];
-                KeySet.this.remove(removed.getKey());
+                TSBHashTableDA.this.removeAt(currentEntry);
+                removedAny = true;
 
                 if(lastEntry != currentEntry)
                 {
@@ -831,6 +1549,12 @@ public class TSBHashTableDA<K, V> implements Map<K, V>, Cloneable, Serializable
             return new ValueCollectionIterator();
         }
 
+        @Override
+        public Spliterator<V> spliterator()
+        {
+            return new TableSpliterator<>(Map.Entry::getValue, Spliterator.NONNULL);
+        }
+
         @Override
         public int size()
         {
@@ -858,6 +1582,9 @@ public class TSBHashTableDA<K, V> implements Map<K, V>, Cloneable, Serializable
 
             private int expectedModCount;
 
+            // si se borró alguna entrada con remove(): la compactación se posterga hasta terminar el recorrido
+            private boolean removedAny;
+
             /*
              * Crea un iterador comenzando en la primera lista. Activa el
              * mecanismo fail-fast.
@@ -877,16 +1604,22 @@ public class TSBHashTableDA<K, V> implements Map<K, V>, Cloneable, Serializable
             @Override
             public boolean hasNext()
             {
-                if (TSBHashTableDA.this.isEmpty()) return false;
                 Map.Entry<K, V>[] table = TSBHashTableDA.this.table;
-                if (currentEntry >= table.length) return false;
 
-                int nextEntry = currentEntry + 1;
+                // si la tabla está vacía no hace falta explorarla
+                int nextEntry = TSBHashTableDA.this.isEmpty() ? table.length : currentEntry + 1;
                 while (nextEntry < table.length && (table[nextEntry] == null || ((Entry) table[nextEntry]).isDeleted())) {
                     nextEntry++;
                 }
 
-                return nextEntry < table.length;
+                if (nextEntry < table.length) return true;
+                if (removedAny) {
+                    // terminado el recorrido ya se pueden reubicar las entradas
+                    TSBHashTableDA.this.compactIfNeeded();
+                    expectedModCount = TSBHashTableDA.this.modCount;
+                    removedAny = false;
+                }
+                return false;
             }
 
             /*
@@ -928,9 +1661,8 @@ public class TSBHashTableDA<K, V> implements Map<K, V>, Cloneable, Serializable
                     throw new IllegalStateException("ValueCollectionIterator.remove(): debe invocar a next() antes de remove()...");
                 }
 
-                Map.Entry<K, V> removed = TSBHashTableDA.this.table[currentEntry];
-
-                TSBHashTableDA.this.remove(removed.getKey());
+                TSBHashTableDA.this.removeAt(currentEntry);
+                removedAny = true;
 
                 if(lastEntry != currentEntry)
                 {
@@ -942,4 +1674,136 @@ public class TSBHashTableDA<K, V> implements Map<K, V>, Cloneable, Serializable
             }
         }
     }
+
+    /**
+     * Spliterator de las vistas de la tabla (pares, claves o valores) que recorre un rango de lugares del arreglo
+     * de soporte. Al dividirse parte el rango en dos mitades iguales, por lo que un stream paralelo reparte la tabla
+     * en partes de igual tamaño entre los hilos del ForkJoinPool.
+     *
+     * El spliterator se asocia a la tabla (y a su arreglo de soporte) en el primer uso. Antes de dividirse informa
+     * la cantidad exacta de elementos (SIZED); las partes informan una estimación (la mitad de la cantidad del
+     * spliterator dividido), ya que contar los pares de cada rango obligaría a recorrerlo. Si la estructura de la
+     * tabla cambia durante el recorrido se lanza ConcurrentModificationException.
+     *
+     * @param <T> La clase de los elementos de la vista.
+     */
+    private final class TableSpliterator<T> implements Spliterator<T>
+    {
+        // función que obtiene el elemento de la vista a partir de cada entrada
+        private final Function<Map.Entry<K, V>, T> element;
+
+        // características propias de la vista (sin SIZED, que depende de si el spliterator fue dividido)
+        private final int characteristics;
+
+        private Map.Entry<K, V>[] table;
+        private int index;
+        // fin (exclusivo) del rango de lugares; -1 hasta asociar el spliterator a la tabla
+        private int fence;
+        private int estimatedSize;
+        private int expectedModCount;
+        private boolean split;
+
+        TableSpliterator(Function<Map.Entry<K, V>, T> element, int characteristics)
+        {
+            this.element = element;
+            this.characteristics = characteristics;
+            this.fence = -1;
+        }
+
+        private TableSpliterator(TableSpliterator<T> parent, int index, int fence)
+        {
+            this.element = parent.element;
+            this.characteristics = parent.characteristics;
+            this.table = parent.table;
+            this.index = index;
+            this.fence = fence;
+            this.estimatedSize = parent.estimatedSize;
+            this.expectedModCount = parent.expectedModCount;
+            this.split = true;
+        }
+
+        /**
+         * Asocia el spliterator a la tabla en su estado actual, si todavía no fue asociado
+         * @return el fin del rango de lugares a recorrer
+         */
+        private int getFence()
+        {
+            if (this.fence < 0) {
+                this.table = TSBHashTableDA.this.table;
+                this.fence = this.table.length;
+                this.estimatedSize = TSBHashTableDA.this.count;
+                this.expectedModCount = TSBHashTableDA.this.modCount;
+            }
+
+            return this.fence;
+        }
+
+        @Override
+        public Spliterator<T> trySplit()
+        {
+            int hi = this.getFence();
+            int lo = this.index;
+            int mid = (lo + hi) >>> 1;
+            if (lo >= mid) {
+                return null;
+            }
+
+            this.estimatedSize >>>= 1;
+            this.split = true;
+            this.index = mid;
+            return new TableSpliterator<>(this, lo, mid);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action)
+        {
+            if (action == null) {
+                throw new NullPointerException("TSBHashTableDA.TableSpliterator.tryAdvance(): parámetro null");
+            }
+
+            int hi = this.getFence();
+            while (this.index < hi) {
+                Map.Entry<K, V> entry = this.table[this.index++];
+                if (entry != null && !((Entry<K, V>) entry).isDeleted()) {
+                    action.accept(this.element.apply(entry));
+                    TSBHashTableDA.this.checkModCount(this.expectedModCount);
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action)
+        {
+            if (action == null) {
+                throw new NullPointerException("TSBHashTableDA.TableSpliterator.forEachRemaining(): parámetro null");
+            }
+
+            int hi = this.getFence();
+            Map.Entry<K, V>[] table = this.table;
+            for (int i = this.index; i < hi; i++) {
+                Map.Entry<K, V> entry = table[i];
+                if (entry != null && !((Entry<K, V>) entry).isDeleted()) {
+                    action.accept(this.element.apply(entry));
+                }
+            }
+            this.index = hi;
+            TSBHashTableDA.this.checkModCount(this.expectedModCount);
+        }
+
+        @Override
+        public long estimateSize()
+        {
+            this.getFence();
+            return this.estimatedSize;
+        }
+
+        @Override
+        public int characteristics()
+        {
+            return this.split ? this.characteristics : this.characteristics | Spliterator.SIZED;
+        }
+    }
 }
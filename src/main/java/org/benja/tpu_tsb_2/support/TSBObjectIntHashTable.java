@@ -0,0 +1,527 @@
+package org.benja.tpu_tsb_2.support;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Variante de TSBHashTableDA especializada para mapear claves de tipo objeto a valores primitivos int.
+ * Pensada para los contadores que se actualizan en cada fila durante la carga del archivo de datos.
+ *
+ * Utiliza el mismo esquema que TSBHashTableDA (tamaño de tabla primo y exploración cuadrática), pero en lugar
+ * de un arreglo de objetos Entry almacena claves y valores en dos arreglos paralelos, por lo que ninguna
+ * operación sobre los valores genera objetos nuevos (no hay boxing ni entradas).
+ *
+ * Al igual que TSBHashTableDA no admite claves nulas, y si las métricas están habilitadas registra la longitud de
+ * cada exploración y la duración de cada rehashing (ver TableMetrics).
+ *
+ * @author Grupo 20
+ * @version Octubre de 2022
+ * @param <K> La clase de los objetos que serán usados como clave en la tabla.
+ */
+public class TSBObjectIntHashTable<K> implements Cloneable, Serializable {
+    //************************ Constantes (privadas o públicas).
+
+    private static final long serialVersionUID = 1L;
+
+    // El tamaño máximo que podrá tener el arreglo interno de soporte (mismo valor que en TSBHashTableDA)
+    private final static int MAX_SIZE = 2147483587;
+
+    // Marca utilizada en el arreglo de claves para representar una "tumba" (entrada eliminada)
+    private final static Object DELETED = new Object();
+
+    // Proporción de tumbas sobre el tamaño de la tabla a partir de la cual se compacta la tabla (mismo valor que en TSBHashTableDA)
+    private final static float TOMBSTONE_THRESHOLD = 0.25f;
+
+
+    //************************ Atributos privados (estructurales).
+
+    // las claves almacenadas: null si el lugar nunca fue ocupado, DELETED si fue borrado.
+    // Los arreglos no se serializan directamente (ver writeObject()), ya que DELETED no sobrevive a la deserialización
+    private transient Object[] keys;
+
+    // los valores asociados a cada clave, en la misma posición que la clave en el arreglo keys
+    private transient int[] values;
+
+    // el tamaño inicial de la tabla (tamaño con el que fue creada)
+    private int initialCapacity;
+
+    // la cantidad de claves que contiene la tabla
+    private int count;
+
+    // la cantidad de tumbas que contiene la tabla (se descartan en cada rehashing)
+    private transient int tombstones;
+
+    // el factor de carga utilizado para determinar si hace falta un rehashing de la tabla
+    private float loadFactor;
+
+    // Generador auxiliar de numeros primos
+    private transient PrimeNumberGenerator primeGenerator;
+
+    //************************ Constructores.
+
+    /**
+     * Crea una tabla vacía, con la capacidad inicial igual a 11 y con factor
+     * de carga igual a 0.5f.
+     */
+    public TSBObjectIntHashTable()
+    {
+        this(11, 0.5f);
+    }
+
+    /**
+     * Crea una tabla vacía, con la capacidad inicial indicada y con factor
+     * de carga igual a 0.5f.
+     * @param initialCapacity la capacidad inicial de la tabla.
+     */
+    public TSBObjectIntHashTable(int initialCapacity)
+    {
+        this(initialCapacity, 0.5f);
+    }
+
+    /**
+     * Crea una tabla vacía, con la capacidad inicial indicada y con el factor
+     * de carga indicado. Si la capacidad inicial es menor o igual a 0, la tabla
+     * será creada de tamaño 11; en caso contrario se redondea al siguiente número
+     * primo, ya que la exploración cuadrática sólo garantiza encontrar un lugar libre
+     * en tablas de tamaño primo. Si el factor de carga indicado es menor o igual a 0
+     * o mayor a 0.5f, se ajustará a 0.5f (límite que garantiza que la exploración
+     * cuadrática siempre encuentre un lugar libre en una tabla de tamaño primo).
+     * @param initialCapacity la capacidad inicial de la tabla.
+     * @param loadFactor el factor de carga de la tabla.
+     */
+    public TSBObjectIntHashTable(int initialCapacity, float loadFactor)
+    {
+        if(loadFactor <= 0 || loadFactor > 0.5f) { loadFactor = 0.5f; }
+        this.primeGenerator = new PrimeNumberGenerator();
+
+        if(initialCapacity <= 0) { initialCapacity = 11; }
+        else { initialCapacity = Math.min(this.primeGenerator.nextPrime(initialCapacity), TSBObjectIntHashTable.MAX_SIZE); }
+
+        this.keys = new Object[initialCapacity];
+        this.values = new int[initialCapacity];
+
+        this.initialCapacity = initialCapacity;
+        this.loadFactor = loadFactor;
+        this.count = 0;
+    }
+
+    /**
+     * Crea una tabla vacía con factor de carga 0.5f, dimensionada (con tamaño primo) para que la cantidad de
+     * claves indicada entre sin realizar ningún rehashing.
+     * @param expectedSize cantidad de claves que se espera almacenar en la tabla.
+     * @return la tabla creada.
+     */
+    public static <K> TSBObjectIntHashTable<K> withExpectedSize(int expectedSize)
+    {
+        long capacity = (long) Math.ceil(Math.max(expectedSize, 0) / 0.5) + 1;
+        return new TSBObjectIntHashTable<>((int) Math.min(capacity, MAX_SIZE), 0.5f);
+    }
+
+    //************************ Métodos de consulta y actualización
+
+    public int size() {
+        return this.count;
+    }
+
+    public boolean isEmpty() {
+        return this.count == 0;
+    }
+
+    public boolean containsKey(Object key) {
+        if(key == null) {
+            throw new NullPointerException("TSBObjectIntHashTable.containsKey(): parámetro null");
+        }
+
+        int index = this.searchForIndexOfKey(key);
+        return index >= 0 && this.isOccupiedBy(index, key);
+    }
+
+    /**
+     * Devuelve el valor asociado a la clave, o 0 si la clave no se encuentra en la tabla.
+     * @param key la clave a buscar.
+     * @return el valor asociado a la clave o 0.
+     */
+    public int get(Object key) {
+        return this.getOrDefault(key, 0);
+    }
+
+    /**
+     * Devuelve el valor asociado a la clave, o el valor por defecto indicado si la clave no se encuentra en la tabla.
+     * @param key la clave a buscar.
+     * @param defaultValue el valor a devolver si la clave no existe.
+     * @return el valor asociado a la clave o defaultValue.
+     */
+    public int getOrDefault(Object key, int defaultValue) {
+        if(key == null) {
+            throw new NullPointerException("TSBObjectIntHashTable.get(): parámetro null");
+        }
+
+        int index = this.searchForIndexOfKey(key);
+        if (index >= 0 && this.isOccupiedBy(index, key)) {
+            return this.values[index];
+        }
+
+        return defaultValue;
+    }
+
+    /**
+     * Asocia el valor a la clave, reemplazando el valor previo si la clave ya existía.
+     * @param key la clave.
+     * @param value el valor a asociar.
+     * @return el valor previo asociado a la clave, o 0 si no existía.
+     */
+    public int put(K key, int value) {
+        if (key == null) {
+            throw new NullPointerException("TSBObjectIntHashTable.put(): la clave no puede ser null");
+        }
+
+        int index = this.indexForInsertion(key);
+        int oldValue = this.values[index];
+        this.values[index] = value;
+
+        return oldValue;
+    }
+
+    /**
+     * Suma delta al valor asociado a la clave en una única exploración de la tabla.
+     * Si la clave no existe se inserta con valor delta. No genera objetos nuevos.
+     * @param key la clave.
+     * @param delta el valor a sumar.
+     * @return el nuevo valor asociado a la clave.
+     */
+    public int addTo(K key, int delta) {
+        if (key == null) {
+            throw new NullPointerException("TSBObjectIntHashTable.addTo(): la clave no puede ser null");
+        }
+
+        int index = this.indexForInsertion(key);
+        this.values[index] += delta;
+
+        return this.values[index];
+    }
+
+    /**
+     * Elimina la clave de la tabla. Si la proporción de tumbas supera TOMBSTONE_THRESHOLD la tabla se compacta,
+     * para que una tabla con altas y bajas constantes (pero de tamaño estable, que nunca crece) no acumule tumbas.
+     * @param key la clave a eliminar.
+     * @return el valor que estaba asociado a la clave, o 0 si no existía.
+     */
+    public int remove(Object key) {
+        if(key == null) {
+            throw new NullPointerException("TSBObjectIntHashTable.remove(): parámetro null");
+        }
+
+        int index = this.searchForIndexOfKey(key);
+        int value = 0;
+        if (index >= 0 && this.isOccupiedBy(index, key)) {
+            value = this.values[index];
+            this.keys[index] = DELETED;
+            this.values[index] = 0;
+            this.count--;
+            this.tombstones++;
+            if (this.hasTooManyTombstones()) {
+                this.rehash(this.keys.length);
+            }
+        }
+
+        return value;
+    }
+
+    public void clear() {
+        this.keys = new Object[this.initialCapacity];
+        this.values = new int[this.initialCapacity];
+        this.count = 0;
+        this.tombstones = 0;
+    }
+
+    /**
+     * @return tamaño actual del arreglo de soporte
+     */
+    public int getCapacity()
+    {
+        return this.keys.length;
+    }
+
+    /**
+     * @return cantidad de lugares marcados como tumba (claves eliminadas todavía no descartadas por un rehashing)
+     */
+    public int getTombstoneCount()
+    {
+        return this.tombstones;
+    }
+
+    /**
+     * Copia las claves de la tabla en un arreglo, con la misma semántica que Collection.toArray(T[]).
+     * @param a arreglo donde se copian las claves si tiene el tamaño suficiente.
+     * @return arreglo con todas las claves de la tabla.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T[] keysToArray(T[] a) {
+        T[] result = a.length >= this.count ? a : (T[]) java.lang.reflect.Array.newInstance(a.getClass().getComponentType(), this.count);
+
+        int j = 0;
+        for (Object key : this.keys) {
+            if (key != null && key != DELETED) {
+                result[j++] = (T) key;
+            }
+        }
+        if (result.length > j) {
+            result[j] = null;
+        }
+
+        return result;
+    }
+
+    /**
+     * Recorre los pares de la tabla directamente sobre los arreglos de soporte, sin crear entradas ni boxing de los valores.
+     * @param action acción a ejecutar con cada clave y su valor.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(ObjIntConsumer<? super K> action) {
+        if (action == null) {
+            throw new NullPointerException("TSBObjectIntHashTable.forEach(): parámetro null");
+        }
+
+        Object[] keys = this.keys;
+        int[] values = this.values;
+        for (int i = 0; i < keys.length; i++) {
+            Object key = keys[i];
+            if (key != null && key != DELETED) {
+                action.accept((K) key, values[i]);
+            }
+        }
+    }
+
+    //************************ Métodos redefinidos heredados de Object
+
+    @Override
+    public String toString() {
+        StringBuilder string = new StringBuilder();
+
+        string.append("{\n");
+        for (int i = 0; i < this.keys.length; i++) {
+            Object key = this.keys[i];
+            if (key != null && key != DELETED) {
+                string.append("(").append(key).append(", ").append(this.values[i]).append("),\n");
+            }
+        }
+        string.append("}");
+
+        return string.toString();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected Object clone() throws CloneNotSupportedException {
+        TSBObjectIntHashTable<K> clonedHashTable = (TSBObjectIntHashTable<K>) super.clone();
+        clonedHashTable.primeGenerator = new PrimeNumberGenerator();
+        clonedHashTable.keys = Arrays.copyOf(this.keys, this.keys.length);
+        clonedHashTable.values = Arrays.copyOf(this.values, this.values.length);
+
+        return clonedHashTable;
+    }
+
+    //************************ Serialización
+
+    /**
+     * Escribe la cantidad de claves y luego cada par clave-valor vigente (las tumbas no se escriben)
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        for (int i = 0; i < this.keys.length; i++) {
+            Object key = this.keys[i];
+            if (key != null && key != DELETED) {
+                out.writeObject(key);
+                out.writeInt(this.values[i]);
+            }
+        }
+    }
+
+    /**
+     * Reconstruye la tabla (sin tumbas) a partir de los pares escritos por writeObject()
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int pairs = this.count;
+
+        this.primeGenerator = new PrimeNumberGenerator();
+        int length = Math.max(this.initialCapacity, (int) Math.min((long) Math.ceil(pairs / (double) this.loadFactor) + 1, MAX_SIZE));
+        length = Math.min(this.primeGenerator.nextPrime(length), MAX_SIZE);
+        this.keys = new Object[length];
+        this.values = new int[length];
+        this.count = 0;
+
+        for (int i = 0; i < pairs; i++) {
+            K key = (K) in.readObject();
+            this.put(key, in.readInt());
+        }
+    }
+
+    //************************ Metodos especificos a la implementación de la clase
+
+    /**
+     * Función hash
+     * @param k clave entera
+     * @param t tamaño de tabla
+     * @return indice válido para la clave k para poder acceder a una tabla del tamaño especificado
+     */
+    private int hash(int k, int t)
+    {
+        return (k & 0x7fffffff) % t;
+    }
+
+    /**
+     * Comprueba si el lugar indicado contiene efectivamente la clave dada (y no un lugar libre o una tumba).
+     */
+    private boolean isOccupiedBy(int index, Object key) {
+        Object current = this.keys[index];
+        return current != null && current != DELETED && current.equals(key);
+    }
+
+    /**
+     * Busca en el arreglo mediante exploración cuadrática el indice donde se encuentra ubicada la clave dada
+     * o el primer lugar disponible para su insercion (lugar nunca ocupado o tumba).
+     * Los desplazamientos cuadráticos se calculan de forma incremental (i² = (i-1)² + 2i - 1), sin multiplicaciones.
+     * @param key clave cuyo indice debe buscarse
+     * @return indice donde se encuentra la clave o un lugar disponible para su inserción, -1 si no hay lugar.
+     */
+    private int searchForIndexOfKey(Object key) {
+        Object[] keys = this.keys;
+        int length = keys.length;
+        int index = this.hash(key.hashCode(), length);
+        int step = 1;
+
+        int tombstoneIndex = -1;
+        for (int i = 0; i < length; i++) {
+            Object current = keys[index];
+
+            if (current == null) {
+                if (TableMetrics.ENABLED) TableMetrics.recordProbe(i + 1);
+                return tombstoneIndex < 0 ? index : tombstoneIndex;
+            }
+
+            if (current == DELETED) {
+                if (tombstoneIndex < 0) tombstoneIndex = index;
+            }
+            else if (current.equals(key)) {
+                if (TableMetrics.ENABLED) TableMetrics.recordProbe(i + 1);
+                return index;
+            }
+
+            index = (index >= length - step) ? index - (length - step) : index + step;
+            step += 2;
+            if (step >= length) step -= length;
+        }
+
+        if (TableMetrics.ENABLED) TableMetrics.recordProbe(length);
+        return tombstoneIndex;
+    }
+
+    /**
+     * Devuelve el índice donde se encuentra la clave, insertándola con valor 0 si no existía.
+     * Si la inserción provoca que la tabla supere el factor de carga, se realiza el rehashing
+     * antes de devolver el índice (definitivo) de la clave.
+     */
+    private int indexForInsertion(K key) {
+        int index = this.searchForIndexOfKey(key);
+
+        if (index < 0) {
+            throw new IndexOutOfBoundsException("TSBObjectIntHashTable: no se encontró un lugar donde ubicar la clave");
+        }
+
+        if (this.isOccupiedBy(index, key)) {
+            return index;
+        }
+
+        if (this.keys[index] == DELETED) {
+            this.tombstones--;
+        }
+        this.keys[index] = key;
+        this.values[index] = 0;
+        this.count++;
+        if (this.isTableOverloaded()) {
+            this.rehash();
+            index = this.searchForIndexOfKey(key);
+        }
+
+        return index;
+    }
+
+    /**
+     * Incrementa el tamaño de la tabla a un número primo cercano al doble del actual y reubica todas las claves.
+     */
+    private void rehash() {
+        int newLength = (int) Math.min(this.keys.length * 2L + 1, MAX_SIZE);
+        newLength = this.primeGenerator.nextPrime(newLength);
+        this.rehash(Math.min(newLength, MAX_SIZE));
+    }
+
+    /**
+     * Reubica todas las claves vigentes en arreglos nuevos del tamaño indicado (el mismo tamaño para compactar la
+     * tabla). Las tumbas no se copian. Si las métricas están habilitadas se registra la duración (ver TableMetrics).
+     * @param newLength tamaño de los arreglos nuevos
+     */
+    private void rehash(int newLength) {
+        long start = TableMetrics.ENABLED ? System.nanoTime() : 0;
+        int oldLength = this.keys.length;
+
+        Object[] oldKeys = this.keys;
+        int[] oldValues = this.values;
+        this.keys = new Object[newLength];
+        this.values = new int[newLength];
+
+        this.tombstones = 0;
+
+        for (int i = 0; i < oldLength; i++) {
+            Object key = oldKeys[i];
+            if (key != null && key != DELETED) {
+                int index = this.indexForRelocation(key);
+                this.keys[index] = key;
+                this.values[index] = oldValues[i];
+            }
+        }
+
+        if (TableMetrics.ENABLED) TableMetrics.recordRehash(System.nanoTime() - start, newLength == oldLength);
+    }
+
+    /**
+     * Busca el lugar de una clave ya existente en la tabla nueva durante el rehashing: como la tabla nueva no tiene
+     * tumbas ni claves repetidas, basta con explorar hasta el primer lugar libre, sin invocar a equals() (y sin
+     * registrar la exploración como una búsqueda en las métricas).
+     */
+    private int indexForRelocation(Object key) {
+        Object[] keys = this.keys;
+        int length = keys.length;
+        int index = this.hash(key.hashCode(), length);
+        int step = 1;
+
+        while (keys[index] != null) {
+            index = (index >= length - step) ? index - (length - step) : index + step;
+            step += 2;
+            if (step >= length) step -= length;
+        }
+
+        return index;
+    }
+
+    /**
+     * Comprueba si la proporción entre claves almacenadas y tamaño de la tabla superó el factor de carga.
+     */
+    private boolean isTableOverloaded() {
+        double length = this.keys.length;
+        return this.count / length >= this.loadFactor;
+    }
+
+    /**
+     * Comprueba si la proporción de tumbas sobre el tamaño de la tabla superó el umbral de compactación.
+     */
+    private boolean hasTooManyTombstones() {
+        double length = this.keys.length;
+        return this.tombstones / length > TOMBSTONE_THRESHOLD;
+    }
+}
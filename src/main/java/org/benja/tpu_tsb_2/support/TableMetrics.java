@@ -0,0 +1,159 @@
+package org.benja.tpu_tsb_2.support;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Métricas de las búsquedas y los rehashing de todas las instancias de TSBHashTableDA y TSBObjectIntHashTable.
+ *
+ * Las métricas son opcionales y se habilitan iniciando la aplicación con -Dtpu_tsb.metrics=true. ENABLED es una
+ * constante, por lo que con las métricas deshabilitadas el compilador JIT elimina las comprobaciones
+ * "if (TableMetrics.ENABLED)" de los métodos instrumentados y la tabla no paga ningún costo.
+ *
+ * Los contadores son globales (se suman los de todas las tablas) y seguros para hilos: se utilizan LongAdder, que
+ * no generan contención entre los hilos de trabajo de la carga en paralelo.
+ * */
+public final class TableMetrics {
+    //Propiedad del sistema que habilita las métricas
+    public static final String ENABLED_PROPERTY = "tpu_tsb.metrics";
+
+    public static final boolean ENABLED = Boolean.getBoolean(ENABLED_PROPERTY);
+
+    //Límite superior de cada intervalo del histograma de longitudes de exploración (el último no tiene límite)
+    private static final int[] PROBE_BUCKET_LIMITS = {1, 2, 4, 8, 16, 32, Integer.MAX_VALUE};
+
+    private static final LongAdder lookups = new LongAdder();
+    private static final LongAdder probedSlots = new LongAdder();
+    private static final LongAccumulator maxProbeLength = new LongAccumulator(Math::max, 0);
+    private static final LongAdder[] probeHistogram = newAdders(PROBE_BUCKET_LIMITS.length);
+
+    private static final LongAdder rehashes = new LongAdder();
+    private static final LongAdder compactions = new LongAdder();
+    private static final LongAdder rehashNanos = new LongAdder();
+    private static final LongAccumulator maxRehashNanos = new LongAccumulator(Math::max, 0);
+
+    private TableMetrics() {
+    }
+
+    /**
+     * Registra una búsqueda por clave
+     *
+     * @param probeLength cantidad de lugares de la tabla examinados
+     * */
+    public static void recordProbe(int probeLength) {
+        lookups.increment();
+        probedSlots.add(probeLength);
+        maxProbeLength.accumulate(probeLength);
+
+        int bucket = 0;
+        while (probeLength > PROBE_BUCKET_LIMITS[bucket]) {
+            bucket++;
+        }
+        probeHistogram[bucket].increment();
+    }
+
+    /**
+     * Registra un rehashing
+     *
+     * @param nanos duración del rehashing
+     * @param compaction true si la tabla conservó su tamaño (compactación de tumbas)
+     * */
+    public static void recordRehash(long nanos, boolean compaction) {
+        (compaction ? compactions : rehashes).increment();
+        rehashNanos.add(nanos);
+        maxRehashNanos.accumulate(nanos);
+    }
+
+    public static long getLookupCount() {
+        return lookups.sum();
+    }
+
+    /**
+     * @return cantidad promedio de lugares examinados por búsqueda (0 si no hubo búsquedas)
+     * */
+    public static double getAverageProbeLength() {
+        long count = lookups.sum();
+        return count == 0 ? 0 : probedSlots.sum() / (double) count;
+    }
+
+    public static long getMaxProbeLength() {
+        return maxProbeLength.get();
+    }
+
+    /**
+     * @return cantidad de búsquedas de cada intervalo de longitud de exploración (1, 2, 3-4, 5-8, 9-16, 17-32, más de 32)
+     * */
+    public static long[] getProbeLengthHistogram() {
+        long[] histogram = new long[probeHistogram.length];
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] = probeHistogram[i].sum();
+        }
+
+        return histogram;
+    }
+
+    /**
+     * @return etiquetas de los intervalos de getProbeLengthHistogram()
+     * */
+    public static String[] getProbeLengthBuckets() {
+        String[] buckets = new String[PROBE_BUCKET_LIMITS.length];
+        int lower = 1;
+        for (int i = 0; i < buckets.length; i++) {
+            int upper = PROBE_BUCKET_LIMITS[i];
+            buckets[i] = upper == Integer.MAX_VALUE ? "> " + (lower - 1) : lower == upper ? String.valueOf(upper) : lower + "-" + upper;
+            lower = upper + 1;
+        }
+
+        return buckets;
+    }
+
+    /**
+     * @return cantidad de rehashing que aumentaron el tamaño de la tabla
+     * */
+    public static long getRehashCount() {
+        return rehashes.sum();
+    }
+
+    /**
+     * @return cantidad de rehashing que conservaron el tamaño de la tabla para descartar tumbas
+     * */
+    public static long getCompactionCount() {
+        return compactions.sum();
+    }
+
+    /**
+     * @return duración total de los rehashing y compactaciones, en nanosegundos
+     * */
+    public static long getRehashNanos() {
+        return rehashNanos.sum();
+    }
+
+    public static long getMaxRehashNanos() {
+        return maxRehashNanos.get();
+    }
+
+    /**
+     * Reinicia todos los contadores
+     * */
+    public static void reset() {
+        lookups.reset();
+        probedSlots.reset();
+        maxProbeLength.reset();
+        for (LongAdder bucket : probeHistogram) {
+            bucket.reset();
+        }
+        rehashes.reset();
+        compactions.reset();
+        rehashNanos.reset();
+        maxRehashNanos.reset();
+    }
+
+    private static LongAdder[] newAdders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+
+        return adders;
+    }
+}
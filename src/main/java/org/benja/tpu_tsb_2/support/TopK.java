@@ -0,0 +1,92 @@
+package org.benja.tpu_tsb_2.support;
+
+/**
+ * Heap de mínimos de tamaño acotado que conserva los k elementos de mayor puntaje (a igual puntaje, los de menor id).
+ * Permite obtener los k mejores de n elementos en O(n log k), sin ordenar todos los elementos.
+ * */
+class TopK {
+    private final int[] ids;
+    private final float[] scores;
+    private int size;
+
+    TopK(int k) {
+        this.ids = new int[k];
+        this.scores = new float[k];
+        this.size = 0;
+    }
+
+    void offer(int id, float score) {
+        if (this.size < this.ids.length) {
+            this.ids[this.size] = id;
+            this.scores[this.size] = score;
+            this.siftUp(this.size++);
+        }
+        else if (this.isBetter(id, score, 0)) {
+            this.ids[0] = id;
+            this.scores[0] = score;
+            this.siftDown(0);
+        }
+    }
+
+    /**
+     * @return los ids del heap ordenados del mayor al menor puntaje (vacía el heap)
+     * */
+    int[] toSortedArray() {
+        int[] result = new int[this.size];
+        for (int i = this.size - 1; i >= 0; i--) {
+            result[i] = this.ids[0];
+            this.size--;
+            this.ids[0] = this.ids[this.size];
+            this.scores[0] = this.scores[this.size];
+            this.siftDown(0);
+        }
+
+        return result;
+    }
+
+    /**
+     * @return true si el elemento (id, score) es mejor que el ubicado en la posición indicada del heap
+     * */
+    private boolean isBetter(int id, float score, int index) {
+        return score > this.scores[index] || (score == this.scores[index] && id < this.ids[index]);
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!this.isBetter(this.ids[parent], this.scores[parent], index)) {
+                break;
+            }
+            this.swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            int smallest = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < this.size && this.isBetter(this.ids[smallest], this.scores[smallest], left)) {
+                smallest = left;
+            }
+            if (right < this.size && this.isBetter(this.ids[smallest], this.scores[smallest], right)) {
+                smallest = right;
+            }
+            if (smallest == index) {
+                return;
+            }
+            this.swap(index, smallest);
+            index = smallest;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int id = this.ids[i];
+        float score = this.scores[i];
+        this.ids[i] = this.ids[j];
+        this.scores[i] = this.scores[j];
+        this.ids[j] = id;
+        this.scores[j] = score;
+    }
+}
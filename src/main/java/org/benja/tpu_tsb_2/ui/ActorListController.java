@@ -0,0 +1,148 @@
+package org.benja.tpu_tsb_2.ui;
+
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.event.ActionEvent;
+import javafx.fxml.FXML;
+import javafx.fxml.FXMLLoader;
+import javafx.fxml.Initializable;
+import javafx.scene.Scene;
+import javafx.scene.control.Alert;
+import javafx.scene.control.ButtonType;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.scene.layout.VBox;
+import javafx.stage.Stage;
+import org.benja.tpu_tsb_2.business.SeriesIndexController;
+import org.benja.tpu_tsb_2.support.ActorIndex;
+import org.benja.tpu_tsb_2.support.Serie;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.List;
+import java.util.ResourceBundle;
+
+/**
+ * Controller para la ventana que contiene la tabla de actores resultante de una consulta (actores más frecuentes de un
+ * género o coprotagonistas de un actor). Permite ver las series o los coprotagonistas del actor seleccionado.
+ * */
+public class ActorListController implements Initializable {
+
+    @FXML
+    private TableView<ActorIndex.ActorCount> actorsTable;
+
+    private TableColumn<ActorIndex.ActorCount, Integer> countColumn;
+
+    private SeriesIndexController seriesIndexController;
+
+    @Override
+    public void initialize(URL url, ResourceBundle resourceBundle) {
+        this.initTable();
+    }
+
+    /**
+     * Método auxiliar para construir y agregar las columnas de la tabla de actores al momento de la inicialización.
+     * Los valores se obtienen directamente de los getters (y no con PropertyValueFactory), ya que el paquete support
+     * no está abierto a la reflexión de JavaFX.
+     * */
+    private void initTable() {
+        TableColumn<ActorIndex.ActorCount, String> actorColumn = new TableColumn<>("Actor");
+        actorColumn.setCellValueFactory(cell -> new ReadOnlyStringWrapper(cell.getValue().getActor()));
+        actorColumn.setPrefWidth(300);
+        this.actorsTable.getColumns().add(actorColumn);
+
+        this.countColumn = new TableColumn<>("Series");
+        this.countColumn.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().getCount()));
+        this.countColumn.setPrefWidth(150);
+        this.actorsTable.getColumns().add(this.countColumn);
+    }
+
+    /**
+     * Método público para recibir el listado de actores obtenido de la consulta y llenar la tabla con el resultado
+     *
+     * @param actors los actores a mostrar
+     * @param countTitle título de la columna de cantidades
+     * @param seriesIndexController controlador utilizado para consultar las series y coprotagonistas de cada actor
+     * */
+    public void fillTable(List<ActorIndex.ActorCount> actors, String countTitle, SeriesIndexController seriesIndexController) {
+        this.seriesIndexController = seriesIndexController;
+        this.countColumn.setText(countTitle);
+        this.actorsTable.getItems().addAll(actors);
+    }
+
+    @FXML
+    public void btnVerSeriesClick(ActionEvent actionEvent) {
+        ActorIndex.ActorCount selected = this.getSelectedActor();
+        if (selected == null) {
+            return;
+        }
+
+        List<Serie> series = this.seriesIndexController.getSeriesForActor(selected.getActor());
+        try {
+            FXMLLoader fxmlLoader = new FXMLLoader(MainApplication.class.getResource("series-list-view.fxml"));
+            javafx.scene.Parent newSceneParent = fxmlLoader.load();
+            VBox newWindowRoot = fxmlLoader.getRoot();
+            Scene seriesListScene = new Scene(newSceneParent, newWindowRoot.getPrefWidth(), newWindowRoot.getPrefHeight());
+            SeriesListController seriesListController = fxmlLoader.getController();
+
+            Stage newStage = new Stage();
+            newStage.setScene(seriesListScene);
+            newStage.setTitle("Series con " + selected.getActor());
+            newStage.show();
+            seriesListController.fillTable(series);
+        } catch (IOException e) {
+            throw new RuntimeException("Error cargando vista de la lista de series por actor");
+        }
+    }
+
+    @FXML
+    public void btnVerCoprotagonistasClick(ActionEvent actionEvent) {
+        ActorIndex.ActorCount selected = this.getSelectedActor();
+        if (selected == null) {
+            return;
+        }
+
+        List<ActorIndex.ActorCount> coStars = this.seriesIndexController.getCoStarsForActor(selected.getActor());
+        showActorList(coStars, "Series compartidas", "Coprotagonistas de " + selected.getActor(), this.seriesIndexController);
+    }
+
+    /**
+     * Crea una nueva ventana para mostrar un listado de actores en una tabla
+     *
+     * @param actors los actores a mostrar
+     * @param countTitle título de la columna de cantidades
+     * @param title título de la ventana
+     * @param seriesIndexController controlador utilizado para las consultas realizadas desde la nueva ventana
+     * */
+    public static void showActorList(List<ActorIndex.ActorCount> actors, String countTitle, String title, SeriesIndexController seriesIndexController) {
+        try {
+            FXMLLoader fxmlLoader = new FXMLLoader(MainApplication.class.getResource("actor-list-view.fxml"));
+            javafx.scene.Parent newSceneParent = fxmlLoader.load();
+            VBox newWindowRoot = fxmlLoader.getRoot();
+            Scene actorListScene = new Scene(newSceneParent, newWindowRoot.getPrefWidth(), newWindowRoot.getPrefHeight());
+            ActorListController actorListController = fxmlLoader.getController();
+
+            Stage newStage = new Stage();
+            newStage.setScene(actorListScene);
+            newStage.setTitle(title);
+            newStage.show();
+            actorListController.fillTable(actors, countTitle, seriesIndexController);
+        } catch (IOException e) {
+            throw new RuntimeException("Error cargando vista de la lista de actores");
+        }
+    }
+
+    /**
+     * @return el actor seleccionado en la tabla, o null (mostrando un mensaje de error) si no hay ninguno seleccionado
+     * */
+    private ActorIndex.ActorCount getSelectedActor() {
+        ActorIndex.ActorCount selected = this.actorsTable.getSelectionModel().getSelectedItem();
+        if (selected == null) {
+            Alert alert = new Alert(Alert.AlertType.ERROR, "Debe seleccionar un actor de la tabla", ButtonType.OK);
+            alert.setTitle("Error de validación");
+            alert.show();
+        }
+
+        return selected;
+    }
+}
@@ -5,12 +5,15 @@ import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
+import org.benja.tpu_tsb_2.business.IndexMetrics;
 
 import java.io.IOException;
 
 public class MainApplication extends Application {
     @Override
     public void start(Stage stage) throws IOException {
+        IndexMetrics.install();
+
         FXMLLoader fxmlLoader = new FXMLLoader(MainApplication.class.getResource("main-view.fxml"));
         javafx.scene.Parent sceneParent = fxmlLoader.load();
         VBox sceneRoot = fxmlLoader.getRoot();
@@ -1,32 +1,62 @@
 package org.benja.tpu_tsb_2.ui;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
+import javafx.concurrent.Task;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.fxml.Initializable;
+import javafx.geometry.Side;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 import org.benja.tpu_tsb_2.business.SeriesIndexController;
+import org.benja.tpu_tsb_2.business.SeriesIndexReloader;
+import org.benja.tpu_tsb_2.support.ActorIndex;
 import org.benja.tpu_tsb_2.support.EDimensionDatos;
+import org.benja.tpu_tsb_2.support.EIndexStatus;
+import org.benja.tpu_tsb_2.support.ESortKey;
 import org.benja.tpu_tsb_2.support.Serie;
 
 import java.io.IOException;
 import java.net.URL;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.function.Function;
 
 /**
  * Controller para la ventana principal del programa.
  * Contiene las funcionalidades de tomar las opciones de los combos seleccionadas por el usuario y realizar las consultas correspondientes a la capa de negocio.
+ * El índice se carga en un hilo de fondo (Task de JavaFX) mostrando el avance de la carga, para que la ventana responda
+ * desde el inicio; las consultas se habilitan al publicarse el índice.
+ * Cada consulta obtiene el índice publicado al comenzar y lo utiliza hasta terminar, de modo que una recarga del índice
+ * en segundo plano (ver SeriesIndexReloader) nunca afecta a una consulta en curso.
  * */
 public class MainController implements Initializable {
+    //Opciones del combo de operador de las consultas por combinación de géneros
+    private static final String OPERADOR_TODOS = "Todos (AND)";
+    private static final String OPERADOR_ALGUNO = "Alguno (OR)";
+    //Cantidad máxima de resultados de la búsqueda por palabras clave y de sugerencias de autocompletado
+    private static final int SEARCH_RESULTS_LIMIT = 50;
+    private static final int SEARCH_SUGGESTIONS_LIMIT = 8;
+    //Cantidad de actores mostrados en la consulta de actores más frecuentes de un género
+    private static final int TOP_ACTORS_LIMIT = 50;
 
     public Label labelResultadoCantidad;
-    private SeriesIndexController seriesIndexController;
+    public Label labelEstadoIndice;
+    public ProgressBar progressCarga;
+    //Mantiene el índice publicado y lo recarga en segundo plano cuando cambia el archivo de datos
+    private SeriesIndexReloader indexReloader;
     public VBox window;
     public Button btnConsulta;
+    public Button btnBuscar;
     @FXML
     private MenuItem btnQuit;
 
@@ -36,6 +66,21 @@ public class MainController implements Initializable {
     @FXML
     private ComboBox<EDimensionDatos> comboTipoDato;
 
+    @FXML
+    private MenuButton menuGenerosIncluidos;
+
+    @FXML
+    private MenuButton menuGenerosExcluidos;
+
+    @FXML
+    private ComboBox<String> comboOperador;
+
+    @FXML
+    private TextField txtBusqueda;
+
+    //Menú con las sugerencias de autocompletado del cuadro de búsqueda
+    private ContextMenu searchSuggestions;
+
     private String selectedGenre;
 
     private Stage stage;
@@ -46,51 +91,150 @@ public class MainController implements Initializable {
     }
 
     /**
-     * Inicializa los combo box con los géneros y los tipos de datos disponibles e inicializa el controlador que encapsula la lógica de la capa de negocio
+     * Inicializa los combo box con los tipos de datos disponibles y comienza la carga del índice en segundo plano.
+     * Los géneros se agregan a los combos y menús a medida que la carga los descubre
      * */
     @Override
     public void initialize(URL url, ResourceBundle resourceBundle) {
         this.labelResultadoCantidad.setText("");
 
-        this.seriesIndexController = new SeriesIndexController();
-        this.seriesIndexController.proccessDataFile();
+        this.comboTipoDato.setItems(FXCollections.observableArrayList(EDimensionDatos.values()));
+        this.comboOperador.setItems(FXCollections.observableArrayList(OPERADOR_TODOS, OPERADOR_ALGUNO));
+        this.comboOperador.setValue(OPERADOR_TODOS);
 
-        String[] genders = this.seriesIndexController.getAvailableGenders();
-        this.comboGenero.setItems(FXCollections.observableArrayList(genders));
+        initSearchSuggestions();
+        setQueriesEnabled(false);
 
-        this.comboTipoDato.setItems(FXCollections.observableArrayList(EDimensionDatos.values()));
+        this.indexReloader = new SeriesIndexReloader();
+        this.indexReloader.setStatusListener(status -> Platform.runLater(() -> onIndexStatusChanged(status)));
+        startLoadingIndex();
+    }
+
+    /**
+     * Construye el índice en un hilo de fondo. La barra de progreso y el indicador de estado muestran los bytes leidos
+     * del archivo y la velocidad de la carga; al terminar se habilitan las consultas y comienza la vigilancia del
+     * archivo de datos
+     * */
+    private void startLoadingIndex() {
+        long start = System.nanoTime();
+        Task<Void> loadTask = new Task<>() {
+            //Cantidad de géneros del último reporte que actualizó los combos (durante la carga los géneros sólo se agregan)
+            private int reportedGenres = 0;
+
+            @Override
+            protected Void call() {
+                indexReloader.reload((bytesRead, totalBytes, rows, genres) -> {
+                    double seconds = Math.max((System.nanoTime() - start) / 1e9, 0.001);
+                    updateProgress(bytesRead, totalBytes);
+                    updateMessage(String.format("Cargando índice: %d series (%.0f series/s), %.1f de %.1f MB",
+                            rows, rows / seconds, bytesRead / 1048576.0, totalBytes / 1048576.0));
+                    if (genres.length != this.reportedGenres) {
+                        this.reportedGenres = genres.length;
+                        Platform.runLater(() -> fillGenres(genres));
+                    }
+                });
+                return null;
+            }
+        };
+
+        this.progressCarga.progressProperty().bind(loadTask.progressProperty());
+        this.labelEstadoIndice.textProperty().bind(loadTask.messageProperty());
+        loadTask.setOnSucceeded(event -> {
+            finishLoading();
+            fillGenres(this.indexReloader.current().getAvailableGenders());
+            setQueriesEnabled(true);
+            this.indexReloader.startWatching();
+            showIndexStatus(this.indexReloader.getStatus());
+        });
+        loadTask.setOnFailed(event -> {
+            finishLoading();
+            this.labelEstadoIndice.setText("Error cargando el índice: " + loadTask.getException().getMessage());
+        });
+
+        Thread loader = new Thread(loadTask, "series-index-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    private void finishLoading() {
+        this.progressCarga.progressProperty().unbind();
+        this.labelEstadoIndice.textProperty().unbind();
+        this.progressCarga.setVisible(false);
+    }
+
+    /**
+     * Habilita o deshabilita los controles que realizan consultas al índice
+     * */
+    private void setQueriesEnabled(boolean enabled) {
+        this.btnConsulta.setDisable(!enabled);
+        this.btnBuscar.setDisable(!enabled);
+        this.txtBusqueda.setDisable(!enabled);
     }
     @FXML
     public void btnConsultaClick(ActionEvent actionEvent) {
         this.labelResultadoCantidad.setText("");
+        SeriesIndexController index = this.indexReloader.current();
         this.selectedGenre = this.comboGenero.getValue();
         EDimensionDatos selectedDimension = this.comboTipoDato.getValue();
 
-        if (this.selectedGenre == null || selectedDimension == null) {
-            Alert alert = new Alert(Alert.AlertType.ERROR, "Debe seleccionar un género y/o un tipo de dato a visualizar", ButtonType.OK);
-            alert.setTitle("Error de validación");
-            alert.show();
+        if (selectedDimension == EDimensionDatos.COMBINACION_GENEROS) {
+            if (getSelectedGenres(this.menuGenerosIncluidos).length == 0 && getSelectedGenres(this.menuGenerosExcluidos).length == 0) {
+                showValidationError("Debe seleccionar al menos un género a incluir o excluir");
+                return;
+            }
+        }
+        else if (this.selectedGenre == null || selectedDimension == null) {
+            showValidationError("Debe seleccionar un género y/o un tipo de dato a visualizar");
             return;
         }
 
         switch (selectedDimension) {
             case CANTIDAD_SERIES:
-                showSeriesCountForSelectedGenre();
+                showSeriesCountForSelectedGenre(index);
                 break;
             case LISTADO_SERIES:
-                showSeriesDetailForSelectedGenre();
+                showSeriesDetailForSelectedGenre(index);
                 break;
             case CANTIDAD_SERIES_PUNTUACION:
-                showSeriesCountPerRatingForSelectedGenre();
+                showSeriesCountPerRatingForSelectedGenre(index);
+                break;
+            case COMBINACION_GENEROS:
+                showSeriesForSelectedGenres(index);
                 break;
+            case ACTORES_FRECUENTES:
+                showTopActorsForSelectedGenre(index);
+                break;
+        }
+    }
+
+    /**
+     * Busca las series más relevantes para las palabras ingresadas en el cuadro de búsqueda y las muestra en una tabla
+     * en una nueva ventana
+     * */
+    @FXML
+    public void btnBuscarClick(ActionEvent actionEvent) {
+        this.labelResultadoCantidad.setText("");
+        this.searchSuggestions.hide();
+        String query = this.txtBusqueda.getText() == null ? "" : this.txtBusqueda.getText().trim();
+
+        if (query.isEmpty()) {
+            showValidationError("Debe ingresar al menos una palabra a buscar");
+            return;
+        }
+
+        List<Serie> series = this.indexReloader.current().searchSeries(query, SEARCH_RESULTS_LIMIT);
+        this.labelResultadoCantidad.setText("Resultados de la búsqueda \"" + query + "\": " + series.size());
+
+        if (!series.isEmpty()) {
+            showSeriesList(series, "Resultados de la búsqueda \"" + query + "\"");
         }
     }
 
     /**
      * Consulta a la capa de negocio la cantidad de series para el género seleccionado y lo muestra en un label en la ventana principal
      * */
-    private void showSeriesCountForSelectedGenre() {
-        Integer seriesCount = this.seriesIndexController.getSeriesCountForGenre(this.selectedGenre);
+    private void showSeriesCountForSelectedGenre(SeriesIndexController index) {
+        Integer seriesCount = index.getSeriesCountForGenre(this.selectedGenre);
 
         this.labelResultadoCantidad.setText("Cantidad de series del género " + this.selectedGenre + ": " + seriesCount);
     }
@@ -99,9 +243,61 @@ public class MainController implements Initializable {
      * Consulta a la capa de negocio el listado detallado de series que pertenecen al género seleccionado y crea una nueva ventana
      * para mostrar los resultados de la consulta en una tabla
      * */
-    private void showSeriesDetailForSelectedGenre() {
-        List<Serie> series = this.seriesIndexController.getSeriesDetailsForGenre(this.selectedGenre);
+    private void showSeriesDetailForSelectedGenre(SeriesIndexController index) {
+        String genre = this.selectedGenre;
+        List<Serie> series = index.getSeriesDetailsForGenre(genre);
+
+        showSeriesList(series, key -> index.getTopSeriesForGenre(genre, key, series.size(), 0), "Lista de series del género " + genre.toLowerCase());
+    }
+
+    /**
+     * Consulta a la capa de negocio la cantidad de series que cumplen la combinación de géneros seleccionada y la muestra
+     * en un label en la ventana principal; si hay resultados, los muestra además en una tabla en una nueva ventana
+     * */
+    private void showSeriesForSelectedGenres(SeriesIndexController index) {
+        String[] includedGenres = getSelectedGenres(this.menuGenerosIncluidos);
+        String[] excludedGenres = getSelectedGenres(this.menuGenerosExcluidos);
+        boolean matchAll = !OPERADOR_ALGUNO.equals(this.comboOperador.getValue());
 
+        String description = describeGenresQuery(includedGenres, matchAll, excludedGenres);
+        int seriesCount = index.getSeriesCountForGenres(includedGenres, matchAll, excludedGenres);
+        this.labelResultadoCantidad.setText("Cantidad de series " + description + ": " + seriesCount);
+
+        if (seriesCount > 0) {
+            List<Serie> series = index.getSeriesDetailsForGenres(includedGenres, matchAll, excludedGenres);
+            showSeriesList(series, "Lista de series " + description);
+        }
+    }
+
+    /**
+     * Consulta a la capa de negocio los actores que participan en más series del género seleccionado y crea una nueva
+     * ventana para mostrarlos en una tabla, desde la que se pueden consultar las series y coprotagonistas de cada actor
+     * */
+    private void showTopActorsForSelectedGenre(SeriesIndexController index) {
+        List<ActorIndex.ActorCount> actors = index.getTopActorsForGenre(this.selectedGenre, TOP_ACTORS_LIMIT);
+
+        ActorListController.showActorList(actors, "Series del género", "Actores más frecuentes del género " + this.selectedGenre.toLowerCase(), index);
+    }
+
+    /**
+     * Crea una nueva ventana para mostrar un listado de series en una tabla
+     *
+     * @param series las series a mostrar
+     * @param title título de la ventana
+     * */
+    private void showSeriesList(List<Serie> series, String title) {
+        showSeriesList(series, null, title);
+    }
+
+    /**
+     * Crea una nueva ventana para mostrar un listado de series en una tabla que, al ordenarse por título, puntaje o
+     * votos, utiliza las series ya ordenadas por el índice
+     *
+     * @param series las series a mostrar
+     * @param sortedViews función que devuelve las mismas series ordenadas según cada criterio (null si no hay)
+     * @param title título de la ventana
+     * */
+    private void showSeriesList(List<Serie> series, Function<ESortKey, List<Serie>> sortedViews, String title) {
         try {
             FXMLLoader fxmlLoader = new FXMLLoader(MainApplication.class.getResource("series-list-view.fxml"));
             javafx.scene.Parent newSceneParent = fxmlLoader.load();
@@ -111,9 +307,9 @@ public class MainController implements Initializable {
 
             Stage newStage = new Stage();
             newStage.setScene(seriesListScene);
-            newStage.setTitle("Lista de series del género " + this.selectedGenre.toLowerCase());
+            newStage.setTitle(title);
             newStage.show();
-            seriesListController.fillTable(series);
+            seriesListController.fillTable(series, sortedViews);
         } catch (IOException e) {
             throw new RuntimeException("Error cargando vista de la lista de series por género");
         }
@@ -123,8 +319,8 @@ public class MainController implements Initializable {
      * Consulta a la capa de negocio la cantidad de series por puntaje que pertenecen al género seleccionado y crea una nueva ventana
      * para mostrar los resultados de la consulta en una tabla
      * */
-    private void showSeriesCountPerRatingForSelectedGenre() {
-        Integer[] countPerRating = this.seriesIndexController.getSeriesCountPerRatingForGenre(this.selectedGenre);
+    private void showSeriesCountPerRatingForSelectedGenre(SeriesIndexController index) {
+        Integer[] countPerRating = index.getSeriesCountPerRatingForGenre(this.selectedGenre);
 
         try {
             FXMLLoader fxmlLoader = new FXMLLoader(MainApplication.class.getResource("series-rating-list-view.fxml"));
@@ -144,6 +340,163 @@ public class MainController implements Initializable {
         }
     }
 
+    /**
+     * Configura el autocompletado del cuadro de búsqueda: cada vez que cambia el texto se consultan las palabras que
+     * comienzan con la última palabra ingresada, y al elegir una sugerencia reemplaza a esa última palabra
+     * */
+    private void initSearchSuggestions() {
+        this.searchSuggestions = new ContextMenu();
+
+        this.txtBusqueda.textProperty().addListener((observable, oldText, text) -> {
+            String prefix = lastWord(text);
+            String[] terms = prefix.length() < 2 ? new String[0] : this.indexReloader.current().suggestSearchTerms(prefix, SEARCH_SUGGESTIONS_LIMIT);
+            if (terms.length == 0 || !this.txtBusqueda.isFocused()) {
+                this.searchSuggestions.hide();
+                return;
+            }
+
+            this.searchSuggestions.getItems().clear();
+            for (String term : terms) {
+                MenuItem item = new MenuItem(term);
+                item.setOnAction(event -> {
+                    String current = this.txtBusqueda.getText();
+                    this.txtBusqueda.setText(current.substring(0, current.length() - lastWord(current).length()) + term + " ");
+                    this.txtBusqueda.positionCaret(this.txtBusqueda.getText().length());
+                });
+                this.searchSuggestions.getItems().add(item);
+            }
+            if (!this.searchSuggestions.isShowing()) {
+                this.searchSuggestions.show(this.txtBusqueda, Side.BOTTOM, 0, 0);
+            }
+        });
+    }
+
+    /**
+     * @return la última palabra del texto (vacía si el texto termina en un espacio)
+     * */
+    private String lastWord(String text) {
+        if (text == null) {
+            return "";
+        }
+
+        int start = text.length();
+        while (start > 0 && Character.isLetterOrDigit(text.charAt(start - 1))) {
+            start--;
+        }
+        return text.substring(start);
+    }
+
+    /**
+     * Actualiza el indicador de estado del índice (se ejecuta en el hilo de la interfaz gráfica). Al publicarse un
+     * índice nuevo se actualizan los géneros disponibles, ya que el archivo de datos pudo agregar o quitar géneros
+     * */
+    private void onIndexStatusChanged(EIndexStatus status) {
+        if (this.labelEstadoIndice.textProperty().isBound()) {
+            //Durante la carga inicial el indicador muestra el avance de la carga
+            return;
+        }
+        if (status == EIndexStatus.READY) {
+            fillGenres(this.indexReloader.current().getAvailableGenders());
+        }
+        showIndexStatus(status);
+    }
+
+    /**
+     * Muestra en el indicador de estado el estado del índice y las métricas de las recargas
+     * */
+    private void showIndexStatus(EIndexStatus status) {
+        StringBuilder text = new StringBuilder(status.toString());
+        if (this.indexReloader.getLastReloadTime() > 0) {
+            text.append(" - publicado ").append(new SimpleDateFormat("HH:mm:ss").format(new Date(this.indexReloader.getLastReloadTime())))
+                    .append(" (").append(this.indexReloader.getLastReloadMillis()).append(" ms)")
+                    .append(", recargas: ").append(this.indexReloader.getReloadCount());
+        }
+        if (this.indexReloader.getFailedReloadCount() > 0) {
+            text.append(", fallidas: ").append(this.indexReloader.getFailedReloadCount());
+        }
+
+        this.labelEstadoIndice.setText(text.toString());
+        this.labelEstadoIndice.setTooltip(status == EIndexStatus.FAILED ? new Tooltip(this.indexReloader.getLastError()) : null);
+    }
+
+    /**
+     * Carga los géneros disponibles en el combo de género y en los menús de selección de varios géneros,
+     * conservando las selecciones de los géneros que siguen disponibles
+     * */
+    private void fillGenres(String[] genres) {
+        String selected = this.comboGenero.getValue();
+        this.comboGenero.setItems(FXCollections.observableArrayList(genres));
+        if (selected != null && Arrays.asList(genres).contains(selected)) {
+            this.comboGenero.setValue(selected);
+        }
+
+        fillGenresMenu(this.menuGenerosIncluidos, genres);
+        fillGenresMenu(this.menuGenerosExcluidos, genres);
+    }
+
+    /**
+     * Carga en el menú un item con una casilla de verificación por cada género, manteniendo marcados los géneros que
+     * ya lo estaban. Los items no cierran el menú al ser seleccionados, para poder marcar varios géneros seguidos
+     * */
+    private void fillGenresMenu(MenuButton menu, String[] genres) {
+        Set<String> selected = new HashSet<>(Arrays.asList(getSelectedGenres(menu)));
+        menu.getItems().clear();
+        for (String genre : genres) {
+            CheckBox checkBox = new CheckBox(genre);
+            checkBox.setSelected(selected.contains(genre));
+            checkBox.selectedProperty().addListener((observable, oldValue, newValue) -> updateGenresMenuText(menu));
+
+            CustomMenuItem item = new CustomMenuItem(checkBox);
+            item.setHideOnClick(false);
+            menu.getItems().add(item);
+        }
+        updateGenresMenuText(menu);
+    }
+
+    /**
+     * Muestra en el botón del menú los géneros seleccionados
+     * */
+    private void updateGenresMenuText(MenuButton menu) {
+        String[] genres = getSelectedGenres(menu);
+        menu.setText(genres.length == 0 ? "Ninguno" : String.join(", ", genres));
+    }
+
+    private String[] getSelectedGenres(MenuButton menu) {
+        List<String> genres = new ArrayList<>();
+        for (MenuItem item : menu.getItems()) {
+            CheckBox checkBox = (CheckBox) ((CustomMenuItem) item).getContent();
+            if (checkBox.isSelected()) {
+                genres.add(checkBox.getText());
+            }
+        }
+
+        return genres.toArray(new String[0]);
+    }
+
+    /**
+     * Arma la descripción en texto de una consulta por combinación de géneros, por ejemplo
+     * "de los géneros Crime y Drama, sin Comedy"
+     * */
+    private String describeGenresQuery(String[] includedGenres, boolean matchAll, String[] excludedGenres) {
+        StringBuilder description = new StringBuilder();
+        if (includedGenres.length > 0) {
+            description.append(includedGenres.length == 1 ? "del género " : "de los géneros ")
+                    .append(String.join(matchAll ? " y " : " o ", includedGenres));
+        }
+        if (excludedGenres.length > 0) {
+            description.append(includedGenres.length > 0 ? ", sin " : "sin ")
+                    .append(String.join(" ni ", excludedGenres));
+        }
+
+        return description.toString();
+    }
+
+    private void showValidationError(String message) {
+        Alert alert = new Alert(Alert.AlertType.ERROR, message, ButtonType.OK);
+        alert.setTitle("Error de validación");
+        alert.show();
+    }
+
     /**
      * Devuelve la referencia al stage de la ventana.
      * Si dicha referencia es nula, se la obtiene en el momento y la setea en la propiedad stage que luego se retorna.
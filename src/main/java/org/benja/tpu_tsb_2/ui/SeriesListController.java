@@ -1,25 +1,42 @@
 package org.benja.tpu_tsb_2.ui;
 
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.collections.ObservableListBase;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
-import javafx.scene.control.cell.PropertyValueFactory;
+import org.benja.tpu_tsb_2.support.ESortKey;
 import org.benja.tpu_tsb_2.support.Serie;
 
 import java.net.URL;
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.RandomAccess;
 import java.util.ResourceBundle;
+import java.util.function.Function;
 
 /**
  * Controller para la ventana que contiene la tabla con la lista detallada de series pertenecientes a un género seleccionado.
+ *
+ * La tabla no copia la lista de series: sus items son una vista (LazySeriesList) sobre la lista obtenida del índice,
+ * y los valores de cada celda se obtienen de la serie sólo cuando la celda se muestra, por lo que abrir la lista de un
+ * género con muchas series sólo cuesta las filas visibles. Las columnas de puntaje y votos son numéricas.
+ * Al ordenar por título, puntaje o votos se utilizan, si están disponibles, las series ya ordenadas por el índice;
+ * el resto de los ordenamientos se calcula sobre un arreglo de posiciones, sin copiar las series.
  * */
 public class SeriesListController implements Initializable {
 
     @FXML
-    private TableView<SerieTableRow> seriesTable;
+    private TableView<Serie> seriesTable;
 
+    private LazySeriesList items;
+
+    //Series ya ordenadas por el índice según cada criterio (null si la lista no tiene órdenes precalculados)
+    private Function<ESortKey, List<Serie>> sortedViews;
 
     @Override
     public void initialize(URL url, ResourceBundle resourceBundle) {
@@ -28,114 +45,208 @@ public class SeriesListController implements Initializable {
 
     /**
      * Método auxiliar para construir y agregar las columnas de la tabla de series al momento de la inicialización.
+     * Los valores se obtienen directamente de los getters (y no con PropertyValueFactory), ya que el paquete support
+     * no está abierto a la reflexión de JavaFX. Las columnas que el índice mantiene ordenadas guardan su criterio
+     * de ordenamiento como userData.
      * */
     private void initTable() {
-        String[] titles = new String[] {"Título", "Emisión", "Calificación", "Dur. episodios", "Puntaje", "Sinopsis", "Votos", "Protagonista 1", "Protagonista 2", "Protagonista 3", "Protagonista 4"};
-        String[] properties = new String[] {"title", "seriesRuntime", "certificate", "episodesRuntime", "imdbRating", "overview", "votes", "star1", "star2", "star3", "star4"};
-        double[] widths = new double[] {200, 100, 75, 100, 75, 350, 75, 100, 100, 100, 100};
-
-        for (int i = 0; i < titles.length; i++) {
-            TableColumn<SerieTableRow, String> column = new TableColumn<>(titles[i]);
-            column.setCellValueFactory(new PropertyValueFactory<SerieTableRow, String>(properties[i]));;
-            column.setPrefWidth(widths[i]);
-            this.seriesTable.getColumns().add(column);
-        }
+        this.addTextColumn("Título", 200, Serie::getTitle).setUserData(ESortKey.TITLE);
+        this.addTextColumn("Emisión", 100, Serie::getSeriesRuntime);
+        this.addTextColumn("Calificación", 75, Serie::getCertificate);
+        this.addTextColumn("Dur. episodios", 100, Serie::getEpisodesRuntime);
+
+        TableColumn<Serie, Float> ratingColumn = new TableColumn<>("Puntaje");
+        ratingColumn.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().getImdbRating()));
+        ratingColumn.setPrefWidth(75);
+        ratingColumn.setUserData(ESortKey.RATING);
+        this.seriesTable.getColumns().add(ratingColumn);
+
+        this.addTextColumn("Sinopsis", 350, Serie::getOverview);
+
+        TableColumn<Serie, Integer> votesColumn = new TableColumn<>("Votos");
+        votesColumn.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().getVotes()));
+        votesColumn.setPrefWidth(75);
+        votesColumn.setUserData(ESortKey.VOTES);
+        this.seriesTable.getColumns().add(votesColumn);
+
+        this.addTextColumn("Protagonista 1", 100, Serie::getStar1);
+        this.addTextColumn("Protagonista 2", 100, Serie::getStar2);
+        this.addTextColumn("Protagonista 3", 100, Serie::getStar3);
+        this.addTextColumn("Protagonista 4", 100, Serie::getStar4);
+
+        this.seriesTable.setSortPolicy(table -> {
+            this.sortItems();
+            return true;
+        });
+    }
+
+    private TableColumn<Serie, String> addTextColumn(String title, double width, Function<Serie, String> getter) {
+        TableColumn<Serie, String> column = new TableColumn<>(title);
+        column.setCellValueFactory(cell -> new ReadOnlyStringWrapper(getter.apply(cell.getValue())));
+        column.setPrefWidth(width);
+        this.seriesTable.getColumns().add(column);
+        return column;
     }
 
     /**
      * Método público para recibir el listado de series obtenido de la consulta realizada por la ventana principal y llenar la tabla con el resultado
      * */
     public void fillTable(List<Serie> series) {
-        this.seriesTable.getItems().addAll(parseSeriesList(series));
+        this.fillTable(series, null);
     }
 
     /**
-     * Método auxiliar para mapear la lista de series al modelo de datos de la tabla
+     * Llena la tabla con el listado de series, indicando además cómo obtener las mismas series ya ordenadas por el
+     * índice, que se utilizan al ordenar la tabla por título, puntaje o votos
      *
-     * @return lista con los datos necesarios para llenar la tabla, mapeados al modelo de datos SerieTableRow
+     * @param series las series a mostrar
+     * @param sortedViews función que devuelve las mismas series ordenadas según cada criterio (puntaje y votos de
+     *                    mayor a menor, título alfabéticamente), o null si no hay órdenes precalculados
      * */
-    private List<SerieTableRow> parseSeriesList(List<Serie> series) {
-        List<SerieTableRow> rows = new ArrayList<>();
-        for (Serie serie : series) {
-            SerieTableRow row = new SerieTableRow(serie);
-            rows.add(row);
-        }
-        return rows;
+    public void fillTable(List<Serie> series, Function<ESortKey, List<Serie>> sortedViews) {
+        this.sortedViews = sortedViews;
+        this.items = new LazySeriesList(series);
+        this.seriesTable.setItems(this.items);
     }
 
     /**
-     * Clase interna que representa el modelo de datos utilizado por la tabla para representar su contenido.
-     * Cada instancia de la clase representa una fila de la tabla.
+     * Política de ordenamiento de la tabla: reemplaza el orden de la vista según las columnas de ordenamiento.
+     * Si se ordena por una única columna que el índice mantiene ordenada se utiliza ese orden (o su inverso);
+     * en caso contrario se ordena un arreglo de posiciones con el comparador de la tabla
      * */
-    public static class SerieTableRow {
-        private String title;
-        private String seriesRuntime;
-        private String certificate;
-        private String episodesRuntime;
-        private String imdbRating;
-        private String overview;
-        private String star1;
-        private String star2;
-        private String star3;
-        private String star4;
-        private String votes;
-
-        public SerieTableRow(Serie serie) {
-            this.title = serie.getTitle();
-            this.seriesRuntime = serie.getSeriesRuntime();
-            this.certificate = serie.getCertificate();
-            this.episodesRuntime = serie.getEpisodesRuntime();
-            this.imdbRating = String.valueOf(serie.getImdbRating());
-            this.overview = serie.getOverview();
-            this.star1 = serie.getStar1();
-            this.star2 = serie.getStar2();
-            this.star3 = serie.getStar3();
-            this.star4 = serie.getStar4();
-            this.votes = String.valueOf(serie.getVotes());
+    private void sortItems() {
+        if (this.items == null) {
+            return;
         }
 
-        public String getTitle() {
-            return title;
+        List<TableColumn<Serie, ?>> sortOrder = this.seriesTable.getSortOrder();
+        if (sortOrder.isEmpty()) {
+            this.items.showInOrder(this.items.source);
+            return;
         }
 
-        public String getSeriesRuntime() {
-            return seriesRuntime;
+        TableColumn<Serie, ?> column = sortOrder.get(0);
+        if (sortOrder.size() == 1 && this.sortedViews != null && column.getUserData() instanceof ESortKey) {
+            ESortKey key = (ESortKey) column.getUserData();
+            boolean descending = column.getSortType() == TableColumn.SortType.DESCENDING;
+            List<Serie> sorted = this.sortedViews.apply(key);
+            //Los órdenes del índice son de mayor a menor para el puntaje y los votos, y alfabético para el título
+            this.items.showInOrder(descending == (key != ESortKey.TITLE) ? sorted : new ReversedList(sorted));
+            return;
         }
 
-        public String getCertificate() {
-            return certificate;
-        }
+        this.items.showInOrder(sortedPositions(this.items.source, this.seriesTable.getComparator()));
+    }
 
-        public String getEpisodesRuntime() {
-            return episodesRuntime;
+    /**
+     * Ordena las posiciones de las series de la lista con el comparador indicado
+     *
+     * @return vista de la lista en el orden resultante
+     * */
+    private static List<Serie> sortedPositions(List<Serie> source, Comparator<Serie> comparator) {
+        Integer[] positions = new Integer[source.size()];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = i;
         }
+        Arrays.sort(positions, (a, b) -> comparator.compare(source.get(a), source.get(b)));
+
+        return new AbstractList<Serie>() {
+            @Override
+            public Serie get(int index) {
+                return source.get(positions[index]);
+            }
+
+            @Override
+            public int size() {
+                return positions.length;
+            }
+        };
+    }
 
-        public String getImdbRating() {
-            return imdbRating;
+    /**
+     * Lista observable de sólo lectura que muestra las series de una lista del índice en un orden determinado, sin
+     * copiarlas. Las series se obtienen de la lista subyacente al momento de accederlas.
+     * */
+    private static class LazySeriesList extends ObservableListBase<Serie> implements RandomAccess {
+        //Lista en el orden original de la consulta, y lista con las mismas series en el orden actual de la tabla
+        private final List<Serie> source;
+        private List<Serie> order;
+
+        private LazySeriesList(List<Serie> source) {
+            this.source = source;
+            this.order = source;
         }
 
-        public String getOverview() {
-            return overview;
+        @Override
+        public Serie get(int index) {
+            return this.order.get(index);
         }
 
-        public String getStar1() {
-            return star1;
+        @Override
+        public int size() {
+            return this.source.size();
         }
 
-        public String getStar2() {
-            return star2;
+        /**
+         * Reemplaza el orden de la lista, notificando la permutación a la tabla (que conserva así la selección)
+         *
+         * @param newOrder las mismas series de la lista subyacente en otro orden
+         * */
+        private void showInOrder(List<Serie> newOrder) {
+            List<Serie> oldOrder = this.order;
+            int size = this.size();
+
+            //Posición en el nuevo orden de cada id de fila
+            int maxRow = -1;
+            for (Serie serie : newOrder) {
+                maxRow = Math.max(maxRow, serie.getRowId());
+            }
+            int[] newPositions = new int[maxRow + 1];
+            Arrays.fill(newPositions, -1);
+            for (int i = 0; i < size; i++) {
+                newPositions[newOrder.get(i).getRowId()] = i;
+            }
+
+            int[] permutation = new int[size];
+            for (int i = 0; i < size; i++) {
+                int row = oldOrder.get(i).getRowId();
+                permutation[i] = row < newPositions.length ? newPositions[row] : -1;
+                if (permutation[i] < 0) {
+                    //No es una permutación (por ejemplo, series repetidas): se notifica el reemplazo de toda la lista
+                    this.order = newOrder;
+                    this.beginChange();
+                    this.nextReplace(0, size, oldOrder);
+                    this.endChange();
+                    return;
+                }
+                newPositions[row] = -1;
+            }
+
+            this.order = newOrder;
+            this.beginChange();
+            this.nextPermutation(0, size, permutation);
+            this.endChange();
         }
+    }
+
+    /**
+     * Vista en orden inverso de una lista
+     * */
+    private static class ReversedList extends AbstractList<Serie> implements RandomAccess {
+        private final List<Serie> list;
 
-        public String getStar3() {
-            return star3;
+        private ReversedList(List<Serie> list) {
+            this.list = list;
         }
 
-        public String getStar4() {
-            return star4;
+        @Override
+        public Serie get(int index) {
+            return this.list.get(this.list.size() - 1 - index);
         }
 
-        public String getVotes() {
-            return votes;
+        @Override
+        public int size() {
+            return this.list.size();
         }
     }
 }